@@ -0,0 +1,109 @@
+package gitlet;
+
+import java.util.HashMap;
+import java.util.Random;
+
+/** Compares a Manifest with the HashMap it replaced as a commit's list of
+ *  files.  Usage: java gitlet.ManifestBenchmark [PATHS]
+ *  Both hold the same PATHS paths, laid out in directories as a source
+ *  tree is. For each the heap retained, the serialized size, the time
+ *  of a lookup and the time to make the next commit's manifest with one
+ *  file changed are reported. Heap figures come from the used heap
+ *  after garbage collection, so give the JVM room, e.g. -Xmx2g for the
+ *  default of a million paths.
+ *  @author Jay Chiang
+ */
+public class ManifestBenchmark {
+
+    /** Number of paths looked up per measurement. */
+    private static final int QUERIES = 100000;
+
+    /** Number of edits timed. */
+    private static final int EDITS = 20;
+
+    /** Runs the benchmark with ARGS as described above. */
+    public static void main(String... args) {
+        int paths = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+
+        long base = used();
+        Manifest manifest = manifest(paths);
+        long manifestBytes = used() - base;
+        base = used();
+        HashMap<String, ObjectId> map = hashMap(paths);
+        long mapBytes = used() - base;
+        System.out.printf("%d paths%n", paths);
+        System.out.printf("heap:       HashMap %8.1f MB, Manifest %8.1f MB%n",
+                mapBytes / 1e6, manifestBytes / 1e6);
+        System.out.printf("serialized: HashMap %8.1f MB, Manifest %8.1f MB%n",
+                Utils.serialize(map).length / 1e6,
+                Utils.serialize(manifest).length / 1e6);
+
+        Random random = new Random(61);
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i += 1) {
+            queries[i] = path(random.nextInt(paths));
+        }
+        long start = System.nanoTime();
+        int found = 0;
+        for (String query : queries) {
+            found += map.get(query) != null ? 1 : 0;
+        }
+        long mapLookup = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (String query : queries) {
+            found += manifest.get(query) != null ? 1 : 0;
+        }
+        long manifestLookup = System.nanoTime() - start;
+        System.out.printf("lookup:     HashMap %8.2f us,  Manifest %8.2f us"
+                + "  (%d found)%n", mapLookup / 1e3 / QUERIES,
+                manifestLookup / 1e3 / QUERIES, found);
+
+        start = System.nanoTime();
+        for (int i = 0; i < EDITS; i += 1) {
+            HashMap<String, ObjectId> next = new HashMap<>(map);
+            next.put(queries[i], Utils.sha1Id("edit " + i));
+        }
+        long mapEdit = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < EDITS; i += 1) {
+            manifest.edit().put(queries[i], Utils.sha1Id("edit " + i))
+                .build();
+        }
+        long manifestEdit = System.nanoTime() - start;
+        System.out.printf("edit:       HashMap %8.1f ms,  Manifest %8.1f ms%n",
+                mapEdit / 1e6 / EDITS, manifestEdit / 1e6 / EDITS);
+    }
+
+    /** Returns a HashMap of PATHS paths. */
+    private static HashMap<String, ObjectId> hashMap(int paths) {
+        HashMap<String, ObjectId> result = new HashMap<>();
+        for (int i = 0; i < paths; i += 1) {
+            result.put(path(i), Utils.sha1Id("contents " + i));
+        }
+        return result;
+    }
+
+    /** Returns a Manifest of the same PATHS paths. */
+    private static Manifest manifest(int paths) {
+        Manifest.Builder builder = Manifest.EMPTY.edit();
+        for (int i = 0; i < paths; i += 1) {
+            builder.put(path(i), Utils.sha1Id("contents " + i));
+        }
+        return builder.build();
+    }
+
+    /** Returns the Ith path, in a tree of directories of 100 files. */
+    private static String path(int i) {
+        return "src/main/java/org/example/module" + (i / 10000)
+            + "/pkg" + (i / 100 % 100) + "/File" + i + ".java";
+    }
+
+    /** Returns the bytes in use on the heap after collecting garbage. */
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i += 1) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
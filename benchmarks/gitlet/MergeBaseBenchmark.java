@@ -0,0 +1,134 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/** Times MergeBase on a synthetic history held in memory.
+ *  Usage: java gitlet.MergeBaseBenchmark [COMMITS [MERGERATE [BRANCHES]]]
+ *  The history grows BRANCHES lines of development in parallel; each new
+ *  commit extends a random branch and, with probability MERGERATE, also
+ *  merges in the head of another branch. For random pairs of commits the
+ *  generation-ordered walk is compared with intersecting the full
+ *  ancestor sets of both sides.
+ *  @author Jay Chiang
+ */
+public class MergeBaseBenchmark {
+
+    /** Number of commit pairs queried per measurement. */
+    private static final int QUERIES = 200;
+
+    /** Runs the benchmark with ARGS as described above. */
+    public static void main(String... args) {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        double mergeRate = args.length > 1
+                ? Double.parseDouble(args[1]) : 0.1;
+        int branches = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        Random random = new Random(61);
+        int[][] parents = new int[commits][];
+        int[] generations = new int[commits];
+        int[] heads = new int[branches];
+        parents[0] = new int[0];
+        generations[0] = 1;
+        int merges = 0;
+        for (int c = 1; c < commits; c += 1) {
+            int branch = random.nextInt(branches);
+            int other = random.nextInt(branches);
+            if (other != branch && heads[other] != heads[branch]
+                    && random.nextDouble() < mergeRate) {
+                parents[c] = new int[] { heads[branch], heads[other] };
+                merges += 1;
+            } else {
+                parents[c] = new int[] { heads[branch] };
+            }
+            for (int p : parents[c]) {
+                generations[c] = Math.max(generations[c], generations[p]);
+            }
+            generations[c] += 1;
+            heads[branch] = c;
+        }
+        System.out.printf("%d commits, %d merges, %d branches%n",
+                commits, merges, branches);
+
+        MergeBase.Graph graph = new MergeBase.Graph() {
+            @Override
+            public String[] parents(String uID) {
+                int[] ps = parents[Integer.parseInt(uID)];
+                String[] result = new String[ps.length];
+                for (int i = 0; i < ps.length; i += 1) {
+                    result[i] = Integer.toString(ps[i]);
+                }
+                return result;
+            }
+
+            @Override
+            public int generation(String uID) {
+                return generations[Integer.parseInt(uID)];
+            }
+        };
+
+        int[][] pairs = new int[QUERIES][2];
+        for (int[] pair : pairs) {
+            pair[0] = commits - 1 - random.nextInt(Math.min(commits, 1000));
+            pair[1] = commits - 1 - random.nextInt(Math.min(commits, 1000));
+        }
+
+        MergeBase engine = new MergeBase(graph);
+        for (int[] pair : pairs) {
+            engine.mergeBases(Integer.toString(pair[0]),
+                    Integer.toString(pair[1]));
+        }
+        long start = System.nanoTime();
+        int found = 0;
+        for (int[] pair : pairs) {
+            List<String> bases = engine.mergeBases(
+                    Integer.toString(pair[0]), Integer.toString(pair[1]));
+            found += bases.size();
+        }
+        long walk = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int ancestors = 0;
+        for (int[] pair : pairs) {
+            if (engine.isAncestor(Integer.toString(pair[0] / 2),
+                    Integer.toString(pair[1]))) {
+                ancestors += 1;
+            }
+        }
+        long ancestry = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int naiveQueries = Math.min(QUERIES, 20);
+        for (int i = 0; i < naiveQueries; i += 1) {
+            HashSet<Integer> one = ancestorsOf(parents, pairs[i][0]);
+            one.retainAll(ancestorsOf(parents, pairs[i][1]));
+        }
+        long naive = System.nanoTime() - start;
+
+        System.out.printf("merge-base:        %10.1f us/query "
+                + "(%d bases over %d queries)%n",
+                walk / 1e3 / QUERIES, found, QUERIES);
+        System.out.printf("is-ancestor:       %10.1f us/query "
+                + "(%d true)%n", ancestry / 1e3 / QUERIES, ancestors);
+        System.out.printf("full ancestor sets: %9.1f us/query%n",
+                naive / 1e3 / naiveQueries);
+    }
+
+    /** Returns every ancestor of commit C in PARENTS, including C. */
+    private static HashSet<Integer> ancestorsOf(int[][] parents, int c) {
+        HashSet<Integer> result = new HashSet<>();
+        ArrayDeque<Integer> work = new ArrayDeque<>();
+        work.push(c);
+        while (!work.isEmpty()) {
+            int next = work.pop();
+            if (result.add(next)) {
+                for (int p : parents[next]) {
+                    work.push(p);
+                }
+            }
+        }
+        return result;
+    }
+}
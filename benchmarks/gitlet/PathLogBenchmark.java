@@ -0,0 +1,116 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+
+/** Times finding the commits that changed one file, as log -- PATH does.
+ *  Usage: java gitlet.PathLogBenchmark [COMMITS [FILES]]
+ *  A repository is built with COMMITS commits over FILES tracked files,
+ *  each commit changing one random file. A first-parent walk comparing
+ *  every commit's manifest with its parent's is compared with the walk
+ *  over changed-path filters, both while the filters are first computed
+ *  and once they are indexed.
+ *  @author Jay Chiang
+ */
+public class PathLogBenchmark {
+
+    /** Files looked up per measurement. */
+    private static final int QUERIES = 10;
+
+    /** Runs the benchmark with ARGS as described above. */
+    public static void main(String... args) throws Exception {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        File root = Files.createTempDirectory("gitlet-pathlog").toFile();
+        File gitletDir = new File(root, ".gitlet");
+        File commitDir = new File(gitletDir, "commits");
+        File index = new File(gitletDir, ChangedPaths.FILE_NAME);
+        File globalLog = new File(gitletDir, "logs/glbal-log.txt");
+        commitDir.mkdirs();
+        globalLog.getParentFile().mkdirs();
+        System.setProperty("user.dir", root.getPath());
+        Random random = new Random(61);
+        HashMap<String, ObjectId> blobs = new HashMap<>();
+        for (int i = 0; i < files; i += 1) {
+            blobs.put("f" + i + ".txt", Utils.sha1Id("f" + i));
+        }
+        Manifest manifest = Manifest.of(blobs);
+        String head = new Commit("initial commit", null, manifest).getUID();
+        for (int i = 1; i < commits; i += 1) {
+            manifest = manifest.edit().put("f" + random.nextInt(files)
+                    + ".txt", Utils.sha1Id("v" + i)).build();
+            head = new Commit("commit " + i, head, manifest).getUID();
+            globalLog.delete();
+        }
+        System.out.printf("%d commits, %d files%n", commits, files);
+
+        String[] paths = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i += 1) {
+            paths[i] = "f" + random.nextInt(files) + ".txt";
+        }
+        long start = System.nanoTime();
+        int found = 0;
+        for (String path : paths) {
+            Iterator<Commit> walk = new CommitIterator(commitDir,
+                    Utils.readObject(new File(commitDir, head + ".txt"),
+                            Commit.class));
+            Commit commit = walk.next();
+            while (commit != null) {
+                Commit parent = walk.hasNext() ? walk.next() : null;
+                ObjectId blob = commit.getBlobs().get(path);
+                if (parent == null
+                        || !blob.equals(parent.getBlobs().get(path))) {
+                    found += 1;
+                }
+                commit = parent;
+            }
+        }
+        report("manifest walk", start, found);
+
+        start = System.nanoTime();
+        ChangedPaths filters = new ChangedPaths(commitDir, index);
+        found = count(filters, head, paths[0]);
+        filters.save();
+        report("first filter walk", start, found);
+        System.out.printf("%-20s %8d bytes%n", "index", index.length());
+
+        start = System.nanoTime();
+        found = 0;
+        for (String path : paths) {
+            found += count(new ChangedPaths(commitDir, index), head, path);
+        }
+        report("filter walk", start, found);
+
+        for (File file : commitDir.listFiles()) {
+            file.delete();
+        }
+        index.delete();
+        commitDir.delete();
+        globalLog.getParentFile().delete();
+        gitletDir.delete();
+        root.delete();
+    }
+
+    /** Returns the number of commits from HEAD that FILTERS say changed
+     *  PATH. */
+    private static int count(ChangedPaths filters, String head,
+                             String path) {
+        int result = 0;
+        for (Iterator<Commit> walk = filters.touching(head, path);
+             walk.hasNext(); walk.next()) {
+            result += 1;
+        }
+        return result;
+    }
+
+    /** Prints the time since START, in nanoseconds, of a measurement
+     *  called WHAT that found FOUND commits. */
+    private static void report(String what, long start, int found) {
+        System.out.printf("%-20s %8.1f ms, %d commits found%n", what,
+                (System.nanoTime() - start) / 1e6, found);
+    }
+}
@@ -0,0 +1,125 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/** Builds a synthetic repository in the current directory, which must
+ *  not hold one yet, by running gitlet's commands in this process.
+ *  Usage: java gitlet.RepoGenerator
+ *             [COMMITS [FILES [CHANGED [SIZE [BRANCHES [MERGERATE]]]]]]
+ *  The first commit adds FILES files; every later one changes CHANGED
+ *  of them on a random one of BRANCHES branches (master and branch1 up
+ *  to branch(BRANCHES - 1)), or with probability MERGERATE is instead
+ *  a merge into that branch of another with new commits, where the merge
+ *  is not a fast-forward. File sizes are
+ *  log-normally distributed with median SIZE bytes, so that most files
+ *  are small and a few are large, as in source trees. Each branch
+ *  changes only its own share of the files, so merges seldom conflict;
+ *  when criss-cross merges make one, it is committed as merge leaves it.
+ *  The repository is left on master with a clean working directory.
+ *  @author Jay Chiang
+ */
+public class RepoGenerator {
+
+    /** Spread of the natural logarithm of file sizes. */
+    private static final double SIZE_SIGMA = 1.0;
+    /** Characters per line of generated files. */
+    private static final int LINE = 60;
+
+    /** Runs the generator with ARGS as described above. */
+    public static void main(String... args) {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int files = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int changed = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int size = args.length > 3 ? Integer.parseInt(args[3]) : 2048;
+        int branches = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        double mergeRate = args.length > 5
+                ? Double.parseDouble(args[5]) : 0.1;
+
+        Random random = new Random(61);
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        new Git().init();
+        for (int i = 0; i < files; i += 1) {
+            write(random, i, size);
+            new Git().add(name(i));
+        }
+        new Git().commit("generated 1");
+        for (int b = 1; b < branches; b += 1) {
+            new Git().branch(branch(b));
+        }
+
+        int[] versions = new int[branches];
+        int[][] merged = new int[branches][branches];
+        int current = 0;
+        int merges = 0;
+        for (int c = 2; c <= commits; c += 1) {
+            int b = random.nextInt(branches);
+            if (b != current) {
+                new Git().checkout("checkout", branch(b));
+                current = b;
+            }
+            int other = random.nextInt(branches);
+            boolean merge = other != b && versions[other] > merged[b][other]
+                    && random.nextDouble() < mergeRate;
+            if (merge) {
+                String before = head(b);
+                new Git().merge(branch(other));
+                merged[b][other] = versions[other];
+                merge = !head(b).equals(before) && Utils.readObject(
+                        new File(".gitlet/commits/" + head(b) + ".txt"),
+                        Commit.class).getMergeParentUID() != null;
+            }
+            if (merge) {
+                merges += 1;
+            } else {
+                int share = Math.max(1, files / branches);
+                for (int k = 0; k < Math.min(changed, share); k += 1) {
+                    int file = Math.min(files - 1,
+                            b * share + random.nextInt(share));
+                    write(random, file, size);
+                    new Git().add(name(file));
+                }
+                new Git().commit("generated " + c);
+            }
+            versions[b] += 1;
+        }
+        if (current != 0) {
+            new Git().checkout("checkout", branch(0));
+        }
+        System.setOut(out);
+        System.out.printf("%d commits (%d merges), %d files, %d branches%n",
+                commits, merges, files, branches);
+    }
+
+    /** Returns the name of file number I. */
+    static String name(int i) {
+        return "file" + i + ".txt";
+    }
+
+    /** Returns the UID of the head of branch number B. */
+    private static String head(int b) {
+        return Utils.readContentsAsString(
+                new File(".gitlet/branches/" + branch(b) + ".txt"));
+    }
+
+    /** Returns the name of branch number B. */
+    static String branch(int b) {
+        return b == 0 ? "master" : "branch" + b;
+    }
+
+    /** Writes new contents, of a size drawn with RANDOM around the median
+     *  SIZE, to file number I. */
+    private static void write(Random random, int i, int size) {
+        int length = (int) Math.max(1, Math.round(
+                size * Math.exp(SIZE_SIGMA * random.nextGaussian())));
+        byte[] contents = new byte[length];
+        for (int k = 0; k < length; k += 1) {
+            contents[k] = (k + 1) % (LINE + 1) == 0 ? (byte) '\n'
+                    : (byte) ('a' + random.nextInt(26));
+        }
+        Utils.writeContents(new File(name(i)), contents);
+    }
+}
@@ -0,0 +1,108 @@
+package gitlet;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Measures the throughput of concurrent reads through Repository.
+ *  Usage: java gitlet.RepositoryBenchmark [COMMITS [MILLIS]]
+ *  A repository of COMMITS commits is built through the API. Each read
+ *  walks the log of the last DEPTH commits of the current branch. It is
+ *  timed for MILLIS milliseconds on 1, 2, 4 and 8 threads three ways:
+ *  through Git's log command, which holds mutable state and so must be
+ *  run one caller at a time; through a fresh Repository snapshot per
+ *  read; and the same while another thread commits continuously.
+ *  @author Jay Chiang
+ */
+public class RepositoryBenchmark {
+
+    /** Commits shown per read. */
+    private static final int DEPTH = 20;
+
+    /** Thread counts measured. */
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    /** Runs the benchmark with ARGS as described above. */
+    public static void main(String... args) throws Exception {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        long millis = args.length > 1 ? Long.parseLong(args[1]) : 2000;
+
+        File root = Files.createTempDirectory("gitlet-repository").toFile();
+        Repository repo = Repository.init(root);
+        File file = new File(root, "file.txt");
+        for (int i = 0; i < commits; i += 1) {
+            Utils.writeContents(file, "version " + i + "\n");
+            repo.add("file.txt");
+            repo.commit("commit " + i);
+        }
+        System.out.printf("%d commits, %d ms per measurement%n",
+                commits, millis);
+        System.out.printf("%8s %16s %16s %16s%n", "threads",
+                "Git reads/s", "snapshot reads/s", "with writer/s");
+
+        PrintStream nowhere = new PrintStream(OutputStream.nullOutputStream());
+        Object serial = new Object();
+        Runnable gitRead = () -> {
+            synchronized (serial) {
+                Git git = new Git(root, nowhere);
+                git.log("log", "-n", Integer.toString(DEPTH));
+            }
+        };
+        Runnable snapshotRead = () -> {
+            Repository.Snapshot snapshot = repo.snapshot();
+            Iterator<Commit> log = snapshot.log();
+            for (int i = 0; i < DEPTH && log.hasNext(); i += 1) {
+                log.next();
+            }
+        };
+        for (int threads : THREADS) {
+            double git = measure(threads, millis, gitRead, null);
+            double snapshots = measure(threads, millis, snapshotRead, null);
+            int[] written = {0};
+            double writing = measure(threads, millis, snapshotRead, () -> {
+                Utils.writeContents(file, "written " + written[0] + "\n");
+                repo.add("file.txt");
+                repo.commit("written " + written[0]);
+                written[0] += 1;
+            });
+            System.out.printf("%8d %16.0f %16.0f %16.0f%n", threads, git,
+                    snapshots, writing);
+        }
+    }
+
+    /** Returns the times per second READ completes when THREADS threads
+     *  repeat it for MILLIS milliseconds, while another thread repeats
+     *  WRITE if it is not null. */
+    private static double measure(int threads, long millis, Runnable read,
+                                  Runnable write) throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        LongAdder reads = new LongAdder();
+        Thread[] workers = new Thread[threads + 1];
+        for (int t = 0; t < threads; t += 1) {
+            workers[t] = new Thread(() -> {
+                while (!done.get()) {
+                    read.run();
+                    reads.increment();
+                }
+            });
+        }
+        workers[threads] = new Thread(() -> {
+            while (write != null && !done.get()) {
+                write.run();
+            }
+        });
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        Thread.sleep(millis);
+        done.set(true);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return reads.sum() * 1000.0 / millis;
+    }
+}
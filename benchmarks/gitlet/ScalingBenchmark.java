@@ -0,0 +1,187 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** Times gitlet's commands end to end on synthetic repositories of
+ *  growing size, and prints the results as CSV.
+ *  Usage: java gitlet.ScalingBenchmark [SIZES [RUNS [GENERATOR...]]]
+ *  SIZES is a comma-separated list of commit counts (default
+ *  100,300,1000). For each, RepoGenerator builds a repository of that
+ *  many commits, passing on the GENERATOR arguments after the commit
+ *  count, and each command is then run RUNS times (default 10), every
+ *  one as its own java process in the repository, as a user runs it.
+ *  Each run adds and commits a file, shows status, the log and a find,
+ *  checks out a side branch and commits on it, checks master out again,
+ *  merges the side branch and resets master to before the merge, so the
+ *  repository grows by two commits per run. A "none" row times a JVM
+ *  that runs no command, the fixed cost included in every other row.
+ *  Each row gives the repository size, the command, its latency
+ *  percentiles in milliseconds and the bytes in .gitlet after all runs.
+ *  @author Jay Chiang
+ */
+public class ScalingBenchmark {
+
+    /** Columns of the output. */
+    private static final String HEADER = "commits,command,samples,"
+            + "p50_ms,p90_ms,p99_ms,max_ms,gitlet_bytes";
+
+    /** Runs the benchmark with ARGS as described above. */
+    public static void main(String... args) throws Exception {
+        String[] sizes = (args.length > 0 ? args[0] : "100,300,1000")
+                .split(",");
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String[] generator = args.length > 2
+                ? Arrays.copyOfRange(args, 2, args.length) : new String[0];
+
+        System.out.println(HEADER);
+        for (String size : sizes) {
+            File root = Files.createTempDirectory("gitlet-scaling").toFile();
+            try {
+                ArrayList<String> generate = new ArrayList<>();
+                generate.add("gitlet.RepoGenerator");
+                generate.add(size);
+                generate.addAll(Arrays.asList(generator));
+                System.err.print(size + ": "
+                        + java(root, generate.toArray(new String[0])));
+                report(size, measure(root, runs), bytes(
+                        new File(root, ".gitlet").toPath()));
+            } finally {
+                delete(root.toPath());
+            }
+        }
+    }
+
+    /** Runs the commands RUNS times in the repository ROOT and returns
+     *  the latencies of each, in milliseconds, by command name. */
+    private static LinkedHashMap<String, List<Double>> measure(
+            File root, int runs) throws IOException, InterruptedException {
+        LinkedHashMap<String, List<Double>> times = new LinkedHashMap<>();
+        File master = new File(root, ".gitlet/branches/master.txt");
+        File mainFile = new File(root, "bench-main.txt");
+        File sideFile = new File(root, "bench-side.txt");
+        git(root, "branch", "bench");
+        for (int run = 0; run < runs; run += 1) {
+            time(root, times, "none");
+            Utils.writeContents(mainFile, "main " + run + "\n");
+            time(root, times, "add", "bench-main.txt");
+            time(root, times, "commit", "bench " + run);
+            String before = Utils.readContentsAsString(master);
+            time(root, times, "status");
+            time(root, times, "log");
+            time(root, times, "find", "bench " + run);
+            time(root, times, "checkout", "bench");
+            Utils.writeContents(sideFile, "side " + run + "\n");
+            git(root, "add", "bench-side.txt");
+            git(root, "commit", "side " + run);
+            time(root, times, "checkout", "master");
+            time(root, times, "merge", "bench");
+            time(root, times, "reset", before);
+        }
+        return times;
+    }
+
+    /** Runs gitlet with ARGS in ROOT and adds its latency to TIMES
+     *  under ARGS[0], or under "none" with no ARGS. */
+    private static void time(File root, LinkedHashMap<String, List<Double>>
+                             times, String... args)
+        throws IOException, InterruptedException {
+        String command = args[0];
+        String[] gitletArgs = command.equals("none") ? new String[0] : args;
+        long start = System.nanoTime();
+        git(root, gitletArgs);
+        times.computeIfAbsent(command, c -> new ArrayList<>())
+            .add((System.nanoTime() - start) / 1e6);
+    }
+
+    /** Runs gitlet with ARGS in ROOT. Fails if it does not exit normally,
+     *  or if a command other than status, log and find prints anything
+     *  but the note of a merge conflict, since the others print only
+     *  errors. */
+    private static void git(File root, String... args)
+        throws IOException, InterruptedException {
+        String[] command = new String[args.length + 1];
+        command[0] = "gitlet.Main";
+        System.arraycopy(args, 0, command, 1, args.length);
+        String output = java(root, command);
+        boolean quiet = args.length > 0 && !args[0].equals("status")
+                && !args[0].equals("log") && !args[0].equals("find");
+        if (quiet && !output.isEmpty()
+                && !output.startsWith("Encountered a merge conflict.")) {
+            throw new IllegalStateException(String.join(" ", args)
+                    + ": " + output);
+        }
+    }
+
+    /** Runs java with the class path of this program, made absolute,
+     *  and ARGS in directory DIR, and returns what it printed. */
+    private static String java(File dir, String... args)
+        throws IOException, InterruptedException {
+        ArrayList<String> classPath = new ArrayList<>();
+        for (String entry : System.getProperty("java.class.path")
+                 .split(File.pathSeparator)) {
+            if (!entry.isEmpty()) {
+                classPath.add(new File(entry).getAbsolutePath());
+            }
+        }
+        ArrayList<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java")
+                .getPath());
+        command.add("-cp");
+        command.add(String.join(File.pathSeparator, classPath));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).directory(dir)
+            .redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes());
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException(String.join(" ", args)
+                    + " failed: " + output);
+        }
+        return output;
+    }
+
+    /** Prints a CSV row per command in TIMES for a repository of SIZE
+     *  commits taking BYTES bytes. */
+    private static void report(String size,
+                               LinkedHashMap<String, List<Double>> times,
+                               long bytes) {
+        for (String command : times.keySet()) {
+            List<Double> samples = times.get(command);
+            Collections.sort(samples);
+            System.out.printf("%s,%s,%d,%.1f,%.1f,%.1f,%.1f,%d%n", size,
+                    command, samples.size(), percentile(samples, 0.5),
+                    percentile(samples, 0.9), percentile(samples, 0.99),
+                    samples.get(samples.size() - 1), bytes);
+        }
+    }
+
+    /** Returns the P quantile of SORTED by the nearest-rank method. */
+    private static double percentile(List<Double> sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    /** Returns the total size of the files under DIR. */
+    private static long bytes(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            return paths.filter(Files::isRegularFile)
+                .mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    /** Deletes DIR and everything under it. */
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Collections.reverseOrder())
+                .forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/** Times fetching from a gitlet daemon through a proxy that delays every
+ *  chunk of data by a fixed one-way latency, like a slow network.
+ *  Usage: java gitlet.TransferBenchmark [COMMITS [NEW [LOCAL [LATENCY]]]]
+ *  The server holds COMMITS commits; the client holds all but the last
+ *  NEW of them plus LOCAL commits of its own, so negotiation has to walk
+ *  LOCAL commits before finding common ground. Each commit changes one
+ *  4 KiB file. Reported are the round-trip time, negotiation with one
+ *  round of haves in flight against a full window, and pack throughput
+ *  with and without the injected latency.
+ *  @author Jay Chiang
+ */
+public class TransferBenchmark {
+
+    /** Size of each file version. */
+    private static final int BLOB_SIZE = 4096;
+    /** Number of distinct files in the synthetic history. */
+    private static final int FILES = 50;
+    /** Round trips timed to measure latency. */
+    private static final int PINGS = 20;
+    /** Runs of each measurement, of which the fastest is reported. */
+    private static final int REPEATS = 3;
+
+    /** Runs the benchmark with ARGS as described above. */
+    public static void main(String... args) throws Exception {
+        int commits = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int fresh = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int local = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int latency = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        File root = Files.createTempDirectory("gitlet-transfer").toFile();
+        File server = new File(root, "origin");
+        File client = new File(root, "client");
+        Random random = new Random(61);
+        String[] history = build(server, null, commits, random);
+        String shared = history[commits - fresh - 1];
+        copyHistory(server, client, shared);
+        String clientHead = build(client, shared, local, random)[local - 1];
+        System.out.printf("server %d commits, client %d shared + %d own, "
+                + "%d ms one-way latency%n", commits + 1,
+                commits - fresh + 1, local, latency);
+
+        Daemon daemon = new Daemon(root, 0);
+        new Thread(daemon::serve).start();
+        LatencyProxy proxy = new LatencyProxy(daemon.port(), latency);
+        new Thread(proxy::serve).start();
+        URI slow = URI.create("gitlet://localhost:" + proxy.port()
+                + "/origin");
+        URI direct = URI.create("gitlet://localhost:" + daemon.port()
+                + "/origin");
+        File clientCommits = new File(client, ".gitlet/commits");
+
+        try (Transport transport = new SocketTransport(slow)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < PINGS; i += 1) {
+                transport.branches();
+            }
+            System.out.printf("round trip:             %8.1f ms%n",
+                    (System.nanoTime() - start) / 1e6 / PINGS);
+            for (int window : new int[] {1, FetchNegotiator.WINDOW}) {
+                long best = Long.MAX_VALUE;
+                List<String> common = null;
+                for (int i = 0; i < REPEATS; i += 1) {
+                    FetchNegotiator negotiator =
+                        new FetchNegotiator(clientCommits, window);
+                    start = System.nanoTime();
+                    common = negotiator.common(List.of(clientHead),
+                            transport);
+                    best = Math.min(best, System.nanoTime() - start);
+                }
+                System.out.printf("negotiation, window %d: %8.1f ms "
+                        + "(common %s)%n", window, best / 1e6,
+                        common.contains(shared) ? "found" : "missed");
+            }
+        }
+        for (URI url : new URI[] {direct, slow}) {
+            try (Transport transport = new SocketTransport(url)) {
+                long best = Long.MAX_VALUE;
+                int objects = 0;
+                double megabytes = 0;
+                for (int i = 0; i < REPEATS; i += 1) {
+                    File target = Files.createTempDirectory(root.toPath(),
+                            "fetch").toFile();
+                    File commitDir = new File(target, "commits");
+                    File blobDir = new File(target, "blobs");
+                    commitDir.mkdir();
+                    blobDir.mkdir();
+                    long start = System.nanoTime();
+                    objects = transport.fetch(List.of(history[commits - 1]),
+                            List.of(shared), true, commitDir, blobDir);
+                    best = Math.min(best, System.nanoTime() - start);
+                    megabytes = (size(commitDir) + size(blobDir)) / 1e6;
+                }
+                System.out.printf("pack, %s: %8.1f ms, %d objects, "
+                        + "%.1f MB/s%n", url == slow ? "delayed" : "direct ",
+                        best / 1e6, objects, megabytes * 1e9 / best);
+            }
+        }
+        daemon.close();
+        proxy.close();
+        delete(root);
+    }
+
+    /** Adds COUNT commits to the repository in DIR on top of commit
+     *  PARENT, creating the repository if PARENT is null, and returns
+     *  their UIDs in order. Every commit replaces one file with RANDOM
+     *  contents. */
+    private static String[] build(File dir, String parent, int count,
+                                  Random random) {
+        File gitletDir = new File(dir, ".gitlet");
+        File blobDir = new File(gitletDir, "blobs");
+        File branchDir = new File(gitletDir, "branches");
+        System.setProperty("user.dir", dir.getPath());
+        HashMap<String, ObjectId> blobs = new HashMap<>();
+        if (parent == null) {
+            for (String sub : new String[] {"commits", "blobs", "branches",
+                                            "logs", "stage", "remotes"}) {
+                new File(gitletDir, sub).mkdirs();
+            }
+            parent = new Commit("initial commit", null,
+                    Manifest.EMPTY).getUID();
+        } else {
+            blobs.putAll(Utils.readObject(new File(gitletDir,
+                    "commits/" + parent + ".txt"), Commit.class).getBlobs());
+        }
+        String[] result = new String[count];
+        byte[] contents = new byte[BLOB_SIZE];
+        for (int i = 0; i < count; i += 1) {
+            random.nextBytes(contents);
+            ObjectId uID = Utils.sha1Id(contents);
+            Utils.writeContents(new File(blobDir, uID + ".txt"), contents);
+            blobs.put("f" + random.nextInt(FILES) + ".txt", uID);
+            parent = new Commit("commit " + i, parent,
+                    Manifest.of(blobs)).getUID();
+            result[i] = parent;
+        }
+        Utils.writeContents(new File(branchDir, "master.txt"), parent);
+        Utils.writeContents(new File(branchDir, "head.txt"), "master");
+        return result;
+    }
+
+    /** Copies into a new repository in TO everything that commit HEAD of
+     *  the repository in FROM reaches. */
+    private static void copyHistory(File from, File to, String head)
+        throws IOException {
+        File fromDir = new File(from, ".gitlet");
+        File toDir = new File(to, ".gitlet");
+        for (String sub : new String[] {"commits", "blobs", "branches",
+                                        "logs", "stage", "remotes"}) {
+            new File(toDir, sub).mkdirs();
+        }
+        for (String uID = head; uID != null;) {
+            File commitFile = new File(fromDir, "commits/" + uID + ".txt");
+            Commit commit = Utils.readObject(commitFile, Commit.class);
+            Files.copy(commitFile.toPath(),
+                    new File(toDir, "commits/" + uID + ".txt").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            for (ObjectId blob : commit.getBlobs().values()) {
+                Files.copy(new File(fromDir, "blobs/" + blob + ".txt")
+                        .toPath(), new File(toDir, "blobs/" + blob + ".txt")
+                        .toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            uID = commit.getParentUID();
+        }
+    }
+
+    /** Returns the total size of the files in DIR. */
+    private static long size(File dir) {
+        return Arrays.stream(dir.listFiles()).mapToLong(File::length).sum();
+    }
+
+    /** Deletes FILE and everything below it. */
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Forwards connections to a local port, delaying every chunk of data
+     *  in each direction by a fixed latency without holding up the chunks
+     *  behind it, so pipelined requests overlap as they would on a real
+     *  network. */
+    static class LatencyProxy {
+
+        /** A proxy to local port TARGET adding LATENCY milliseconds. */
+        LatencyProxy(int target, int latency) throws IOException {
+            _target = target;
+            _latency = latency;
+            _server = new ServerSocket(0);
+        }
+
+        /** Returns the port this proxy listens on. */
+        int port() {
+            return _server.getLocalPort();
+        }
+
+        /** Accepts and forwards connections until closed. */
+        void serve() {
+            try {
+                while (true) {
+                    Socket client = _server.accept();
+                    Socket server = new Socket("localhost", _target);
+                    client.setTcpNoDelay(true);
+                    server.setTcpNoDelay(true);
+                    forward(client.getInputStream(), server.getOutputStream());
+                    forward(server.getInputStream(), client.getOutputStream());
+                }
+            } catch (IOException excp) {
+                return;
+            }
+        }
+
+        /** Stops accepting connections. */
+        void close() throws IOException {
+            _server.close();
+        }
+
+        /** Starts copying IN to OUT, each chunk LATENCY ms after it was
+         *  read. */
+        private void forward(InputStream in, OutputStream out) {
+            LinkedBlockingQueue<Object[]> queue = new LinkedBlockingQueue<>();
+            Thread reader = new Thread(() -> {
+                byte[] buffer = new byte[1 << 16];
+                try {
+                    for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                        queue.add(new Object[] {
+                            System.nanoTime() + _latency * 1000000L,
+                            Arrays.copyOf(buffer, n)
+                        });
+                    }
+                } catch (IOException excp) {
+                    return;
+                } finally {
+                    queue.add(new Object[] {0L, null});
+                }
+            });
+            Thread writer = new Thread(() -> {
+                try {
+                    while (true) {
+                        Object[] chunk = queue.take();
+                        if (chunk[1] == null) {
+                            out.close();
+                            return;
+                        }
+                        long wait = (Long) chunk[0] - System.nanoTime();
+                        if (wait > 0) {
+                            Thread.sleep(wait / 1000000L,
+                                    (int) (wait % 1000000L));
+                        }
+                        out.write((byte[]) chunk[1]);
+                        out.flush();
+                    }
+                } catch (IOException | InterruptedException excp) {
+                    return;
+                }
+            });
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+            reader.start();
+            writer.start();
+        }
+
+        /** Port connections are forwarded to. */
+        private final int _target;
+        /** One-way delay in milliseconds. */
+        private final int _latency;
+        /** The listening socket. */
+        private final ServerSocket _server;
+    }
+}
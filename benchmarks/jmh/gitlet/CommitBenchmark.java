@@ -0,0 +1,99 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Times the two steps of Git.commit that grow with the number of
+ *  tracked files: copying the parent's manifest and constructing, which
+ *  hashes and writes, the new Commit. The global log, which the Commit
+ *  constructor prepends to, and the commit made last are removed before
+ *  each commit so that neither grows during the measurement.
+ *  @author Jay Chiang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommitBenchmark {
+
+    /** Files tracked by the parent commit. */
+    @Param({"10", "1000", "100000"})
+    private int files;
+
+    /** Directory holding the scratch repository. */
+    private File root;
+    /** The global log. */
+    private File globalLog;
+    /** The parent commit. */
+    private Commit parent;
+    /** Number of commits made so far, giving each a distinct message. */
+    private int made;
+    /** The last commit made, or null. */
+    private Commit latest;
+
+    /** Creates a repository whose only commit tracks FILES files. */
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("gitlet-jmh").toFile();
+        new File(root, ".gitlet/commits").mkdirs();
+        new File(root, ".gitlet/logs").mkdirs();
+        System.setProperty("user.dir", root.getPath());
+        globalLog = new File(root, ".gitlet/logs/glbal-log.txt");
+        parent = new Commit("initial commit", null,
+                Manifest.of(SerializationBenchmark.manifest(files)));
+    }
+
+    /** Removes the global log and the last commit made. */
+    @Setup(Level.Invocation)
+    public void clean() {
+        globalLog.delete();
+        if (latest != null) {
+            new File(root, ".gitlet/commits/" + latest.getUID() + ".txt")
+                .delete();
+        }
+    }
+
+    /** Deletes the scratch repository. */
+    @TearDown
+    public void tearDown() {
+        SerializationBenchmark.delete(root);
+    }
+
+    /** Returns the parent's manifest with one file changed, as
+     *  Git.commit makes it. */
+    @Benchmark
+    public Manifest editManifest() {
+        made += 1;
+        return parent.getBlobs().edit()
+            .put("changed.txt", Utils.sha1Id("version " + made)).build();
+    }
+
+    /** Returns a new commit with the parent's manifest and one file
+     *  changed. */
+    @Benchmark
+    public Commit construct() {
+        made += 1;
+        Manifest blobs = parent.getBlobs().edit()
+            .put("changed.txt", Utils.sha1Id("version " + made)).build();
+        latest = new Commit("commit " + made, parent.getUID(), blobs);
+        return latest;
+    }
+}
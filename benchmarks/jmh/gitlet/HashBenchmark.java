@@ -0,0 +1,62 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Times Utils.sha1 on byte arrays, as add hashes file contents, and on
+ *  Strings, as the UIDs of commits are hashed, for inputs of SIZE bytes.
+ *  @author Jay Chiang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    /** Length of the hashed input in bytes. */
+    @Param({"64", "4096", "1048576"})
+    private int size;
+
+    /** Input given as bytes. */
+    private byte[] bytes;
+    /** The same input given as a String. */
+    private String text;
+
+    /** Fills the inputs with printable random characters. */
+    @Setup
+    public void setUp() {
+        Random random = new Random(61);
+        bytes = new byte[size];
+        for (int i = 0; i < size; i += 1) {
+            bytes[i] = (byte) (' ' + random.nextInt(95));
+        }
+        text = new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    /** Returns the hash of the byte input. */
+    @Benchmark
+    public String sha1Bytes() {
+        return Utils.sha1(bytes);
+    }
+
+    /** Returns the hash of the String input. */
+    @Benchmark
+    public String sha1String() {
+        return Utils.sha1(text);
+    }
+}
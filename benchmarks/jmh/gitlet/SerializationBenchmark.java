@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Times Utils.serialize and Utils.readObject of a Commit and of a
+ *  StagingArea holding FILES entries, which is what every command pays
+ *  to load and store the head commit and the stage.
+ *  @author Jay Chiang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    /** Entries in the manifest and in the stage. */
+    @Param({"10", "1000", "100000"})
+    private int files;
+
+    /** Directory holding the repository the commit is written to. */
+    private File root;
+    /** A commit tracking FILES files. */
+    private Commit commit;
+    /** A stage with FILES additions. */
+    private StagingArea stage;
+    /** COMMIT as written to disk. */
+    private File commitFile;
+    /** STAGE as written to disk. */
+    private File stageFile;
+
+    /** Writes the commit and the stage into a scratch repository. */
+    @Setup
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("gitlet-jmh").toFile();
+        new File(root, ".gitlet/commits").mkdirs();
+        new File(root, ".gitlet/logs").mkdirs();
+        System.setProperty("user.dir", root.getPath());
+        HashMap<String, ObjectId> blobs = manifest(files);
+        commit = new Commit("initial commit", null, Manifest.of(blobs));
+        stage = new StagingArea();
+        for (String name : blobs.keySet()) {
+            stage.addFileForAddition(name, blobs.get(name));
+        }
+        commitFile = new File(root, ".gitlet/commits/"
+                + commit.getUID() + ".txt");
+        stageFile = new File(root, ".gitlet/stage.txt");
+        Utils.writeObject(stageFile, stage);
+    }
+
+    /** Deletes the scratch repository. */
+    @TearDown
+    public void tearDown() {
+        delete(root);
+    }
+
+    /** Returns the serialized commit. */
+    @Benchmark
+    public byte[] serializeCommit() {
+        return Utils.serialize(commit);
+    }
+
+    /** Returns the commit read back from disk. */
+    @Benchmark
+    public Commit readCommit() {
+        return Utils.readObject(commitFile, Commit.class);
+    }
+
+    /** Returns the serialized stage. */
+    @Benchmark
+    public byte[] serializeStage() {
+        return Utils.serialize(stage);
+    }
+
+    /** Returns the stage read back from disk. */
+    @Benchmark
+    public StagingArea readStage() {
+        return Utils.readObject(stageFile, StagingArea.class);
+    }
+
+    /** Returns a manifest of COUNT files with distinct blob UIDs. */
+    static HashMap<String, ObjectId> manifest(int count) {
+        HashMap<String, ObjectId> result = new HashMap<>();
+        for (int i = 0; i < count; i += 1) {
+            result.put("dir" + (i % 97) + "/file" + i + ".txt",
+                    Utils.sha1Id("contents " + i));
+        }
+        return result;
+    }
+
+    /** Deletes FILE and, if it is a directory, everything in it. */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,190 @@
+package gitlet;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/** Runs the long operations of a Repository without blocking the
+ *  caller, so that one thread can drive many repositories. Each
+ *  operation returns a CompletableFuture at once and runs on an
+ *  executor: by default one virtual thread per operation where the JVM
+ *  has them, and otherwise a shared pool of daemon threads.
+ *
+ *  An operation reports its phases to an optional Progress as it
+ *  goes. Cancelling its future stops it at its next checkpoint and
+ *  leaves the repository as it was: objects already copied are
+ *  unreachable until gc, and a checkout puts back the files it has
+ *  rewritten as they were, uncommitted edits included. Past the point
+ *  where it moves a branch or deletes anything, an operation can no
+ *  longer be stopped, and cancel then returns false and the future
+ *  completes normally. Operations on one
+ *  repository still run one at a time, in the order they get its lock.
+ *  @author Jay Chiang
+ */
+public class AsyncRepository {
+
+    /** Receives the progress of an operation. */
+    @FunctionalInterface
+    public interface Progress {
+        /** Reports that DONE of TOTAL steps of PHASE are done, where
+         *  TOTAL is -1 if it is not known. Called on the thread running
+         *  the operation. */
+        void update(String phase, long done, long total);
+    }
+
+    /** Runs the operations of REPOSITORY on the default executor. */
+    public AsyncRepository(Repository repository) {
+        this(repository, defaultExecutor());
+    }
+
+    /** Runs the operations of REPOSITORY on EXECUTOR. */
+    public AsyncRepository(Repository repository, Executor executor) {
+        _repository = repository;
+        _executor = executor;
+    }
+
+    /** Returns the repository whose operations this runs. */
+    public Repository repository() {
+        return _repository;
+    }
+
+    /** Returns a snapshot of the repository, as Repository.snapshot. */
+    public CompletableFuture<Repository.Snapshot> snapshot() {
+        return submit(null, _repository::snapshot);
+    }
+
+    /** Commits the stage with MESSAGE, as Repository.commit. */
+    public CompletableFuture<Commit> commit(String message) {
+        return submit(null, () -> _repository.commit(message));
+    }
+
+    /** Checks out branch NAME, as Repository.checkout, reporting to
+     *  PROGRESS, which may be null. */
+    public CompletableFuture<Void> checkout(String name, Progress progress) {
+        return submit(progress, () -> {
+            _repository.checkout(name);
+            return null;
+        });
+    }
+
+    /** Merges branch NAME into the current one, as Repository.merge,
+     *  reporting to PROGRESS, which may be null. */
+    public CompletableFuture<Repository.MergeResult> merge(
+            String name, Progress progress) {
+        return submit(progress, () -> _repository.merge(name));
+    }
+
+    /** Collects garbage, as Repository.gc, reporting to PROGRESS, which
+     *  may be null. */
+    public CompletableFuture<Void> gc(Progress progress) {
+        return submit(progress, () -> {
+            _repository.gc();
+            return null;
+        });
+    }
+
+    /** Fetches branch BRANCH of REMOTE, as Repository.fetch, reporting
+     *  to PROGRESS, which may be null. */
+    public CompletableFuture<Void> fetch(String remote, String branch,
+                                         Progress progress) {
+        return submit(progress, () -> {
+            _repository.fetch(remote, branch);
+            return null;
+        });
+    }
+
+    /** Pushes to branch BRANCH of REMOTE, as Repository.push, reporting
+     *  to PROGRESS, which may be null. */
+    public CompletableFuture<Void> push(String remote, String branch,
+                                        Progress progress) {
+        return submit(progress, () -> {
+            _repository.push(remote, branch);
+            return null;
+        });
+    }
+
+    /** Fetches and merges branch BRANCH of REMOTE, as Repository.pull,
+     *  reporting to PROGRESS, which may be null. */
+    public CompletableFuture<Repository.MergeResult> pull(
+            String remote, String branch, Progress progress) {
+        return submit(progress, () -> _repository.pull(remote, branch));
+    }
+
+    /** A future that cancels the task computing it. */
+    private static final class TaskFuture<T> extends CompletableFuture<T> {
+
+        /** A future for the value TASK computes. */
+        TaskFuture(Task task) {
+            _task = task;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return _task.cancel() && super.cancel(mayInterruptIfRunning);
+        }
+
+        /** The task computing this. */
+        private final Task _task;
+    }
+
+    /** Returns a future for the value of ACTION, run on the executor as
+     *  a task reporting to PROGRESS. */
+    private <T> CompletableFuture<T> submit(Progress progress,
+                                            Supplier<T> action) {
+        Task task = new Task(progress);
+        TaskFuture<T> result = new TaskFuture<>(task);
+        _executor.execute(() -> {
+            try {
+                result.complete(task.run(() -> {
+                    Task.checkpoint();
+                    return action.get();
+                }));
+            } catch (Throwable excp) {
+                result.completeExceptionally(excp);
+            }
+        });
+        return result;
+    }
+
+    /** Returns the executor used unless another is given. */
+    private static synchronized Executor defaultExecutor() {
+        if (_defaultExecutor == null) {
+            _defaultExecutor = virtualThreads();
+        }
+        if (_defaultExecutor == null) {
+            _defaultExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "gitlet-async");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return _defaultExecutor;
+    }
+
+    /** Returns an executor starting a virtual thread per task, or null
+     *  if this JVM has no virtual threads. It is looked up at run time
+     *  so that gitlet still builds and runs on JVMs without them. */
+    private static Executor virtualThreads() {
+        try {
+            return (ExecutorService) MethodHandles.publicLookup()
+                .findStatic(Executors.class,
+                        "newVirtualThreadPerTaskExecutor",
+                        MethodType.methodType(ExecutorService.class))
+                .invoke();
+        } catch (Throwable excp) {
+            return null;
+        }
+    }
+
+    /** The executor used unless another is given, once made. */
+    private static Executor _defaultExecutor;
+
+    /** The repository whose operations this runs. */
+    private final Repository _repository;
+    /** Where operations run. */
+    private final Executor _executor;
+}
@@ -0,0 +1,155 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** Finds the commit that last changed each line of a file, following
+ *  first parents. Commits in which the file's blob ID is unchanged are
+ *  passed over without reading the blob; a line diff is run only where
+ *  the blob changes. The result for a blob is cached on disk keyed by
+ *  the blob ID and the oldest commit of the run of commits holding it,
+ *  so blaming again after new commits only diffs the new changes.
+ *  @author Jay Chiang
+ */
+class Blame {
+
+    /** A blamer reading commits from COMMITDIR and blobs from BLOBDIR,
+     *  and caching results in CACHEDIR. Before diffing, it passes the
+     *  blobs it will read to FETCH, which brings those missing from a
+     *  partial clone into BLOBDIR. */
+    Blame(File commitDir, File blobDir, File cacheDir,
+          Consumer<Collection<ObjectId>> fetch) {
+        _commitDir = commitDir;
+        _blobDir = blobDir;
+        _cacheDir = cacheDir;
+        _fetch = fetch;
+    }
+
+    /** Returns, for each line of FILENAME as it is in commit HEAD, the
+     *  UID of the commit that introduced it, or null if HEAD does not
+     *  track FILENAME. */
+    String[] blame(Commit head, String fileName) {
+        String blobUID =
+            ObjectId.toNullableString(head.getBlobs().get(fileName));
+        if (blobUID == null) {
+            return null;
+        }
+        ArrayDeque<String[]> pending = new ArrayDeque<>();
+        CommitIterator commits = new CommitIterator(_commitDir, head);
+        Commit intro = commits.next();
+        String[] owners = null;
+        while (owners == null) {
+            Commit parent = null;
+            String parentBlobUID = null;
+            while (commits.hasNext()) {
+                parent = commits.next();
+                parentBlobUID = ObjectId.toNullableString(
+                        parent.getBlobs().get(fileName));
+                if (!blobUID.equals(parentBlobUID)) {
+                    break;
+                }
+                intro = parent;
+                parent = null;
+            }
+            owners = readCache(blobUID, intro.getUID());
+            if (owners != null) {
+                break;
+            }
+            pending.push(new String[] {blobUID, intro.getUID()});
+            if (parent == null || parentBlobUID == null) {
+                owners = new String[0];
+                blobUID = null;
+                break;
+            }
+            blobUID = parentBlobUID;
+            intro = parent;
+        }
+        ArrayList<ObjectId> needed = new ArrayList<>();
+        if (blobUID != null && !pending.isEmpty()) {
+            needed.add(ObjectId.fromString(blobUID));
+        }
+        for (String[] step : pending) {
+            needed.add(ObjectId.fromString(step[0]));
+        }
+        _fetch.accept(needed);
+        while (!pending.isEmpty()) {
+            String[] step = pending.pop();
+            owners = advance(blobUID, owners, step[0], step[1]);
+            blobUID = step[0];
+            _cacheDir.mkdir();
+            Utils.writeContentsAtomically(cacheFile(step[0], step[1]),
+                    Utils.serialize(owners));
+        }
+        return owners;
+    }
+
+    /** Returns the owners of the lines of blob TOUID, introduced by
+     *  commit INTROUID over blob FROMUID (null if the file was absent)
+     *  whose lines are owned by OWNERS. Lines kept from FROMUID keep
+     *  their owners; the others are owned by INTROUID. */
+    private String[] advance(String fromUID, String[] owners,
+                             String toUID, String introUID) {
+        String[] to = Diff.lines(readBlob(toUID));
+        String[] result = new String[to.length];
+        if (fromUID == null) {
+            Arrays.fill(result, introUID);
+            return result;
+        }
+        String[] from = Diff.lines(readBlob(fromUID));
+        List<Diff.Edit> edits = Diff.diff(from, to);
+        int posA = 0;
+        int posB = 0;
+        for (Diff.Edit edit : edits) {
+            while (posB < edit.beginB) {
+                result[posB] = owners[posA];
+                posA += 1;
+                posB += 1;
+            }
+            while (posB < edit.endB) {
+                result[posB] = introUID;
+                posB += 1;
+            }
+            posA = edit.endA;
+        }
+        while (posB < to.length) {
+            result[posB] = owners[posA];
+            posA += 1;
+            posB += 1;
+        }
+        return result;
+    }
+
+    /** Returns the cached owners of the lines of blob BLOBUID introduced
+     *  by commit INTROUID, or null if not cached. */
+    private String[] readCache(String blobUID, String introUID) {
+        File cached = cacheFile(blobUID, introUID);
+        if (!cached.isFile()) {
+            return null;
+        }
+        return Utils.readObject(cached, String[].class);
+    }
+
+    /** Returns the cache file of blob BLOBUID introduced by INTROUID. */
+    private File cacheFile(String blobUID, String introUID) {
+        return new File(_cacheDir, blobUID + "-" + introUID + ".txt");
+    }
+
+    /** Returns the contents of blob UID. */
+    private byte[] readBlob(String uID) {
+        return Utils.readContents(new File(_blobDir, uID + ".txt"));
+    }
+
+    /** Directory of commits. */
+    private final File _commitDir;
+    /** Directory of blobs. */
+    private final File _blobDir;
+    /** Directory of cached results. */
+    private final File _cacheDir;
+    /** Fetches the missing blobs among those it is given. */
+    private final Consumer<Collection<ObjectId>> _fetch;
+}
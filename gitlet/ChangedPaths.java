@@ -0,0 +1,297 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+
+/** A Bloom filter per commit of the files changed since its first
+ *  parent, kept with the parent's UID in one index file beside the
+ *  commits. A walk along first parents that looks for the commits
+ *  changing a file reads only the index, and reads commits just where
+ *  the filter says the file may have changed; a filter never misses a
+ *  changed file, but may falsely report one, so hits are confirmed by
+ *  comparing manifests. Commands that make or receive commits, which
+ *  hold the exclusive lock, append their filters as they go. Older
+ *  commits not in the index get their filter the first time a walk
+ *  reaches them; walks run under a shared lock, so they save by
+ *  replacing the index whole through a temporary file, and no walk
+ *  reads another's half-written record.
+ *  @author Jay Chiang
+ */
+class ChangedPaths {
+
+    /** Name of the index file in .gitlet. */
+    static final String FILE_NAME = "changed-paths";
+
+    /** Filter bits per changed file. */
+    static final int BITS_PER_PATH = 10;
+    /** Bits probed per file. */
+    static final int HASHES = 7;
+    /** Fewest bits in a filter. */
+    static final int MIN_BITS = 64;
+    /** Most changed files kept in a filter; a commit changing more gets
+     *  an empty filter, which matches every file. */
+    static final int MAX_PATHS = 512;
+
+    /** The filters of the commits in COMMITDIR, indexed in INDEXFILE. */
+    ChangedPaths(File commitDir, File indexFile) {
+        _commitDir = commitDir;
+        _indexFile = indexFile;
+        load();
+    }
+
+    /** Returns the commits, starting at commit START and following first
+     *  parents, newest first, whose version of PATH differs from their
+     *  first parent's; a root commit changes every file it holds. */
+    Iterator<Commit> touching(String start, String path) {
+        int[] probes = probes(path);
+        return new Iterator<Commit>() {
+            @Override
+            public boolean hasNext() {
+                while (_next == null && _uID != null) {
+                    Record record = record(_uID);
+                    if (record.mayContain(probes)) {
+                        Commit commit = read(_uID);
+                        ObjectId parentBlob = record.parent == null ? null
+                                : read(record.parent).getBlobs().get(path);
+                        ObjectId blob = commit.getBlobs().get(path);
+                        if (blob == null ? parentBlob != null
+                                : !blob.equals(parentBlob)) {
+                            _next = commit;
+                        }
+                    }
+                    _uID = record.parent;
+                }
+                return _next != null;
+            }
+
+            @Override
+            public Commit next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Commit result = _next;
+                _next = null;
+                return result;
+            }
+
+            /** The next commit to look at. */
+            private String _uID = start;
+            /** The next commit to return, if found. */
+            private Commit _next;
+        };
+    }
+
+    /** Replaces the index with every filter read or computed, if any
+     *  was computed since it was read. */
+    void save() {
+        if (_added.isEmpty()) {
+            return;
+        }
+        byte[] bytes = encode(_records.keySet());
+        Utils.writeContentsAtomically(_indexFile, bytes);
+        _length = bytes.length;
+        _added.clear();
+    }
+
+    /** Appends to the index the filters of commit START and of each of
+     *  its first-parent ancestors not in it yet, stopping at the first
+     *  one that is. Only a command holding the exclusive lock may do
+     *  this. A record cut short at the end of the index, as a crash
+     *  leaves it, is cut off first. */
+    void add(String start) {
+        String uID = start;
+        while (uID != null && !_records.containsKey(uID)) {
+            uID = record(uID).parent;
+        }
+        if (_added.isEmpty()) {
+            return;
+        }
+        byte[] bytes = encode(_added);
+        try (FileChannel channel = FileChannel.open(_indexFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(_length);
+            channel.write(ByteBuffer.wrap(bytes), _length);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        _length += bytes.length;
+        _added.clear();
+    }
+
+    /** Returns the filter of the files in the manifest TO that differ
+     *  from the manifest FROM (null for a root commit). */
+    static byte[] filter(Manifest from, Manifest to) {
+        ArrayList<String> changed = new ArrayList<>();
+        Manifest.diff(from == null ? Manifest.EMPTY : from, to,
+            (path, fromUID, toUID) -> changed.add(path));
+        if (changed.size() > MAX_PATHS) {
+            return new byte[0];
+        }
+        int bits = Math.max(MIN_BITS, changed.size() * BITS_PER_PATH);
+        byte[] result = new byte[(bits + 7) / 8];
+        for (String name : changed) {
+            for (int probe : probes(name)) {
+                int bit = Math.floorMod(probe, result.length * 8);
+                result[bit / 8] |= 1 << (bit % 8);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the HASHES hash values of PATH, one per probed bit, by
+     *  double hashing two independent hashes of its bytes. */
+    static int[] probes(String path) {
+        byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+        int h1 = 0x811c9dc5;
+        int h2 = 0x9747b28c;
+        for (byte b : bytes) {
+            h1 = (h1 ^ (b & 0xff)) * 0x01000193;
+            h2 = Integer.rotateLeft(h2 ^ ((b & 0xff) * 0xcc9e2d51), 13) * 5
+                    + 0xe6546b64;
+        }
+        h2 = (h2 ^ (h2 >>> 16)) * 0x85ebca6b | 1;
+        int[] result = new int[HASHES];
+        for (int i = 0; i < HASHES; i += 1) {
+            result[i] = h1 + i * h2;
+        }
+        return result;
+    }
+
+    /** Returns the records of the commits UIDS as they are kept in the
+     *  index. */
+    private byte[] encode(Collection<String> uIDs) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream data = new DataOutputStream(bytes)) {
+            for (String uID : uIDs) {
+                Record record = _records.get(uID);
+                data.writeUTF(uID);
+                data.writeUTF(record.parent == null ? "" : record.parent);
+                data.writeShort(record.bits.length);
+                data.write(record.bits);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Returns the record of commit UID, computing it if it is not in
+     *  the index. */
+    private Record record(String uID) {
+        Record record = _records.get(uID);
+        if (record == null) {
+            Commit commit = read(uID);
+            String parent = commit.getParentUID();
+            record = new Record(parent, filter(
+                    parent == null ? null : read(parent).getBlobs(),
+                    commit.getBlobs()));
+            _records.put(uID, record);
+            _added.add(uID);
+        }
+        return record;
+    }
+
+    /** Returns commit UID. The last few commits read are kept, since a
+     *  commit is read once as a parent and again for its own filter. */
+    private Commit read(String uID) {
+        Commit commit = _recent.get(uID);
+        if (commit == null) {
+            commit = Utils.readObject(new File(_commitDir, uID + ".txt"),
+                    Commit.class);
+            if (_recent.size() >= RECENT) {
+                _recent.clear();
+            }
+            _recent.put(uID, commit);
+        }
+        return commit;
+    }
+
+    /** Reads the index, ignoring a record cut short at its end, and
+     *  notes the length of the whole records. */
+    private void load() {
+        if (!_indexFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(_indexFile)))) {
+            while (true) {
+                String uID = in.readUTF();
+                String parent = in.readUTF();
+                byte[] bits = new byte[in.readUnsignedShort()];
+                in.readFully(bits);
+                _records.put(uID, new Record(
+                        parent.isEmpty() ? null : parent, bits));
+                _length += 2 + uID.length() + 2 + parent.length() + 2
+                    + bits.length;
+            }
+        } catch (EOFException excp) {
+            return;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** The first parent and filter of one commit. */
+    private static class Record {
+
+        /** A record of a commit whose first parent is PARENT (null for a
+         *  root) with filter BITS. */
+        Record(String parent, byte[] bits) {
+            this.parent = parent;
+            this.bits = bits;
+        }
+
+        /** Returns false if no file whose probes are PROBES can have
+         *  changed. */
+        boolean mayContain(int[] probes) {
+            if (bits.length == 0) {
+                return true;
+            }
+            for (int probe : probes) {
+                int bit = Math.floorMod(probe, bits.length * 8);
+                if ((bits[bit / 8] & (1 << (bit % 8))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** UID of the first parent, or null. */
+        private final String parent;
+        /** The filter, empty if it matches everything. */
+        private final byte[] bits;
+    }
+
+    /** Number of recently read commits kept. */
+    private static final int RECENT = 4;
+
+    /** Directory of commits. */
+    private final File _commitDir;
+    /** The index file. */
+    private final File _indexFile;
+    /** Records by commit UID. */
+    private final HashMap<String, Record> _records = new HashMap<>();
+    /** UIDs of the records computed since the index was read or written,
+     *  in order. */
+    private final LinkedHashSet<String> _added = new LinkedHashSet<>();
+    /** Bytes of whole records in the index file. */
+    private long _length;
+    /** Recently read commits. */
+    private final HashMap<String, Commit> _recent = new HashMap<>();
+}
@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.Serializable;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
 
 /** The commit class.
  *  @author Jay Chiang
@@ -13,41 +12,25 @@ public class Commit implements Serializable {
 
     /** defualt constructor using MESSAGE, PARENTUID, BLOBS. */
     public Commit(String message, String parentUID,
-                  HashMap<String, String> blobs) {
-        _message = message;
-        _parentUID = parentUID;
-        _mergeParent = null;
-        if (_parentUID == null) {
-            _timestamp = "Thu Jan 01 00:00:00 1970 -0800";
-        } else {
-            ZonedDateTime time = ZonedDateTime.now();
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern(
-                    "EEE LLL dd HH:mm:ss yyyy Z");
-            _timestamp = time.format(timeFormatter);
-        }
-        _blobs = blobs;
-        _UID = Utils.getSha1(this);
-        File cwd = new File(System.getProperty("user.dir"));
-        File globalLog = new File(cwd, ".gitlet/logs/glbal-log.txt");
-        if (globalLog.exists()) {
-            String content = makeLog();
-            content +=  Utils.readContentsAsString(globalLog);
-            Utils.writeContents(globalLog, content);
-        } else {
-            Utils.writeContents(globalLog, makeLog());
-        }
-        File commitDir = new File(cwd, ".gitlet/commits");
-        Utils.writeObject(new File(commitDir, _UID + ".txt"),
-                this);
+                  Manifest blobs) {
+        this(defaultGitletDir(), message, parentUID, blobs, null);
     }
 
     /** special constructor for a merge commit using MESSAGE
      * PARENTUID, BLOBS, and MERGEPARENT. */
     public Commit(String message, String parentUID,
-                  HashMap<String, String> blobs, String mergeParent) {
+                  Manifest blobs, String mergeParent) {
+        this(defaultGitletDir(), message, parentUID, blobs, mergeParent);
+    }
+
+    /** A commit with MESSAGE, PARENTUID, BLOBS and MERGEPARENT, which is
+     *  null unless this is a merge, written to the repository whose
+     *  .gitlet directory is GITLETDIR and added to its global log. */
+    Commit(File gitletDir, String message, String parentUID,
+           Manifest blobs, String mergeParent) {
         _message = message;
-        _parentUID = parentUID;
-        _mergeParent = mergeParent;
+        _parentUID = ObjectId.fromNullable(parentUID);
+        _mergeParent = ObjectId.fromNullable(mergeParent);
         if (_parentUID == null) {
             _timestamp = "Thu Jan 01 00:00:00 1970 -0800";
         } else {
@@ -57,21 +40,45 @@ public class Commit implements Serializable {
             _timestamp = time.format(timeFormatter);
         }
         _blobs = blobs;
-        _UID = Utils.getSha1(this);
-        File cwd = new File(System.getProperty("user.dir"));
-        File globalLog = new File(cwd, ".gitlet/logs/glbal-log.txt");
-        if (globalLog.exists()) {
-            String content = makeLogMerge();
-            content +=  Utils.readContentsAsString(globalLog);
-            Utils.writeContents(globalLog, content);
-        } else {
-            Utils.writeContents(globalLog, makeLogMerge());
+        File commitDir = new File(gitletDir, "commits");
+        _generation = computeGeneration(commitDir,
+                getParentUID(), getMergeParentUID());
+        _UID = Utils.sha1Id(Utils.serialize(this));
+        File globalLog = new File(gitletDir, "logs/glbal-log.txt");
+        String log = _mergeParent == null ? makeLog() : makeLogMerge();
+        try (Profiler.Span span = Profiler.span("global log")) {
+            if (globalLog.exists()) {
+                String content = log;
+                content +=  Utils.readContentsAsString(globalLog);
+                Utils.writeContents(globalLog, content);
+            } else {
+                Utils.writeContents(globalLog, log);
+            }
         }
-        File commitDir = new File(cwd, ".gitlet/commits");
         Utils.writeObject(new File(commitDir, _UID + ".txt"),
                 this);
     }
 
+    /** Returns the .gitlet directory of the current directory. */
+    private static File defaultGitletDir() {
+        return new File(System.getProperty("user.dir"), ".gitlet");
+    }
+
+    /** Returns the generation number of a commit with PARENTS, whose
+     *  commit files live in COMMITDIR: 1 for the initial commit, and
+     *  otherwise one more than the largest generation among its parents. */
+    private static int computeGeneration(File commitDir, String... parents) {
+        int result = 0;
+        for (String parent : parents) {
+            if (parent != null) {
+                Commit parentCommit = Utils.readObject(
+                        new File(commitDir, parent + ".txt"), Commit.class);
+                result = Math.max(result, parentCommit.getGeneration());
+            }
+        }
+        return result + 1;
+    }
+
     /** returns log. */
     public String makeLog() {
         String result = "";
@@ -87,8 +94,8 @@ public class Commit implements Serializable {
         String result = "";
         result += "===" + "\n";
         result += "commit " + _UID + "\n";
-        result += "Merge: " + _parentUID.substring(0, 7) + " "
-                + _mergeParent.substring(0, 7) + "\n";
+        result += "Merge: " + getParentUID().substring(0, 7) + " "
+                + getMergeParentUID().substring(0, 7) + "\n";
         result += "Date: " + _timestamp + "\n";
         result += _message + "\n" + "\n";
         return result;
@@ -106,21 +113,26 @@ public class Commit implements Serializable {
 
     /** returns parentUID. */
     public String getParentUID() {
-        return _parentUID;
+        return ObjectId.toNullableString(_parentUID);
     }
 
     /** returns mergeParentUID. */
     public String getMergeParentUID() {
-        return _mergeParent;
+        return ObjectId.toNullableString(_mergeParent);
     }
 
     /** returns self UID. */
     public String getUID() {
-        return _UID;
+        return _UID.toString();
+    }
+
+    /** returns generation number. */
+    public int getGeneration() {
+        return _generation;
     }
 
     /** returns blobs. */
-    public HashMap<String, String> getBlobs() {
+    public Manifest getBlobs() {
         return _blobs;
     }
 
@@ -129,11 +141,17 @@ public class Commit implements Serializable {
     /** timestamp. */
     private String _timestamp;
     /** parentUID.. */
-    private String _parentUID;
+    private ObjectId _parentUID;
     /** UID. */
-    private String _UID;
+    private ObjectId _UID;
     /** blobs. */
-    private HashMap<String, String> _blobs;
+    private Manifest _blobs;
     /** mergeParentUID. */
-    private String _mergeParent;
+    private ObjectId _mergeParent;
+    /** generation number. */
+    private int _generation;
+
+    /** Fixed, so that the serialized form of a commit, and so its UID,
+     *  changes only with Git.FORMAT_VERSION. */
+    private static final long serialVersionUID = 1L;
 }
@@ -0,0 +1,47 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** Iterates lazily over a commit and its first-parent ancestors, newest
+ *  first. Each commit is read from disk only when it is asked for, so
+ *  a walk that stops early never touches the rest of the history.
+ *  @author Jay Chiang
+ */
+class CommitIterator implements Iterator<Commit> {
+
+    /** An iterator starting at commit START, reading the commits it
+     *  reaches from COMMITDIR. */
+    CommitIterator(File commitDir, Commit start) {
+        _commitDir = commitDir;
+        _next = start;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return _next != null || _nextUID != null;
+    }
+
+    @Override
+    public Commit next() {
+        if (_next == null) {
+            if (_nextUID == null) {
+                throw new NoSuchElementException();
+            }
+            _next = Utils.readObject(new File(_commitDir, _nextUID + ".txt"),
+                    Commit.class);
+        }
+        Commit result = _next;
+        _next = null;
+        _nextUID = result.getParentUID();
+        return result;
+    }
+
+    /** Directory of commits. */
+    private final File _commitDir;
+    /** The next commit, if already read. */
+    private Commit _next;
+    /** UID of the next commit, if not read yet; null at the root. */
+    private String _nextUID;
+}
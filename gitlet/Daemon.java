@@ -0,0 +1,218 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Serves the repositories below a directory to SocketTransport
+ *  clients, one thread per connection. A client first names a
+ *  repository by its path below the directory, then sends requests
+ *  in the order it wants them answered:
+ *  branches               the branches, as "UID NAME" frames, then an
+ *                         empty frame;
+ *  have UID...            "ack" followed by those UIDs the repository has;
+ *  want UID... common UID... [filter blob:none] done
+ *                         the pack of what WANTS reach and COMMON do not,
+ *                         without blobs if filtered;
+ *  blobs UID...           the pack of those blobs the repository has;
+ *  push BRANCH OLD NEW    followed by a pack; "ok" if BRANCH moved from
+ *                         OLD to NEW, "rejected" if it was not at OLD or
+ *                         NEW does not descend from it, and "error WHY"
+ *                         if BRANCH is not a plain branch name, NEW was
+ *                         not sent, or the pack is corrupt.
+ *  Clients are not authenticated, so unless told otherwise the daemon
+ *  listens only on the loopback interface.
+ *  @author Jay Chiang
+ */
+class Daemon {
+
+    /** A daemon serving the repositories below BASEDIR on PORT (0 for any
+     *  free port) of the loopback interface. */
+    Daemon(File baseDir, int port) throws IOException {
+        this(baseDir, port, false);
+    }
+
+    /** A daemon serving the repositories below BASEDIR on PORT (0 for any
+     *  free port), of every network interface if EXPOSED and otherwise
+     *  of the loopback interface only. */
+    Daemon(File baseDir, int port, boolean exposed) throws IOException {
+        _baseDir = baseDir.getCanonicalFile();
+        _server = new ServerSocket(port, 0,
+                exposed ? null : InetAddress.getLoopbackAddress());
+    }
+
+    /** Returns the port this daemon listens on. */
+    int port() {
+        return _server.getLocalPort();
+    }
+
+    /** Accepts and serves connections until the daemon is closed. */
+    void serve() {
+        while (!_server.isClosed()) {
+            Socket socket;
+            try {
+                socket = _server.accept();
+            } catch (IOException excp) {
+                return;
+            }
+            Thread worker = new Thread(() -> handle(socket));
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    /** Stops accepting connections. */
+    void close() throws IOException {
+        _server.close();
+    }
+
+    /** Serves the requests arriving on SOCKET, closing it at the end. */
+    private void handle(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    socket.getInputStream(), BUFFER_SIZE));
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream(),
+                            BUFFER_SIZE));
+            LocalTransport repo = open(SocketTransport.readFrame(in));
+            if (repo == null) {
+                SocketTransport.writeFrame(out, "no such repository");
+                out.flush();
+                return;
+            }
+            SocketTransport.writeFrame(out, "ok");
+            out.flush();
+            List<String> wants = List.of();
+            List<String> common = List.of();
+            boolean withBlobs = true;
+            for (String frame = SocketTransport.readFrame(in); frame != null;
+                 frame = SocketTransport.readFrame(in)) {
+                String request = frame.split(" ", 2)[0];
+                switch (request) {
+                case "branches":
+                    for (Map.Entry<String, String> branch
+                            : repo.branches().entrySet()) {
+                        SocketTransport.writeFrame(out,
+                                branch.getValue() + " " + branch.getKey());
+                    }
+                    SocketTransport.writeFrame(out, "");
+                    break;
+                case "have":
+                    SocketTransport.writeFrame(out, "ack" + join(repo.have(
+                            SocketTransport.words(frame, "have"))));
+                    break;
+                case "want":
+                    wants = SocketTransport.words(frame, "want");
+                    continue;
+                case "common":
+                    common = SocketTransport.words(frame, "common");
+                    continue;
+                case "filter":
+                    withBlobs = !SocketTransport.words(frame, "filter")
+                            .contains(SocketTransport.NO_BLOBS);
+                    continue;
+                case "done":
+                    Pack pack = repo.pack(wants, common);
+                    (withBlobs ? pack : pack.withoutBlobs()).write(out);
+                    withBlobs = true;
+                    break;
+                case "blobs":
+                    repo.blobs(SocketTransport.words(frame, "blobs"))
+                            .write(out);
+                    break;
+                case "push":
+                    try {
+                        SocketTransport.writeFrame(out, receivePush(repo,
+                                SocketTransport.words(frame, "push"), in));
+                    } catch (IOException | IllegalArgumentException excp) {
+                        SocketTransport.writeFrame(out,
+                                SocketTransport.ERROR + excp.getMessage());
+                        out.flush();
+                        return;
+                    }
+                    break;
+                default:
+                    SocketTransport.writeFrame(out, "unknown request");
+                }
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException | RuntimeException excp) {
+            System.err.println("gitlet daemon: " + excp.getMessage());
+        }
+    }
+
+    /** Returns a transport to the repository named by the request FRAME
+     *  ("repo PATH"), or null if there is no such repository below the
+     *  base directory. */
+    private LocalTransport open(String frame) throws IOException {
+        if (frame == null || !frame.startsWith("repo ")) {
+            return null;
+        }
+        File dir = new File(_baseDir, frame.substring(5)).getCanonicalFile();
+        File gitletDir = new File(dir, ".gitlet");
+        if (!dir.toPath().startsWith(_baseDir.toPath())
+                || !gitletDir.isDirectory()
+                || Git.formatError(gitletDir) != null) {
+            return null;
+        }
+        synchronized (_repos) {
+            return _repos.computeIfAbsent(gitletDir, LocalTransport::new);
+        }
+    }
+
+    /** Reads from IN the pack of a push with OPERANDS (BRANCH OLD NEW)
+     *  into REPO, moves BRANCH, and returns the reply: "ok" if it moved,
+     *  "rejected" if it had moved on, or an error saying why the push
+     *  was refused. Throws IOException if the pack is corrupt, or
+     *  IllegalArgumentException if REPO cannot be locked, leaving IN at
+     *  no message boundary. */
+    private static String receivePush(LocalTransport repo,
+                                      List<String> operands,
+                                      DataInputStream in)
+        throws IOException {
+        try (RepositoryLock lock = repo.lock()) {
+            repo.receive(in);
+            if (operands.size() != 3) {
+                return SocketTransport.ERROR + "Malformed push request.";
+            }
+            String oldUID = operands.get(1);
+            return repo.updateBranch(operands.get(0),
+                    oldUID.equals(SocketTransport.NO_COMMIT) ? null : oldUID,
+                    operands.get(2)) ? "ok" : "rejected";
+        } catch (GitletException excp) {
+            return SocketTransport.ERROR + excp.getMessage();
+        }
+    }
+
+    /** Returns the elements of WORDS, each preceded by a space. */
+    private static String join(List<String> words) {
+        StringBuilder result = new StringBuilder();
+        for (String word : words) {
+            result.append(' ').append(word);
+        }
+        return result.toString();
+    }
+
+    /** Size of the buffers around each connection. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The directory holding the repositories served. */
+    private final File _baseDir;
+    /** The listening socket. */
+    private final ServerSocket _server;
+    /** Transports to the repositories served so far, shared by all
+     *  connections so that branch updates are serialized. */
+    private final HashMap<File, LocalTransport> _repos = new HashMap<>();
+}
@@ -0,0 +1,423 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/** Line diffs using the linear-space variant of Myers' O(ND) algorithm.
+ *  Lines are compared as interned integers, and each subproblem is
+ *  split where the forward and backward searches meet, so memory stays
+ *  proportional to the input however far apart the two sides are.
+ *  @author Jay Chiang
+ */
+class Diff {
+
+    /** A replaced region: lines [beginA, endA) of the first sequence
+     *  became lines [beginB, endB) of the second. Either range may be
+     *  empty. */
+    static class Edit {
+        /** An edit replacing [BEGINA, ENDA) with [BEGINB, ENDB). */
+        Edit(int beginA, int endA, int beginB, int endB) {
+            this.beginA = beginA;
+            this.endA = endA;
+            this.beginB = beginB;
+            this.endB = endB;
+        }
+
+        /** Start of the edit in the first sequence. */
+        final int beginA;
+        /** End of the edit in the first sequence. */
+        final int endA;
+        /** Start of the edit in the second sequence. */
+        final int beginB;
+        /** End of the edit in the second sequence. */
+        final int endB;
+    }
+
+    /** Splits TEXT into lines, each keeping its terminating newline; the
+     *  last line has none if TEXT does not end in one. */
+    static String[] lines(String text) {
+        ArrayList<String> result = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            end = end < 0 ? text.length() : end + 1;
+            result.add(text.substring(start, end));
+            start = end;
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /** Returns the lines of CONTENTS, decoded byte for byte so that
+     *  writing them back with encode reproduces CONTENTS exactly. */
+    static String[] lines(byte[] contents) {
+        return lines(new String(contents, StandardCharsets.ISO_8859_1));
+    }
+
+    /** Returns the bytes of TEXT as produced by lines(byte[]). */
+    static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /** Maps each of SEQUENCES to integers, equal lines getting equal
+     *  numbers across all of them. */
+    static int[][] intern(String[]... sequences) {
+        HashMap<String, Integer> ids = new HashMap<>();
+        int[][] result = new int[sequences.length][];
+        for (int s = 0; s < sequences.length; s += 1) {
+            result[s] = new int[sequences[s].length];
+            for (int i = 0; i < sequences[s].length; i += 1) {
+                Integer id = ids.get(sequences[s][i]);
+                if (id == null) {
+                    id = ids.size();
+                    ids.put(sequences[s][i], id);
+                }
+                result[s][i] = id;
+            }
+        }
+        return result;
+    }
+
+    /** Writes to OUT the hunks of a unified diff turning lines A into
+     *  lines B, where EDITS are the edits between them. Each hunk shows
+     *  up to CONTEXT unchanged lines around its changes, and changes at
+     *  most 2 * CONTEXT lines apart share a hunk. */
+    static void writeUnified(Writer out, String[] a, String[] b,
+                             List<Edit> edits) throws IOException {
+        int e = 0;
+        while (e < edits.size()) {
+            int last = e;
+            while (last + 1 < edits.size()
+                    && edits.get(last + 1).beginA - edits.get(last).endA
+                        <= 2 * CONTEXT) {
+                last += 1;
+            }
+            Edit first = edits.get(e);
+            Edit end = edits.get(last);
+            int aLo = Math.max(0, first.beginA - CONTEXT);
+            int aHi = Math.min(a.length, end.endA + CONTEXT);
+            int bLo = first.beginB - (first.beginA - aLo);
+            int bHi = end.endB + (aHi - end.endA);
+            out.write("@@ -" + hunkRange(aLo, aHi)
+                    + " +" + hunkRange(bLo, bHi) + " @@\n");
+            int pos = aLo;
+            for (int k = e; k <= last; k += 1) {
+                Edit edit = edits.get(k);
+                for (; pos < edit.beginA; pos += 1) {
+                    writeLine(out, ' ', a[pos]);
+                }
+                for (int i = edit.beginA; i < edit.endA; i += 1) {
+                    writeLine(out, '-', a[i]);
+                }
+                for (int i = edit.beginB; i < edit.endB; i += 1) {
+                    writeLine(out, '+', b[i]);
+                }
+                pos = edit.endA;
+            }
+            for (; pos < aHi; pos += 1) {
+                writeLine(out, ' ', a[pos]);
+            }
+            e = last + 1;
+        }
+    }
+
+    /** Returns the range of lines [LO, HI) as written in a hunk header:
+     *  the 1-based first line and the line count, the count being left
+     *  out when it is 1. An empty range names the line before it. */
+    private static String hunkRange(int lo, int hi) {
+        if (hi - lo == 1) {
+            return Integer.toString(lo + 1);
+        }
+        return (hi == lo ? lo : lo + 1) + "," + (hi - lo);
+    }
+
+    /** Writes LINE to OUT after PREFIX, noting a missing final newline
+     *  as diff and patch expect. */
+    private static void writeLine(Writer out, char prefix, String line)
+        throws IOException {
+        out.write(prefix);
+        out.write(line);
+        if (!line.endsWith("\n")) {
+            out.write("\n\\ No newline at end of file\n");
+        }
+    }
+
+    /** Returns true if CONTENTS looks binary, i.e. has a NUL byte in
+     *  its first BINARY_PROBE bytes, as git decides. */
+    static boolean isBinary(byte[] contents) {
+        for (int i = 0; i < Math.min(contents.length, BINARY_PROBE); i += 1) {
+            if (contents[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the edits turning lines A into lines B. */
+    static List<Edit> diff(String[] a, String[] b) {
+        int[][] ids = intern(a, b);
+        return diff(ids[0], ids[1]);
+    }
+
+    /** Returns a shortest list of edits turning A into B, in increasing
+     *  order and with no two edits adjacent. */
+    static List<Edit> diff(int[] a, int[] b) {
+        return new Diff(a, b).run();
+    }
+
+    /** A diff of A against B. */
+    private Diff(int[] a, int[] b) {
+        _a = a;
+        _b = b;
+        _maxCost = Math.max(MIN_COST, (int) Math.sqrt(a.length + b.length));
+    }
+
+    /** Returns the edits of this diff. Lines occurring on only one
+     *  side cannot be part of any common subsequence, so they are marked
+     *  changed up front and the search runs on what is left. */
+    private List<Edit> run() {
+        boolean[] changedA = new boolean[_a.length];
+        boolean[] changedB = new boolean[_b.length];
+        int[] keptA = keepMatched(_a, _b, changedA);
+        int[] keptB = keepMatched(_b, _a, changedB);
+        int[] fullA = _a;
+        int[] fullB = _b;
+        _a = new int[keptA.length];
+        _b = new int[keptB.length];
+        for (int i = 0; i < keptA.length; i += 1) {
+            _a[i] = fullA[keptA[i]];
+        }
+        for (int i = 0; i < keptB.length; i += 1) {
+            _b[i] = fullB[keptB[i]];
+        }
+        search(changedA, keptA, changedB, keptB);
+        return edits(changedA, changedB);
+    }
+
+    /** Returns the indices of the lines of SEQ that also occur in OTHER,
+     *  in order, marking the rest in CHANGED. */
+    private static int[] keepMatched(int[] seq, int[] other,
+                                     boolean[] changed) {
+        HashSet<Integer> present = new HashSet<>();
+        for (int line : other) {
+            present.add(line);
+        }
+        int[] kept = new int[seq.length];
+        int count = 0;
+        for (int i = 0; i < seq.length; i += 1) {
+            if (present.contains(seq[i])) {
+                kept[count] = i;
+                count += 1;
+            } else {
+                changed[i] = true;
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    /** Marks in CHANGEDA and CHANGEDB the lines outside a common
+     *  subsequence of _a and _b, whose lines are those of the original
+     *  sequences at KEPTA and KEPTB. */
+    private void search(boolean[] changedA, int[] keptA,
+                        boolean[] changedB, int[] keptB) {
+        ArrayDeque<int[]> work = new ArrayDeque<>();
+        work.push(new int[] { 0, _a.length, 0, _b.length });
+        while (!work.isEmpty()) {
+            int[] range = work.pop();
+            int aLo = range[0];
+            int aHi = range[1];
+            int bLo = range[2];
+            int bHi = range[3];
+            while (aLo < aHi && bLo < bHi && _a[aLo] == _b[bLo]) {
+                aLo += 1;
+                bLo += 1;
+            }
+            while (aLo < aHi && bLo < bHi && _a[aHi - 1] == _b[bHi - 1]) {
+                aHi -= 1;
+                bHi -= 1;
+            }
+            if (aLo == aHi || bLo == bHi
+                    || !shareLine(aLo, aHi, bLo, bHi)) {
+                for (int i = aLo; i < aHi; i += 1) {
+                    changedA[keptA[i]] = true;
+                }
+                for (int i = bLo; i < bHi; i += 1) {
+                    changedB[keptB[i]] = true;
+                }
+                continue;
+            }
+            int[] mid = split(aLo, aHi, bLo, bHi);
+            work.push(new int[] { mid[0], aHi, mid[1], bHi });
+            work.push(new int[] { aLo, mid[0], bLo, mid[1] });
+        }
+    }
+
+    /** Returns true if some line of _a[ALO, AHI) also occurs in
+     *  _b[BLO, BHI). */
+    private boolean shareLine(int aLo, int aHi, int bLo, int bHi) {
+        HashSet<Integer> present = new HashSet<>();
+        for (int i = bLo; i < bHi; i += 1) {
+            present.add(_b[i]);
+        }
+        for (int i = aLo; i < aHi; i += 1) {
+            if (present.contains(_a[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns {x, y}, a point on a shortest edit path through
+     *  A[ALO, AHI) and B[BLO, BHI) about halfway along it, found by
+     *  running the greedy search forwards from the start and backwards
+     *  from the end until the two meet. Both ranges are non-empty and
+     *  differ at both ends. If the searches have not met after _maxCost
+     *  steps, gives up on minimality and returns the point that either
+     *  search has carried furthest, as git's xdiff does. */
+    private int[] split(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int o = maxD;
+        int[] vf = new int[2 * maxD + 2];
+        int[] vb = new int[2 * maxD + 2];
+        Arrays.fill(vf, -1);
+        Arrays.fill(vb, -1);
+        vf[o + 1] = 0;
+        vb[o + 1] = 0;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int fStart = 0;
+        int fEnd = 0;
+        int bStart = 0;
+        int bEnd = 0;
+        for (int d = 0; d < maxD; d += 1) {
+            if (d > _maxCost) {
+                return furthest(aLo, aHi, bLo, bHi, vf, vb, d - 1);
+            }
+            for (int k = -d + fStart; k <= d - fEnd; k += 2) {
+                boolean down = k == -d
+                        || (k != d && vf[o + k - 1] < vf[o + k + 1]);
+                int x = down ? vf[o + k + 1] : vf[o + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m && _a[aLo + x] == _b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                vf[o + k] = x;
+                if (x > n) {
+                    fEnd += 2;
+                } else if (y > m) {
+                    fStart += 2;
+                } else if (odd) {
+                    int r = o + delta - k;
+                    if (r >= 0 && r < vb.length && vb[r] != -1
+                            && x >= n - vb[r]) {
+                        return new int[] { aLo + x, bLo + y };
+                    }
+                }
+            }
+            for (int k = -d + bStart; k <= d - bEnd; k += 2) {
+                boolean down = k == -d
+                        || (k != d && vb[o + k - 1] < vb[o + k + 1]);
+                int x = down ? vb[o + k + 1] : vb[o + k - 1] + 1;
+                int y = x - k;
+                while (x < n && y < m
+                        && _a[aHi - 1 - x] == _b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                vb[o + k] = x;
+                if (x > n) {
+                    bEnd += 2;
+                } else if (y > m) {
+                    bStart += 2;
+                } else if (!odd) {
+                    int f = o + delta - k;
+                    if (f >= 0 && f < vf.length && vf[f] != -1
+                            && vf[f] >= n - x) {
+                        int fx = vf[f];
+                        return new int[] { aLo + fx, bLo + fx - (f - o) };
+                    }
+                }
+            }
+        }
+        return new int[] { aLo, bHi };
+    }
+
+    /** Returns the point furthest from its end of A[ALO, AHI) and
+     *  B[BLO, BHI) reached by the forward search VF or the backward
+     *  search VB after D steps. */
+    private int[] furthest(int aLo, int aHi, int bLo, int bHi,
+                           int[] vf, int[] vb, int d) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int o = (vf.length - 2) / 2;
+        int best = 0;
+        int[] result = new int[] { aLo, bHi };
+        for (int k = -d; k <= d; k += 2) {
+            int x = vf[o + k];
+            int y = x - k;
+            if (x >= 0 && x <= n && y >= 0 && y <= m && x + y > best) {
+                best = x + y;
+                result = new int[] { aLo + x, bLo + y };
+            }
+            x = vb[o + k];
+            y = x - k;
+            if (x >= 0 && x <= n && y >= 0 && y <= m && x + y > best) {
+                best = x + y;
+                result = new int[] { aHi - x, bHi - y };
+            }
+        }
+        return result;
+    }
+
+    /** Returns the edits marked by CHANGEDA and CHANGEDB, whose unmarked
+     *  lines pair up in order. */
+    private static List<Edit> edits(boolean[] changedA, boolean[] changedB) {
+        ArrayList<Edit> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < changedA.length || j < changedB.length) {
+            if (i < changedA.length && j < changedB.length
+                    && !changedA[i] && !changedB[j]) {
+                i += 1;
+                j += 1;
+                continue;
+            }
+            int beginA = i;
+            int beginB = j;
+            while (i < changedA.length && changedA[i]) {
+                i += 1;
+            }
+            while (j < changedB.length && changedB[j]) {
+                j += 1;
+            }
+            result.add(new Edit(beginA, i, beginB, j));
+        }
+        return result;
+    }
+
+    /** Unchanged lines shown around each change in a unified diff. */
+    static final int CONTEXT = 3;
+
+    /** Bytes examined by isBinary. */
+    private static final int BINARY_PROBE = 8000;
+
+    /** The fewest steps each search may take before split settles for
+     *  a possibly non-minimal split point. */
+    private static final int MIN_COST = 256;
+
+    /** Search steps allowed before split gives up on minimality. */
+    private final int _maxCost;
+    /** The first sequence, then the part of it being searched. */
+    private int[] _a;
+    /** The second sequence, then the part of it being searched. */
+    private int[] _b;
+}
@@ -0,0 +1,352 @@
+package gitlet;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+
+/** An immutable set of small non-negative integers, stored as an EWAH
+ *  compressed bitmap: the bits are cut into 64-bit words, and runs of
+ *  words that are all zeros or all ones are stored as counts. The words
+ *  alternate between a marker and the literal words after it. A marker
+ *  holds in bit 0 the bit its run repeats, in bits 1 to 32 the number of
+ *  words in the run, and in bits 33 to 63 the number of literal words
+ *  that follow it. Set operations work on runs without expanding them,
+ *  so sets whose members mostly form long intervals, as reachable
+ *  objects numbered in history order do, stay small and fast.
+ *  @author Jay Chiang
+ */
+class EwahBitmap {
+
+    /** The empty set. */
+    static final EwahBitmap EMPTY = new Builder().build();
+
+    /** Returns the set holding the members of BITS. */
+    static EwahBitmap of(BitSet bits) {
+        Builder builder = new Builder();
+        bits.stream().forEach(builder::set);
+        return builder.build();
+    }
+
+    /** Returns the union of this set and OTHER. */
+    EwahBitmap or(EwahBitmap other) {
+        return combine(this, other, OR);
+    }
+
+    /** Returns the intersection of this set and OTHER. */
+    EwahBitmap and(EwahBitmap other) {
+        return combine(this, other, AND);
+    }
+
+    /** Returns the members of this set that are not in OTHER. */
+    EwahBitmap andNot(EwahBitmap other) {
+        return combine(this, other, AND_NOT);
+    }
+
+    /** Returns true if I is in this set. */
+    boolean get(int i) {
+        Cursor cursor = new Cursor(this);
+        long word = i / 64;
+        while (cursor.hasNext()) {
+            if (cursor._run > 0) {
+                if (word < cursor._run) {
+                    return cursor._bit;
+                }
+                word -= cursor._run;
+                cursor.skip(cursor._run);
+            } else if (word == 0) {
+                return (cursor.next() & (1L << (i % 64))) != 0;
+            } else {
+                cursor.next();
+                word -= 1;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the number of members of this set. */
+    int cardinality() {
+        int[] count = new int[1];
+        forEach(i -> count[0] += 1);
+        return count[0];
+    }
+
+    /** Calls ACTION on each member of this set, in increasing order. */
+    void forEach(IntConsumer action) {
+        Cursor cursor = new Cursor(this);
+        long base = 0;
+        while (cursor.hasNext()) {
+            if (cursor._run > 0) {
+                if (cursor._bit) {
+                    for (long i = base; i < base + 64 * cursor._run; i += 1) {
+                        action.accept((int) i);
+                    }
+                }
+                base += 64 * cursor._run;
+                cursor.skip(cursor._run);
+            } else {
+                for (long word = cursor.next(); word != 0;
+                     word &= word - 1) {
+                    action.accept((int) (base
+                            + Long.numberOfTrailingZeros(word)));
+                }
+                base += 64;
+            }
+        }
+    }
+
+    /** Returns the number of 64-bit words this set is stored in. */
+    int storedWords() {
+        return _size;
+    }
+
+    /** Writes this set to OUT. */
+    void write(DataOutputStream out) throws IOException {
+        out.writeInt(_size);
+        for (int i = 0; i < _size; i += 1) {
+            out.writeLong(_words[i]);
+        }
+    }
+
+    /** Returns a set read from IN, as written by write. */
+    static EwahBitmap read(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("corrupt bitmap");
+        }
+        long[] words = new long[size];
+        for (int i = 0; i < size; i += 1) {
+            words[i] = in.readLong();
+        }
+        return new EwahBitmap(words, size);
+    }
+
+    /** Builds a set from members given in increasing order. */
+    static class Builder {
+
+        /** Adds I, which must be larger than every member added so far. */
+        void set(int i) {
+            long word = i / 64;
+            if (word != _current) {
+                if (_current >= 0) {
+                    addWord(_value);
+                }
+                addFill(false, word - _current - 1);
+                _current = word;
+                _value = 0;
+            }
+            _value |= 1L << (i % 64);
+        }
+
+        /** Returns the set of the members added. */
+        EwahBitmap build() {
+            if (_current >= 0) {
+                addWord(_value);
+                _current = -1;
+            }
+            if (_marker >= 0 && literals(_words[_marker]) == 0
+                    && !runBit(_words[_marker])) {
+                _size = _marker;
+                _marker = -1;
+            }
+            return new EwahBitmap(Arrays.copyOf(_words, _size), _size);
+        }
+
+        /** Appends WORD, counting it into a run if it is all zeros or all
+         *  ones. */
+        void addWord(long word) {
+            if (word == 0 || word == ~0L) {
+                addFill(word != 0, 1);
+                return;
+            }
+            if (_marker < 0 || literals(_words[_marker]) == MAX_LITERALS) {
+                newMarker(false, 0);
+            }
+            append(word);
+            _words[_marker] += 1L << LITERAL_SHIFT;
+        }
+
+        /** Appends COUNT words all of whose bits are BIT. */
+        void addFill(boolean bit, long count) {
+            while (count > 0) {
+                if (_marker < 0 || literals(_words[_marker]) > 0
+                        || runLength(_words[_marker]) > 0
+                           && runBit(_words[_marker]) != bit
+                        || runLength(_words[_marker]) == MAX_RUN) {
+                    newMarker(bit, 0);
+                }
+                long marker = _words[_marker];
+                long added = Math.min(count, MAX_RUN - runLength(marker));
+                _words[_marker] = (marker & ~RUN_MASK & ~1L)
+                        | ((runLength(marker) + added) << 1)
+                        | (bit ? 1 : 0);
+                count -= added;
+            }
+        }
+
+        /** Starts a new marker for a run of COUNT words of BIT. */
+        private void newMarker(boolean bit, long count) {
+            append((count << 1) | (bit ? 1 : 0));
+            _marker = _size - 1;
+        }
+
+        /** Appends WORD to the stored words. */
+        private void append(long word) {
+            if (_size == _words.length) {
+                _words = Arrays.copyOf(_words, 2 * _words.length);
+            }
+            _words[_size] = word;
+            _size += 1;
+        }
+
+        /** The stored words. */
+        private long[] _words = new long[4];
+        /** Number of stored words in use. */
+        private int _size;
+        /** Index of the last marker, or -1. */
+        private int _marker = -1;
+        /** Index of the word being filled by set, or -1. */
+        private long _current = -1;
+        /** Bits of that word so far. */
+        private long _value;
+    }
+
+    /** Reads the words of a set one at a time, with runs counted rather
+     *  than expanded. */
+    private static class Cursor {
+
+        /** A cursor at the start of SET. */
+        Cursor(EwahBitmap set) {
+            _words = set._words;
+            _size = set._size;
+        }
+
+        /** Returns true if there are more words. */
+        boolean hasNext() {
+            while (_run == 0 && _literals == 0 && _pos < _size) {
+                long marker = _words[_pos];
+                _pos += 1;
+                _bit = runBit(marker);
+                _run = runLength(marker);
+                _literals = literals(marker);
+            }
+            return _run > 0 || _literals > 0;
+        }
+
+        /** Returns the next word, whether in a run or literal. */
+        long next() {
+            hasNext();
+            if (_run > 0) {
+                _run -= 1;
+                return _bit ? ~0L : 0L;
+            }
+            _literals -= 1;
+            _pos += 1;
+            return _words[_pos - 1];
+        }
+
+        /** Skips COUNT words of the current run. */
+        void skip(long count) {
+            _run -= count;
+        }
+
+        /** The stored words. */
+        private final long[] _words;
+        /** Number of stored words in use. */
+        private final int _size;
+        /** Index of the next stored word. */
+        private int _pos;
+        /** Words left in the current run. */
+        private long _run;
+        /** Bit repeated by the current run. */
+        private boolean _bit;
+        /** Literal words left after the current run. */
+        private long _literals;
+    }
+
+    /** A bitwise operation on words. */
+    private interface Op {
+        /** Returns the operation applied to A and B. */
+        long apply(long a, long b);
+    }
+
+    /** Union. */
+    private static final Op OR = (a, b) -> a | b;
+    /** Intersection. */
+    private static final Op AND = (a, b) -> a & b;
+    /** Difference. */
+    private static final Op AND_NOT = (a, b) -> a & ~b;
+
+    /** Returns OP applied to sets A and B, word by word, with runs on
+     *  both sides combined as runs. */
+    private static EwahBitmap combine(EwahBitmap a, EwahBitmap b, Op op) {
+        Cursor x = new Cursor(a);
+        Cursor y = new Cursor(b);
+        Builder out = new Builder();
+        while (x.hasNext() && y.hasNext()) {
+            if (x._run > 0 && y._run > 0) {
+                long count = Math.min(x._run, y._run);
+                out.addFill(op.apply(x._bit ? ~0L : 0L,
+                        y._bit ? ~0L : 0L) != 0, count);
+                x.skip(count);
+                y.skip(count);
+            } else {
+                out.addWord(op.apply(x.next(), y.next()));
+            }
+        }
+        for (Cursor rest : new Cursor[] {x, y}) {
+            while (rest.hasNext()) {
+                long other = 0;
+                if (rest._run > 0) {
+                    long count = rest._run;
+                    long word = rest._bit ? ~0L : 0L;
+                    out.addFill((rest == x ? op.apply(word, other)
+                            : op.apply(other, word)) != 0, count);
+                    rest.skip(count);
+                } else {
+                    long word = rest.next();
+                    out.addWord(rest == x ? op.apply(word, other)
+                            : op.apply(other, word));
+                }
+            }
+        }
+        return out.build();
+    }
+
+    /** A set stored in the first SIZE of WORDS. */
+    private EwahBitmap(long[] words, int size) {
+        _words = words;
+        _size = size;
+    }
+
+    /** Returns the bit repeated by the run of MARKER. */
+    private static boolean runBit(long marker) {
+        return (marker & 1) != 0;
+    }
+
+    /** Returns the number of words in the run of MARKER. */
+    private static long runLength(long marker) {
+        return (marker & RUN_MASK) >>> 1;
+    }
+
+    /** Returns the number of literal words after MARKER. */
+    private static long literals(long marker) {
+        return marker >>> LITERAL_SHIFT;
+    }
+
+    /** Bits of a marker holding its run length. */
+    private static final long RUN_MASK = 0xFFFFFFFFL << 1;
+    /** Position of the literal count in a marker. */
+    private static final int LITERAL_SHIFT = 33;
+    /** Longest run a marker can hold. */
+    private static final long MAX_RUN = 0xFFFFFFFFL;
+    /** Most literal words after one marker. */
+    private static final long MAX_LITERALS = (1L << 31) - 1;
+
+    /** The stored words. */
+    private final long[] _words;
+    /** Number of stored words in use. */
+    private final int _size;
+}
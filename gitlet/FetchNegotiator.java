@@ -0,0 +1,147 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Finds commits that this repository shares with a remote one, so that
+ *  a fetch asks only for what is missing. Local commits are offered to
+ *  the remote as "haves" in rounds, newest first, starting from the
+ *  local branch heads. Once the remote acknowledges a commit, none of
+ *  its ancestors are offered, since the remote has those too. Up to a
+ *  window of rounds is sent before the first answer is awaited, so a
+ *  slow connection costs one round trip per window rather than one per
+ *  round.
+ *  @author Jay Chiang
+ */
+class FetchNegotiator {
+
+    /** Number of haves offered per round. */
+    static final int ROUND = 32;
+    /** Offers made without any acknowledgement before giving up. */
+    static final int MAX_UNACKNOWLEDGED = 256;
+    /** Default number of rounds in flight. */
+    static final int WINDOW = 8;
+
+    /** A negotiator over the commits in COMMITDIR, keeping up to WINDOW
+     *  rounds of haves in flight. */
+    FetchNegotiator(File commitDir, int window) {
+        _window = window;
+        _graph = MergeBase.commitGraph(commitDir);
+        _queue = new PriorityQueue<>((a, b) -> Integer.compare(
+                _graph.generation(b), _graph.generation(a)));
+    }
+
+    /** Returns the commits reachable from HEADS that the remote behind
+     *  TRANSPORT acknowledges having. */
+    List<String> common(Collection<String> heads, Transport transport)
+        throws IOException {
+        for (String head : heads) {
+            enqueue(head);
+        }
+        ArrayList<String> result = new ArrayList<>();
+        ArrayDeque<Integer> inFlight = new ArrayDeque<>();
+        int unacknowledged = 0;
+        while (true) {
+            if (_active > 0 && inFlight.size() < _window
+                    && unacknowledged < MAX_UNACKNOWLEDGED) {
+                List<String> round = nextRound();
+                transport.sendHaves(round);
+                inFlight.add(round.size());
+                continue;
+            } else if (inFlight.isEmpty()) {
+                break;
+            }
+            int offered = inFlight.remove();
+            List<String> acks = transport.receiveAcks();
+            if (acks.isEmpty()) {
+                unacknowledged += offered;
+            } else {
+                unacknowledged = 0;
+            }
+            for (String uID : acks) {
+                if (!_common.contains(uID)) {
+                    result.add(uID);
+                    markCommon(uID);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns up to ROUND commits not known to be common, newest first,
+     *  queueing their parents. */
+    private List<String> nextRound() {
+        ArrayList<String> round = new ArrayList<>();
+        while (round.size() < ROUND && _active > 0) {
+            String uID = _queue.poll();
+            _queued.remove(uID);
+            boolean common = _common.contains(uID);
+            if (!common) {
+                _active -= 1;
+                round.add(uID);
+            }
+            for (String parent : _graph.parents(uID)) {
+                if (common) {
+                    markCommon(parent);
+                } else {
+                    enqueue(parent);
+                }
+            }
+        }
+        return round;
+    }
+
+    /** Queues commit UID if it has not been seen yet. */
+    private void enqueue(String uID) {
+        if (_seen.add(uID)) {
+            _queue.add(uID);
+            _queued.add(uID);
+            _active += 1;
+        }
+    }
+
+    /** Records that the remote has commit UID and hence its ancestors.
+     *  The mark is carried through commits already offered down to those
+     *  still queued or not yet seen, which are queued so that the mark
+     *  reaches their ancestors when they are taken off the queue. */
+    private void markCommon(String uID) {
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        pending.add(uID);
+        while (!pending.isEmpty()) {
+            String next = pending.remove();
+            if (!_common.add(next)) {
+                continue;
+            }
+            if (_seen.add(next)) {
+                _queue.add(next);
+                _queued.add(next);
+            } else if (_queued.contains(next)) {
+                _active -= 1;
+            } else {
+                pending.addAll(Arrays.asList(_graph.parents(next)));
+            }
+        }
+    }
+
+    /** Maximum number of rounds in flight. */
+    private final int _window;
+    /** The local commit graph. */
+    private final MergeBase.Graph _graph;
+    /** Commits waiting to be offered, highest generation first. */
+    private final PriorityQueue<String> _queue;
+    /** Commits currently queued. */
+    private final HashSet<String> _queued = new HashSet<>();
+    /** Commits ever queued. */
+    private final HashSet<String> _seen = new HashSet<>();
+    /** Commits known to be on the remote. */
+    private final HashSet<String> _common = new HashSet<>();
+    /** Number of queued commits not known to be common. */
+    private int _active;
+}
@@ -1,10 +1,31 @@
 package gitlet;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 
 /** git class.
  *  @author Jay Chiang
@@ -13,17 +34,35 @@ public class Git {
 
     /** constructor. */
     public Git() {
-        cwd = new File(System.getProperty("user.dir"));
+        this(new File(System.getProperty("user.dir")), System.out);
+    }
+
+    /** A Git working on the repository in directory WORKTREE, which
+     *  prints what its commands report to STDOUT. If WORKTREE was made by
+     *  worktree add, its .gitlet holds only its HEAD, stage and logs,
+     *  and the commits, blobs and branches are those of the repository
+     *  it names. */
+    Git(File workTree, PrintStream stdout) {
+        cwd = workTree.getAbsoluteFile();
+        this.stdout = stdout;
         gitletDir = new File(cwd, ".gitlet");
-        commitDir = new File(gitletDir, "commits");
-        blobDir = new File(gitletDir, "blobs");
-        branchDir = new File(gitletDir, "branches");
-        logDir = new File(gitletDir, "logs");
+        commonDir = commonDir(gitletDir);
+        commitDir = new File(commonDir, "commits");
+        blobDir = new File(commonDir, "blobs");
+        branchDir = new File(commonDir, "branches");
+        logDir = new File(commonDir, "logs");
         stageDir = new File(gitletDir, "stage");
-        headPath = new File(branchDir, "head.txt");
-        masterPath = new File(branchDir, "master.txt");
+        headPath = new File(gitletDir, "branches/head.txt");
         stagePath = new File(stageDir, "stage.txt");
-        remoteDir = new File(gitletDir, "remotes");
+        remoteDir = new File(commonDir, "remotes");
+        signatureDir = new File(commonDir, "signatures");
+        blameDir = new File(commonDir, "blame");
+        promisorPath = new File(commonDir, "promisor.txt");
+        changedPathsPath = new File(commonDir, ChangedPaths.FILE_NAME);
+        worktreeDir = new File(commonDir, "worktrees");
+        reflog = new Reflog(logDir, new File(gitletDir, "logs"));
+        sparse = new SparseCheckout(
+                new File(gitletDir, SparseCheckout.FILE_NAME));
         if (headPath.exists()) {
             headPointer = Utils.readContentsAsString(headPath);
         } else {
@@ -51,25 +90,125 @@ public class Git {
      * to it. */
     public void init() {
         if (gitletDir.exists()) {
-            System.out.println("A Gitlet version-control "
+            stdout.println("A Gitlet version-control "
                     + "system already exists in the current directory.");
         } else {
-            gitletDir.mkdir();
-            commitDir.mkdir();
-            blobDir.mkdir();
-            branchDir.mkdir();
-            logDir.mkdir();
-            stageDir.mkdir();
-            remoteDir.mkdir();
-            Commit inititalCommit = new Commit("initial commit",
-                    null, new HashMap<String, String>());
-            Utils.writeContents(masterPath, inititalCommit.getUID());
+            makeDirectories();
+            Commit inititalCommit = new Commit(gitletDir, "initial commit",
+                    null, Manifest.EMPTY, null);
+            moveBranch("master", inititalCommit.getUID(), "init");
+            indexChangedPaths(List.of(inititalCommit.getUID()));
             Utils.writeContents(headPath, "master");
             stagingArea = new StagingArea();
             Utils.writeObject(stagePath, stagingArea);
         }
     }
 
+    /** Makes the current directory a copy of the repository SOURCE,
+     *  which is either a directory holding one or the URL of one served
+     *  by a daemon, and records SOURCE as the remote origin. Every branch
+     *  of SOURCE is fetched as origin/BRANCH and its master branch, or
+     *  else its first, is checked out under the same name. A directory
+     *  on this machine shares its commits and blobs through hard links,
+     *  one directory entry per object, so cloning it reads and writes no
+     *  object data, though it still makes a link for every object. If
+     *  PARTIAL, only commits are fetched, and SOURCE is recorded as the
+     *  promisor of the blobs left behind: those are fetched in batches
+     *  as later commands need them, starting with the files checked out
+     *  here. The current directory must be empty, so that no untracked
+     *  file is overwritten. */
+    public void clone(String source, boolean partial) {
+        if (gitletDir.exists()) {
+            stdout.println("A Gitlet version-control "
+                    + "system already exists in the current directory.");
+            return;
+        }
+        String[] existing = cwd.list();
+        if (existing != null && existing.length > 0) {
+            stdout.println("The current directory is not empty.");
+            return;
+        }
+        String location = source.startsWith(SocketTransport.SCHEME + "://")
+                ? source : inWorkTree(source).getPath();
+        Transport transport = openLocation(location);
+        if (transport == null) {
+            return;
+        }
+        try (transport) {
+            Map<String, String> branches = transport.branches();
+            makeDirectories();
+            Utils.writeContents(new File(remoteDir, "origin.txt"), location);
+            if (partial) {
+                Utils.writeContents(promisorPath, "origin");
+            }
+            if (partial || location.startsWith(
+                    SocketTransport.SCHEME + "://")) {
+                transport.fetch(branches.values(), List.of(), !partial,
+                        commitDir, blobDir);
+            } else {
+                shareObjects(commonDir(new File(location, ".gitlet")));
+            }
+            for (Map.Entry<String, String> branch : branches.entrySet()) {
+                moveBranch("origin/" + branch.getKey(), branch.getValue(),
+                        "clone");
+            }
+            indexChangedPaths(branches.values());
+            headPointer = branches.containsKey("master")
+                    ? "master" : branches.keySet().iterator().next();
+            String headUID = branches.get(headPointer);
+            moveBranch(headPointer, headUID, "clone");
+            Utils.writeContents(headPath, headPointer);
+            stagingArea = new StagingArea();
+            Utils.writeObject(stagePath, stagingArea);
+            checkoutFiles(Utils.readObject(new File(commitDir,
+                    headUID + ".txt"), Commit.class).getBlobs(),
+                    Manifest.EMPTY);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Hard-links, or copies where links are impossible, the commits
+     *  and blobs of the repository whose .gitlet directory is SOURCEDIR,
+     *  and the caches derived from them, which are named by content too.
+     *  The global log and the changed-path index, which change, are
+     *  copied. */
+    private void shareObjects(File sourceDir) throws IOException {
+        for (File dir : new File[] {commitDir, blobDir, signatureDir,
+                                    blameDir}) {
+            ObjectLinker.share(new File(sourceDir, dir.getName()), dir);
+        }
+        File changedPaths = new File(sourceDir, ChangedPaths.FILE_NAME);
+        if (changedPaths.isFile()) {
+            Files.copy(changedPaths.toPath(), changedPathsPath.toPath());
+        }
+        File[] logs = new File(sourceDir, "logs").listFiles();
+        if (logs != null) {
+            for (File log : logs) {
+                if (!log.isFile()) {
+                    continue;
+                }
+                Files.copy(log.toPath(), new File(logDir,
+                        log.getName()).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /** Creates the directories of a new repository, and records its
+     *  format. */
+    private void makeDirectories() {
+        gitletDir.mkdir();
+        Utils.writeContents(new File(gitletDir, FORMAT_FILE),
+                FORMAT_VERSION + "\n");
+        commitDir.mkdir();
+        blobDir.mkdir();
+        branchDir.mkdir();
+        logDir.mkdir();
+        stageDir.mkdir();
+        remoteDir.mkdir();
+    }
+
     /** Adds a copy of the file as it currently exists to the
      *  staging area (see the description of the commit command).
      *  For this reason, adding a file is also called staging
@@ -87,7 +226,7 @@ public class Git {
         File filePath = new File(cwd, fileName);
         if (filePath.exists()) {
             byte[] content = Utils.readContents(filePath);
-            String uID = Utils.sha1(content);
+            ObjectId uID = Utils.sha1Id(content);
             if (stagingArea.getStageAddition().containsKey(fileName)) {
                 stagingArea.getStageAddition().remove(fileName);
             }
@@ -102,10 +241,12 @@ public class Git {
             }
             stagingArea.addFileForAddition(fileName, uID);
             Utils.writeObject(stagePath, stagingArea);
-            File blobPath = new File(".gitlet/blobs/" + uID + ".txt");
-            Utils.writeContents(blobPath, content);
+            File blobPath = new File(blobDir, uID + ".txt");
+            if (!blobPath.exists()) {
+                Utils.writeContents(blobPath, content);
+            }
         } else {
-            System.out.print("File does not exist.");
+            stdout.print("File does not exist.");
         }
     }
 
@@ -113,9 +254,9 @@ public class Git {
     public Commit getCurrCommit() {
         String head = Utils.readContentsAsString(headPath);
         String uID = Utils.readContentsAsString(
-                new File(".gitlet/branches/" + head + ".txt"));
+                new File(branchDir, head + ".txt"));
         return Utils.readObject(
-                new File(".gitlet/commits/" + uID + ".txt"), Commit.class);
+                new File(commitDir, uID + ".txt"), Commit.class);
     }
 
     /** Saves a snapshot of tracked files in the current
@@ -138,16 +279,15 @@ public class Git {
     public void commit(String message) {
         if (stagingArea.getStageAddition().isEmpty()
                 && stagingArea.getStageRemoval().isEmpty()) {
-            System.out.print("No changes added to the commit.");
+            stdout.print("No changes added to the commit.");
         } else if (message.equals("")) {
-            System.out.print("Please enter a commit message.");
+            stdout.print("Please enter a commit message.");
         } else {
             Commit currCommit = getCurrCommit();
-            HashMap<String, String> currBlobs =
-                    (HashMap<String, String>) currCommit.getBlobs().clone();
-            HashMap<String, String> stagingAreaAdd =
+            Manifest.Builder currBlobs = currCommit.getBlobs().edit();
+            HashMap<String, ObjectId> stagingAreaAdd =
                     stagingArea.getStageAddition();
-            HashMap<String, String> stagingAreaRemove =
+            HashMap<String, ObjectId> stagingAreaRemove =
                     stagingArea.getStageRemoval();
             for (String item : stagingAreaAdd.keySet()) {
                 currBlobs.put(item, stagingAreaAdd.get(item));
@@ -155,11 +295,10 @@ public class Git {
             for (String item : stagingAreaRemove.keySet()) {
                 currBlobs.remove(item);
             }
-            Commit thisCommit = new Commit(
-                    message, currCommit.getUID(), currBlobs);
-            Utils.writeContents(
-                    new File(".gitlet/branches/" + headPointer + ".txt"),
-                    thisCommit.getUID());
+            Commit thisCommit = new Commit(commonDir,
+                    message, currCommit.getUID(), currBlobs.build(), null);
+            moveBranch(headPointer, thisCommit.getUID(), "commit");
+            indexChangedPaths(List.of(thisCommit.getUID()));
             stagingArea = new StagingArea();
             Utils.writeObject(stagePath, stagingArea);
         }
@@ -169,16 +308,15 @@ public class Git {
     public void commitMerge(String message, String mergeParentUID) {
         if (stagingArea.getStageAddition().isEmpty()
                 && stagingArea.getStageRemoval().isEmpty()) {
-            System.out.print("No changes added to the commit.");
+            stdout.print("No changes added to the commit.");
         } else if (message.equals("")) {
-            System.out.print("Please enter a commit message.");
+            stdout.print("Please enter a commit message.");
         } else {
             Commit currCommit = getCurrCommit();
-            HashMap<String, String> currBlobs =
-                    (HashMap<String, String>) currCommit.getBlobs().clone();
-            HashMap<String, String> stagingAreaAdd =
+            Manifest.Builder currBlobs = currCommit.getBlobs().edit();
+            HashMap<String, ObjectId> stagingAreaAdd =
                     stagingArea.getStageAddition();
-            HashMap<String, String> stagingAreaRemove =
+            HashMap<String, ObjectId> stagingAreaRemove =
                     stagingArea.getStageRemoval();
             for (String item : stagingAreaAdd.keySet()) {
                 currBlobs.put(item, stagingAreaAdd.get(item));
@@ -186,11 +324,11 @@ public class Git {
             for (String item : stagingAreaRemove.keySet()) {
                 currBlobs.remove(item);
             }
-            Commit thisCommit = new Commit(
-                    message, currCommit.getUID(), currBlobs, mergeParentUID);
-            Utils.writeContents(
-                    new File(".gitlet/branches/" + headPointer + ".txt"),
-                    thisCommit.getUID());
+            Commit thisCommit = new Commit(commonDir,
+                    message, currCommit.getUID(), currBlobs.build(),
+                    mergeParentUID);
+            moveBranch(headPointer, thisCommit.getUID(), "merge");
+            indexChangedPaths(List.of(thisCommit.getUID()));
             stagingArea = new StagingArea();
             Utils.writeObject(stagePath, stagingArea);
         }
@@ -219,14 +357,14 @@ public class Git {
             filePath = new File(blobDir,
                     currCommit.getBlobs().get(fileName) + ".txt");
             byte[] content = Utils.readContents(filePath);
-            String uID = Utils.sha1(content);
+            ObjectId uID = Utils.sha1Id(content);
             stagingArea.addFileForRemoval(fileName, uID);
             Utils.writeObject(stagePath, stagingArea);
             Utils.restrictedDelete(new File(cwd, fileName));
         }
         if (!currCommit.getBlobs().containsKey(fileName)
                 && !found) {
-            System.out.println("No reason to remove the file.");
+            stdout.println("No reason to remove the file.");
         }
     }
 
@@ -238,39 +376,94 @@ public class Git {
      *  This set of commit nodes is called the commit's history. For
      *  every node in this history, the information it should display
      *  is the commit id, the time the commit was made, and the commit
-     *  message.  */
-    public void log() {
-        Commit currCommit = getCurrCommit();
-        if (currCommit != null) {
-            String parentUID = currCommit.getParentUID();
-            while (true) {
-                if (currCommit.getMergeParentUID() == null) {
-                    System.out.println("===");
-                    System.out.println("commit " + currCommit.getUID());
-                    System.out.println("Date: " + currCommit.getTimestamp());
-                    System.out.println(currCommit.getMessage());
-                    System.out.println();
+     *  message. ARGS is the command line, which may also hold
+     *  --max-count=N (or -n N) to show at most N commits, --skip=N to
+     *  leave out the first N, and --oneline to show each commit as its
+     *  abbreviated id and message on one line. Ending ARGS with -- PATH
+     *  shows only the commits that changed file PATH; their changed-path
+     *  filters let the walk pass over most other commits without
+     *  reading them. Commits are read one at a time as they are shown,
+     *  and output stops as soon as it can no longer be written (for
+     *  instance, when piped to head). */
+    public void log(String... args) {
+        int maxCount = Integer.MAX_VALUE;
+        int skip = 0;
+        boolean oneline = false;
+        String path = null;
+        try {
+            for (int i = 1; i < args.length; i += 1) {
+                if (args[i].equals("--") && i + 2 == args.length) {
+                    i += 1;
+                    path = args[i];
+                } else if (args[i].startsWith("--max-count=")) {
+                    maxCount = Integer.parseInt(args[i].substring(12));
+                } else if (args[i].equals("-n") && i + 1 < args.length) {
+                    i += 1;
+                    maxCount = Integer.parseInt(args[i]);
+                } else if (args[i].startsWith("--skip=")) {
+                    skip = Integer.parseInt(args[i].substring(7));
+                } else if (args[i].equals("--oneline")) {
+                    oneline = true;
                 } else {
-                    System.out.println("===");
-                    System.out.println("commit " + currCommit.getUID());
-                    System.out.println("Merge: "
-                            + currCommit.getParentUID().substring(0, 7)
-                            + " "
-                            + currCommit.getMergeParentUID().substring(0, 7));
-                    System.out.println("Date: " + currCommit.getTimestamp());
-                    System.out.println(currCommit.getMessage());
-                    System.out.println();
+                    throw new NumberFormatException(args[i]);
                 }
-                parentUID = currCommit.getParentUID();
-                if (parentUID == null) {
-                    break;
+            }
+        } catch (NumberFormatException excp) {
+            maxCount = -1;
+        }
+        if (maxCount < 0 || skip < 0) {
+            stdout.println("Incorrect Operands");
+            return;
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(stdout));
+        ChangedPaths changedPaths = path == null ? null
+                : new ChangedPaths(commitDir, changedPathsPath);
+        Iterator<Commit> commits = path == null
+                ? new CommitIterator(commitDir, getCurrCommit())
+                : changedPaths.touching(Utils.readContentsAsString(
+                        new File(branchDir, headPointer + ".txt")), path);
+        try {
+            for (int i = 0; i < skip && commits.hasNext(); i += 1) {
+                commits.next();
+            }
+            for (int i = 0; i < maxCount && commits.hasNext(); i += 1) {
+                Commit commit = commits.next();
+                if (oneline) {
+                    out.write(commit.getUID().substring(0, 7) + " "
+                            + commit.getMessage() + "\n");
+                } else {
+                    writeLogEntry(out, commit);
+                }
+                if (stdout.checkError()) {
+                    return;
                 }
-                currCommit = Utils.readObject(
-                        new File(commitDir, parentUID + ".txt"),
-                        Commit.class);
+            }
+            if (!oneline) {
+                out.write("\n");
+            }
+            out.flush();
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            if (changedPaths != null) {
+                changedPaths.save();
             }
         }
-        System.out.println();
+    }
+
+    /** Writes to OUT the log entry of COMMIT. */
+    private void writeLogEntry(Writer out, Commit commit)
+        throws IOException {
+        out.write("===\n");
+        out.write("commit " + commit.getUID() + "\n");
+        if (commit.getMergeParentUID() != null) {
+            out.write("Merge: " + commit.getParentUID().substring(0, 7)
+                    + " " + commit.getMergeParentUID().substring(0, 7)
+                    + "\n");
+        }
+        out.write("Date: " + commit.getTimestamp() + "\n");
+        out.write(commit.getMessage() + "\n");
+        out.write("\n");
     }
 
     /** Like log, except displays information about all commits ever
@@ -278,8 +471,32 @@ public class Git {
     public void globalLog() {
         String log = Utils.readContentsAsString(
                 new File(logDir, "glbal-log.txt"));
-        System.out.print(log);
-        System.out.print("\n");
+        stdout.print(log);
+        stdout.print("\n");
+    }
+
+    /** Prints the moves of REF, a branch or HEAD, newest first. Each
+     *  line holds the abbreviated commit REF moved to, REF@{N} for its
+     *  Nth most recent move, the command that moved it, and when. A
+     *  commit left behind by a reset or checkout can be found here and
+     *  reset to. */
+    public void reflog(String ref) {
+        Iterator<Reflog.Entry> entries = reflog.newestFirst(ref);
+        if (!entries.hasNext()) {
+            stdout.println("No reflog for that branch.");
+            return;
+        }
+        DateTimeFormatter format =
+            DateTimeFormatter.ofPattern("EEE LLL dd HH:mm:ss yyyy Z");
+        for (int i = 0; entries.hasNext(); i += 1) {
+            Reflog.Entry entry = entries.next();
+            String to = entry.newUID == null
+                ? "0000000" : entry.newUID.toString().substring(0, 7);
+            stdout.println(to + " " + ref + "@{" + i + "}: "
+                    + entry.command + ": " + format.format(
+                            Instant.ofEpochMilli(entry.time)
+                            .atZone(ZoneId.systemDefault())));
+        }
     }
 
     /** Prints out the ids of all commits that have the given commit
@@ -293,11 +510,11 @@ public class Git {
             Commit oneCommit = Utils.readObject(commitPath, Commit.class);
             if (oneCommit.getMessage().equals(message)) {
                 exists = true;
-                System.out.println(oneCommit.getUID());
+                stdout.println(oneCommit.getUID());
             }
         }
         if (!exists) {
-            System.out.println("Found no commit with that message.");
+            stdout.println("Found no commit with that message.");
         }
     }
 
@@ -306,40 +523,51 @@ public class Git {
      *  addition or removal. */
     public void status() {
         if (!(new File(cwd, ".gitlet").exists())) {
-            System.out.println("Not in an initialized Gitlet directory.");
+            stdout.println("Not in an initialized Gitlet directory.");
             return;
         }
-        System.out.println("=== Branches ===");
+        stdout.println("=== Branches ===");
         String[] allBranches = branchDir.list();
         for (int i = 0; i < allBranches.length; i += 1) {
+            if (new File(branchDir, allBranches[i]).isDirectory()) {
+                continue;
+            }
             String thisBranch =
                     allBranches[i].substring(0, allBranches[i].length() - 4);
             if (thisBranch.equals(headPointer)) {
-                System.out.println("*" + thisBranch);
+                stdout.println("*" + thisBranch);
             } else if (!thisBranch.equals("head")) {
-                System.out.println(thisBranch);
+                stdout.println(thisBranch);
             }
         }
-        System.out.println("\n=== Staged Files ===");
+        stdout.println("\n=== Staged Files ===");
         for (String fileName: stagingArea.getStageAddition().keySet()) {
-            System.out.println(fileName);
+            stdout.println(fileName);
         }
-        System.out.println("\n=== Removed Files ===");
+        stdout.println("\n=== Removed Files ===");
         for (String fileName: stagingArea.getStageRemoval().keySet()) {
-            System.out.println(fileName);
+            stdout.println(fileName);
         }
-        System.out.println("\n=== Modifications Not Staged For Commit ===");
+        stdout.println("\n=== Modifications Not Staged For Commit ===");
         Commit currCommit = getCurrCommit();
-        HashMap<String, String> commitBlobs = currCommit.getBlobs();
-        HashMap<String, String> cwdBlobs = new HashMap<>();
-        for (String cwdFileName : cwd.list()) {
-            File file = new File(cwd, cwdFileName);
-            if (file.isFile()) {
-                byte[] content = Utils.readContents(new File(cwd, cwdFileName));
-                String uID = Utils.sha1(content);
-                cwdBlobs.put(cwdFileName, uID);
+        Manifest commitBlobs = currCommit.getBlobs();
+        HashMap<String, ObjectId> cwdBlobs = new HashMap<>();
+        StoreEvents.WorkTreeScan scan = new StoreEvents.WorkTreeScan();
+        scan.begin();
+        try (Profiler.Span span = Profiler.span("scan working directory")) {
+            for (String cwdFileName : cwd.list()) {
+                File file = new File(cwd, cwdFileName);
+                if (file.isFile()) {
+                    byte[] content =
+                        Utils.readContents(new File(cwd, cwdFileName));
+                    ObjectId uID = Utils.sha1Id(content);
+                    cwdBlobs.put(cwdFileName, uID);
+                    scan.files += 1;
+                    scan.bytes += content.length;
+                }
             }
         }
+        scan.commit();
         for (String fileName : commitBlobs.keySet()) {
             if (cwdBlobs.containsKey(fileName)) {
                 if (!(commitBlobs.get(fileName).equals(
@@ -348,12 +576,13 @@ public class Git {
                     if (!stagingArea.getStageAddition().containsKey(fileName)
                             && !stagingArea.getStageRemoval().containsKey(
                                     fileName)) {
-                        System.out.println(fileName + " (modified)");
+                        stdout.println(fileName + " (modified)");
                     }
                 }
             } else {
-                if (!stagingArea.getStageRemoval().containsKey(fileName)) {
-                    System.out.println(fileName + " (deleted)");
+                if (!stagingArea.getStageRemoval().containsKey(fileName)
+                        && sparse.includes(fileName)) {
+                    stdout.println(fileName + " (deleted)");
                 }
             }
         }
@@ -364,20 +593,20 @@ public class Git {
      *  branch with a *. Also displays what files have been staged for
      *  addition or removal. CWDBLOBS COMMITBLOBS*/
     public void statusP2(
-            HashMap<String, String> cwdBlobs,
-            HashMap<String, String> commitBlobs) {
+            HashMap<String, ObjectId> cwdBlobs,
+            Manifest commitBlobs) {
         for (String fileName : stagingArea.getStageAddition().keySet()) {
             if (cwdBlobs.containsKey(fileName)) {
                 if (!stagingArea.getStageAddition().get(fileName).equals(
                         cwdBlobs.get(fileName)
                 )) {
-                    System.out.println(fileName + " (modified)");
+                    stdout.println(fileName + " (modified)");
                 }
             } else {
-                System.out.println(fileName + " (deleted)");
+                stdout.println(fileName + " (deleted)");
             }
         }
-        System.out.println("\n=== Untracked Files ===");
+        stdout.println("\n=== Untracked Files ===");
         Boolean found = false;
         for (String fileName : cwdBlobs.keySet()) {
             if (!fileName.equals(".gitignore")
@@ -389,15 +618,229 @@ public class Git {
                 if (!commitBlobs.containsKey(fileName)
                         && !stagingArea.getStageAddition().
                         containsKey(fileName)) {
-                    System.out.println(fileName);
+                    stdout.println(fileName);
                     found = true;
                 }
             }
         }
         if (!found) {
-            System.out.println();
+            stdout.println();
+        }
+        stdout.println();
+    }
+
+    /** Prints each line of FILENAME as it is in the head commit,
+     *  preceded by the abbreviated id and date of the commit that last
+     *  changed it, following first parents, and by its line number. */
+    public void blame(String fileName) {
+        Commit head = getCurrCommit();
+        String[] owners = new Blame(commitDir, blobDir, blameDir,
+                this::fetchMissingBlobs).blame(head, fileName);
+        if (owners == null) {
+            stdout.println("File does not exist in that commit.");
+            return;
+        }
+        String[] lines = Diff.lines(readBlob(head.getBlobs().get(fileName)));
+        String format = "%s (%s %" + Integer.toString(lines.length).length()
+                + "d) %s";
+        HashMap<String, String> dates = new HashMap<>();
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(stdout,
+                        StandardCharsets.ISO_8859_1)));
+        for (int i = 0; i < lines.length; i += 1) {
+            String date = dates.computeIfAbsent(owners[i],
+                uID -> Utils.readObject(new File(commitDir, uID + ".txt"),
+                        Commit.class).getTimestamp());
+            out.print(String.format(format, owners[i].substring(0, 7),
+                    date, i + 1, lines[i]));
+            if (!lines[i].endsWith("\n")) {
+                out.print("\n");
+            }
+        }
+        out.flush();
+    }
+
+    /** Prints, as a unified diff, the changes between two versions of
+     *  the tracked files. ARGS is the command line:
+     *  diff               working directory against the staging area;
+     *  diff --cached      staging area against the head commit;
+     *  diff COMMIT COMMIT first commit against the second.
+     *  Files whose blob IDs match are skipped without being read. */
+    public void diff(String... args) {
+        Manifest headBlobs = getCurrCommit().getBlobs();
+        TreeMap<String, ObjectId> stageBlobs = new TreeMap<>(headBlobs);
+        stageBlobs.putAll(stagingArea.getStageAddition());
+        stageBlobs.keySet().removeAll(stagingArea.getStageRemoval().keySet());
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(stdout,
+                        StandardCharsets.ISO_8859_1)));
+        if (args.length == 1) {
+            TreeMap<String, ObjectId> modified = new TreeMap<>();
+            for (Map.Entry<String, ObjectId> entry : stageBlobs.entrySet()) {
+                if (!isUnmodified(new File(cwd, entry.getKey()),
+                        entry.getValue())) {
+                    modified.put(entry.getKey(), entry.getValue());
+                }
+            }
+            fetchMissingBlobs(modified.values());
+            for (Map.Entry<String, ObjectId> entry : modified.entrySet()) {
+                File file = new File(cwd, entry.getKey());
+                byte[] content = file.isFile()
+                        ? Utils.readContents(file) : null;
+                diffFile(out, entry.getKey(),
+                        readBlob(entry.getValue()), content);
+            }
+        } else if (args.length == 2
+                && (args[1].equals("--cached") || args[1].equals("--staged"))) {
+            diffManifests(out, new TreeMap<>(headBlobs), stageBlobs);
+        } else if (args.length == 3) {
+            String fromUID = resolveCommit(args[1]);
+            String toUID = resolveCommit(args[2]);
+            if (fromUID == null || toUID == null) {
+                stdout.println("No commit with that id exists.");
+                return;
+            }
+            Commit from = Utils.readObject(
+                    new File(commitDir, fromUID + ".txt"), Commit.class);
+            Commit to = Utils.readObject(
+                    new File(commitDir, toUID + ".txt"), Commit.class);
+            diffManifests(out, new TreeMap<>(from.getBlobs()),
+                    new TreeMap<>(to.getBlobs()));
+        } else {
+            stdout.println("Incorrect Operands");
+        }
+        out.flush();
+    }
+
+    /** Writes to OUT the diff of every file whose blob differs between
+     *  manifests FROM and TO. A file deleted from FROM and added to TO
+     *  with similar contents is shown as a rename. */
+    private void diffManifests(PrintWriter out, TreeMap<String, ObjectId> from,
+                               TreeMap<String, ObjectId> to) {
+        HashSet<ObjectId> changed = new HashSet<>();
+        for (Map.Entry<String, ObjectId> entry : from.entrySet()) {
+            if (!entry.getValue().equals(to.get(entry.getKey()))) {
+                changed.add(entry.getValue());
+            }
+        }
+        for (Map.Entry<String, ObjectId> entry : to.entrySet()) {
+            if (!entry.getValue().equals(from.get(entry.getKey()))) {
+                changed.add(entry.getValue());
+            }
+        }
+        fetchMissingBlobs(changed);
+        HashMap<String, RenameDetector.Rename> renames = new HashMap<>();
+        HashSet<String> renamed = new HashSet<>();
+        for (RenameDetector.Rename rename
+                : new RenameDetector(blobDir, signatureDir).detect(from, to)) {
+            renames.put(rename.to, rename);
+            renamed.add(rename.from);
+        }
+        TreeSet<String> names = new TreeSet<>(from.keySet());
+        names.addAll(to.keySet());
+        for (String name : names) {
+            ObjectId fromUID = from.get(name);
+            ObjectId toUID = to.get(name);
+            RenameDetector.Rename rename = renames.get(name);
+            if (rename != null) {
+                diffRename(out, rename, from.get(rename.from), toUID);
+            } else if (renamed.contains(name)) {
+                continue;
+            } else if (fromUID == null || !fromUID.equals(toUID)) {
+                diffFile(out, name, readBlob(fromUID), readBlob(toUID));
+            }
+        }
+    }
+
+    /** Writes to OUT the header of RENAME, followed by the diff from blob
+     *  FROMUID to blob TOUID if they differ. */
+    private void diffRename(PrintWriter out, RenameDetector.Rename rename,
+                            ObjectId fromUID, ObjectId toUID) {
+        out.print("diff --git a/" + rename.from + " b/" + rename.to + "\n");
+        out.print("similarity index " + rename.score + "%\n");
+        out.print("rename from " + rename.from + "\n");
+        out.print("rename to " + rename.to + "\n");
+        if (!fromUID.equals(toUID)) {
+            diffContents(out, "a/" + rename.from, "b/" + rename.to,
+                    readBlob(fromUID), readBlob(toUID));
+        }
+    }
+
+    /** Writes to OUT the diff of file NAME from contents FROM to contents
+     *  TO, either of which is null if the file is absent on that side. */
+    private void diffFile(PrintWriter out, String name,
+                          byte[] from, byte[] to) {
+        out.print("diff --git a/" + name + " b/" + name + "\n");
+        if (from == null) {
+            out.print("new file\n");
+        } else if (to == null) {
+            out.print("deleted file\n");
+        }
+        diffContents(out, from == null ? "/dev/null" : "a/" + name,
+                to == null ? "/dev/null" : "b/" + name, from, to);
+    }
+
+    /** Writes to OUT the hunks turning contents FROM, labelled FROMLABEL,
+     *  into contents TO, labelled TOLABEL. A null content is empty. */
+    private void diffContents(PrintWriter out, String fromLabel,
+                              String toLabel, byte[] from, byte[] to) {
+        byte[] oldContent = from == null ? new byte[0] : from;
+        byte[] newContent = to == null ? new byte[0] : to;
+        if (Diff.isBinary(oldContent) || Diff.isBinary(newContent)) {
+            out.print("Binary files differ\n");
+            return;
+        }
+        out.print("--- " + fromLabel + "\n");
+        out.print("+++ " + toLabel + "\n");
+        String[] oldLines = Diff.lines(oldContent);
+        String[] newLines = Diff.lines(newContent);
+        try {
+            Diff.writeUnified(out, oldLines, newLines,
+                    Diff.diff(oldLines, newLines));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the contents of blob UID, or null if UID is null. A
+     *  partial clone fetches the blob first if it is not here. */
+    private byte[] readBlob(ObjectId uID) {
+        if (uID == null) {
+            return null;
+        }
+        File blobPath = new File(blobDir, uID + ".txt");
+        if (!blobPath.isFile()) {
+            fetchMissingBlobs(List.of(uID));
+        }
+        return Utils.readContents(blobPath);
+    }
+
+    /** Fetches from the promisor remote of a partial clone, in a single
+     *  request, those of the blobs UIDS that are not here. Does nothing
+     *  in a complete repository. */
+    private void fetchMissingBlobs(Collection<ObjectId> uIDs) {
+        if (!promisorPath.isFile()) {
+            return;
+        }
+        LinkedHashSet<String> missing = new LinkedHashSet<>();
+        for (ObjectId uID : uIDs) {
+            if (!new File(blobDir, uID + ".txt").isFile()) {
+                missing.add(uID.toString());
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        Transport transport =
+            openRemote(Utils.readContentsAsString(promisorPath));
+        if (transport == null) {
+            return;
+        }
+        try (transport) {
+            transport.fetchBlobs(missing, commitDir, blobDir);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
-        System.out.println();
     }
 
     /** 1. Takes the version of the file as it exists in the head
@@ -421,18 +864,16 @@ public class Git {
         if (args.length == 3) {
             String fileName = args[2];
             Commit currCommit = getCurrCommit();
-            HashMap<String, String> blobs = currCommit.getBlobs();
+            Manifest blobs = currCommit.getBlobs();
             if (blobs.containsKey(fileName)) {
                 File filePath = new File(cwd, fileName);
                 if (filePath.exists()) {
                     Utils.restrictedDelete(filePath);
                 }
-                String uID = blobs.get(fileName);
-                byte[] content = Utils.readContents(new File(blobDir,
-                        uID + ".txt"));
-                Utils.writeContents(filePath, content);
+                Utils.writeContents(filePath,
+                        readBlob(blobs.get(fileName)));
             } else {
-                System.out.println("File does not exist in that commit.");
+                stdout.println("File does not exist in that commit.");
             }
         } else if (args.length == 4) {
             String fileName = args[3];
@@ -448,23 +889,21 @@ public class Git {
                 }
             }
             if (!commitExists) {
-                System.out.println("No commit with that id exists.");
+                stdout.println("No commit with that id exists.");
             } else {
                 Commit thisCommit = Utils.readObject(new File(commitDir,
                         commitUID + ".txt"), Commit.class);
-                HashMap<String, String> blobs = thisCommit.getBlobs();
+                Manifest blobs = thisCommit.getBlobs();
                 if (!blobs.containsKey(fileName)) {
-                    System.out.println("File does not exist in that commit.");
+                    stdout.println("File does not exist in that commit.");
                     return;
                 }
                 File filePath = new File(cwd, fileName);
                 if (filePath.exists()) {
                     Utils.restrictedDelete(filePath);
                 }
-                String uID = blobs.get(fileName);
-                byte[] content = Utils.readContents(new File(blobDir,
-                        uID + ".txt"));
-                Utils.writeContents(filePath, content);
+                Utils.writeContents(filePath,
+                        readBlob(blobs.get(fileName)));
             }
         } else if (args.length == 2) {
             checkoutP2(args);
@@ -476,7 +915,7 @@ public class Git {
         String checkoutBranch = args[1];
         ArrayList<String> allBranches =
                 new ArrayList<>(List.of(branchDir.list()));
-        Boolean exists = false;
+        Boolean exists = branchExists(checkoutBranch);
         for (String branch : allBranches) {
             if (branch.contains(checkoutBranch)) {
                 exists = true;
@@ -485,15 +924,18 @@ public class Git {
         }
         if (exists) {
             if (checkoutBranch.equals(headPointer)) {
-                System.out.println("No need to checkout the current branch.");
+                stdout.println("No need to checkout the current branch.");
+            } else if (checkedOutElsewhere(checkoutBranch)) {
+                stdout.println(
+                        "That branch is checked out in another worktree.");
             } else {
                 String commitUID = Utils.readContentsAsString(
                         new File(branchDir, checkoutBranch + ".txt"));
                 Commit thisCommit = Utils.readObject(
                         new File(commitDir, commitUID + ".txt"), Commit.class);
                 Commit currCommit = getCurrCommit();
-                HashMap<String, String> thisblobs = thisCommit.getBlobs();
-                HashMap<String, String> currblobs = currCommit.getBlobs();
+                Manifest thisblobs = thisCommit.getBlobs();
+                Manifest currblobs = currCommit.getBlobs();
                 ArrayList<String> allFilesCwd = new ArrayList<>();
                 for (String fileName : cwd.list()) {
                     if (new File(cwd, fileName).isFile()) {
@@ -502,40 +944,121 @@ public class Git {
                 }
                 for (String fileName : allFilesCwd) {
                     if (thisblobs.containsKey(fileName)
-                            && !currblobs.containsKey(fileName)) {
-                        System.out.println(
+                            && !currblobs.containsKey(fileName)
+                            && sparse.includes(fileName)) {
+                        stdout.println(
                                 "There is an untracked file in the way; "
                                 + "delete it, or add and commit it first.");
                         return;
                     }
                 }
-                for (Map.Entry<String, String> blob : thisblobs.entrySet()) {
-                    File fileToChange = new File(cwd, blob.getKey());
-                    if (fileToChange.exists()) {
-                        Utils.restrictedDelete(fileToChange);
-                        String blobUID = blob.getValue();
-                        byte[] content = Utils.readContents(
-                                new File(blobDir, blobUID + ".txt"));
-                        Utils.writeContents(fileToChange, content);
+                checkoutFiles(thisblobs, currblobs);
+                checkoutP3(checkoutBranch, allFilesCwd, thisblobs, currblobs);
+                reflog.append(Reflog.HEAD, currCommit.getUID(), commitUID,
+                        "checkout");
+            }
+        } else {
+            stdout.println("No such branch exists.");
+        }
+    }
+
+    /** Writes the files of THISBLOBS into the working directory, assuming
+     *  it currently holds CURRBLOBS. Only paths whose blob differs between
+     *  the two manifests, or whose working copy no longer matches CURRBLOBS,
+     *  are rewritten; everything else keeps its contents and mtime. Paths
+     *  outside the sparse checkout are neither read nor written. Each
+     *  file is moved aside in .gitlet before it is rewritten, so that if
+     *  the task running this is cancelled partway, the files written so
+     *  far are put back exactly as they were, uncommitted edits
+     *  included. */
+    private void checkoutFiles(Manifest thisBlobs, Manifest currBlobs) {
+        HashMap<String, ObjectId> changed = new HashMap<>();
+        StoreEvents.WorkTreeScan scan = new StoreEvents.WorkTreeScan();
+        scan.begin();
+        scan.files = thisBlobs.size();
+        long compared = 0;
+        try (Profiler.Span span = Profiler.span("compare working files")) {
+            for (Map.Entry<String, ObjectId> blob : thisBlobs.entrySet()) {
+                Task.checkpoint();
+                Task.progress("comparing files", compared, scan.files);
+                compared += 1;
+                if (!sparse.includes(blob.getKey())) {
+                    continue;
+                }
+                ObjectId blobUID = blob.getValue();
+                if (!blobUID.equals(currBlobs.get(blob.getKey()))
+                        || !isUnmodified(new File(cwd, blob.getKey()),
+                                         blobUID)) {
+                    changed.put(blob.getKey(), blobUID);
+                }
+            }
+        }
+        scan.commit();
+        fetchMissingBlobs(changed.values());
+        ArrayList<String> written = new ArrayList<>();
+        HashMap<String, File> saved = new HashMap<>();
+        File saveDir = new File(gitletDir, "checkout-saved");
+        try (Profiler.Span span = Profiler.span("write working files")) {
+            for (Map.Entry<String, ObjectId> blob : changed.entrySet()) {
+                Task.checkpoint();
+                Task.progress("writing files", written.size(),
+                        changed.size());
+                File file = new File(cwd, blob.getKey());
+                if (file.isFile()) {
+                    saveDir.mkdir();
+                    File copy = new File(saveDir,
+                            Integer.toString(saved.size()));
+                    Files.move(file.toPath(), copy.toPath(),
+                            StandardCopyOption.REPLACE_EXISTING);
+                    saved.put(blob.getKey(), copy);
+                }
+                written.add(blob.getKey());
+                Utils.writeContents(file, readBlob(blob.getValue()));
+            }
+            Task.finishing();
+        } catch (CancellationException excp) {
+            try {
+                for (String fileName : written) {
+                    File copy = saved.remove(fileName);
+                    if (copy == null) {
+                        new File(cwd, fileName).delete();
                     } else {
-                        String blobUID = blob.getValue();
-                        byte[] content = Utils.readContents(
-                                new File(blobDir, blobUID + ".txt"));
-                        Utils.writeContents(fileToChange, content);
+                        Files.move(copy.toPath(),
+                                new File(cwd, fileName).toPath(),
+                                StandardCopyOption.REPLACE_EXISTING);
                     }
                 }
-                checkoutP3(checkoutBranch, allFilesCwd, thisblobs, currblobs);
+            } catch (IOException restore) {
+                throw new IllegalArgumentException(restore.getMessage());
             }
-        } else {
-            System.out.println("No such branch exists.");
+            throw excp;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            for (File copy : saved.values()) {
+                copy.delete();
+            }
+            saveDir.delete();
+        }
+    }
+
+    /** Returns true if FILE exists with exactly the contents of blob UID.
+     *  The size is compared first so most dirty files are caught without
+     *  being read. */
+    private boolean isUnmodified(File file, ObjectId uID) {
+        File blobPath = new File(blobDir, uID + ".txt");
+        if (!file.isFile()
+                || blobPath.isFile() && file.length() != blobPath.length()) {
+            return false;
         }
+        return Utils.sha1Id(Utils.readContents(file)).equals(uID);
     }
 
     /** helper CHECKOUTBRANCH, ALLFILESCWD, THISBLOBS, CURRBLOBS. */
     public void checkoutP3(String checkoutBranch,
                            ArrayList<String> allFilesCwd,
-                           HashMap<String, String> thisblobs,
-                           HashMap<String, String> currblobs) {
+                           Manifest thisblobs,
+                           Manifest currblobs) {
         for (String fileName : allFilesCwd) {
             if (!thisblobs.containsKey(fileName)
                     && currblobs.containsKey(fileName)) {
@@ -548,6 +1071,125 @@ public class Git {
         Utils.writeObject(stagePath, stagingArea);
     }
 
+    /** Restricts the working directory to the paths matching some glob
+     *  pattern, with ARGS "sparse-checkout set PATTERN...", lists the
+     *  patterns with "sparse-checkout list", and restores every path
+     *  with "sparse-checkout disable". Files of the head commit that
+     *  the new patterns take in are written and those they leave out
+     *  are deleted; nothing changes if that would lose uncommitted
+     *  work. */
+    public void sparseCheckout(String... args) {
+        if (args.length == 2 && args[1].equals("list")) {
+            for (String pattern : sparse.patterns()) {
+                stdout.println(pattern);
+            }
+        } else if (args.length > 2 && args[1].equals("set")) {
+            List<String> patterns = List.of(args).subList(2, args.length);
+            for (String pattern : patterns) {
+                if (!SparseCheckout.isValid(pattern)) {
+                    stdout.println("Invalid pattern: " + pattern);
+                    return;
+                }
+            }
+            changeSparse(sparse.with(patterns));
+        } else if (args.length == 2 && args[1].equals("disable")) {
+            changeSparse(sparse.with(List.of()));
+        } else {
+            stdout.println("Incorrect Operands");
+        }
+    }
+
+    /** Makes NEXT the sparse checkout, updating the working directory
+     *  to the head commit's files that it includes. */
+    private void changeSparse(SparseCheckout next) {
+        if (!stagingArea.getStageAddition().isEmpty()
+                || !stagingArea.getStageRemoval().isEmpty()) {
+            stdout.println("You have uncommitted changes.");
+            return;
+        }
+        Manifest currBlobs = getCurrCommit().getBlobs();
+        HashMap<String, ObjectId> added = new HashMap<>();
+        ArrayList<String> removed = new ArrayList<>();
+        for (Map.Entry<String, ObjectId> blob : currBlobs.entrySet()) {
+            String fileName = blob.getKey();
+            File file = new File(cwd, fileName);
+            boolean was = sparse.includes(fileName);
+            boolean is = next.includes(fileName);
+            if (was && !is && file.exists()) {
+                if (!isUnmodified(file, blob.getValue())) {
+                    stdout.println("You have uncommitted changes.");
+                    return;
+                }
+                removed.add(fileName);
+            } else if (!was && is
+                       && !isUnmodified(file, blob.getValue())) {
+                if (file.exists()) {
+                    stdout.println(
+                            "There is an untracked file in the way; "
+                            + "delete it, or add and commit it first.");
+                    return;
+                }
+                added.put(fileName, blob.getValue());
+            }
+        }
+        fetchMissingBlobs(added.values());
+        for (Map.Entry<String, ObjectId> blob : added.entrySet()) {
+            Utils.writeContents(new File(cwd, blob.getKey()),
+                    readBlob(blob.getValue()));
+        }
+        for (String fileName : removed) {
+            Utils.restrictedDelete(new File(cwd, fileName));
+        }
+        next.save();
+        sparse = next;
+    }
+
+    /** Makes directory PATH, which must be new or empty, a working tree
+     *  of this repository with BRANCH checked out. Its .gitlet holds
+     *  only its own HEAD, stage and logs, and names this repository's
+     *  .gitlet for the commits, blobs and branches, so adding one costs
+     *  only the checkout. A branch can be checked out in one working
+     *  tree at a time. */
+    public void worktreeAdd(String path, String branch) {
+        File target = inWorkTree(path).toPath().normalize().toFile();
+        String[] existing = target.list();
+        if (!new File(branchDir, branch + ".txt").isFile()) {
+            stdout.println("A branch with that name does not exist.");
+        } else if (target.exists()
+                   && (existing == null || existing.length > 0)) {
+            stdout.println("That directory already exists.");
+        } else if (branch.equals(headPointer)
+                   || checkedOutElsewhere(branch)) {
+            stdout.println(
+                    "That branch is checked out in another worktree.");
+        } else {
+            File targetGitletDir = new File(target, ".gitlet");
+            new File(targetGitletDir, "branches").mkdirs();
+            new File(targetGitletDir, "stage").mkdir();
+            new File(targetGitletDir, "logs").mkdir();
+            Utils.writeContents(new File(targetGitletDir, "commondir.txt"),
+                    commonDir.getPath());
+            Utils.writeContents(
+                    new File(targetGitletDir, "branches/head.txt"), branch);
+            Utils.writeObject(new File(targetGitletDir, "stage/stage.txt"),
+                    new StagingArea());
+            worktreeDir.mkdir();
+            String name = target.getName();
+            for (int i = 1; new File(worktreeDir, name + ".txt").exists();
+                 i += 1) {
+                name = target.getName() + i;
+            }
+            Utils.writeContents(new File(worktreeDir, name + ".txt"),
+                    targetGitletDir.getPath());
+            String uID = Utils.readContentsAsString(
+                    new File(branchDir, branch + ".txt"));
+            Git worktree = new Git(target, stdout);
+            worktree.checkoutFiles(Utils.readObject(new File(commitDir,
+                    uID + ".txt"), Commit.class).getBlobs(), Manifest.EMPTY);
+            worktree.reflog.append(Reflog.HEAD, null, uID, "worktree add");
+        }
+    }
+
     /** Creates a new branch with the given name, and points it at the
      *  current head node. A branch is nothing more than a name for a
      *  reference (a SHA-1 identifier) to a commit node. This command
@@ -557,11 +1199,11 @@ public class Git {
     public void branch(String branchName) {
         File branchPath = new File(branchDir, branchName + ".txt");
         if (branchPath.exists()) {
-            System.out.println("A branch with that name already exists.");
+            stdout.println("A branch with that name already exists.");
         } else {
             String headUID = Utils.readContentsAsString(
                     new File(branchDir, headPointer + ".txt"));
-            Utils.writeContents(branchPath, headUID);
+            moveBranch(branchName, headUID, "branch");
         }
     }
 
@@ -572,10 +1214,13 @@ public class Git {
     public void rmBranch(String branchName) {
         File branchPath = new File(branchDir, branchName + ".txt");
         if (!branchPath.exists()) {
-            System.out.println("A branch with that name does not exist.");
-        } else if (branchName.equals(headPointer)) {
-            System.out.println("Cannot remove the current branch.");
+            stdout.println("A branch with that name does not exist.");
+        } else if (branchName.equals(headPointer)
+                   || checkedOutElsewhere(branchName)) {
+            stdout.println("Cannot remove the current branch.");
         } else {
+            reflog.append(branchName,
+                    Utils.readContentsAsString(branchPath), null, "rm-branch");
             branchPath.delete();
         }
     }
@@ -588,6 +1233,11 @@ public class Git {
      * command is essentially checkout of an arbitrary commit that also changes
      * the current branch head. COMMITUID*/
     public void reset(String commitUID) {
+        reset(commitUID, "reset");
+    }
+
+    /** Resets to commit COMMITUID as reset does, for COMMAND. */
+    private void reset(String commitUID, String command) {
         ArrayList<String> allCommits =
                 new ArrayList<String>(List.of(commitDir.list()));
         Boolean exists = false;
@@ -600,12 +1250,12 @@ public class Git {
             }
         }
         if (!exists) {
-            System.out.println("No commit with that id exists.");
+            stdout.println("No commit with that id exists.");
         } else {
             Commit thisCommit = Utils.readObject(new File(commitDir,
                     commitUID + ".txt"), Commit.class);
-            HashMap<String, String> thisBlobs = thisCommit.getBlobs();
-            HashMap<String, String> currBlobs = getCurrCommit().getBlobs();
+            Manifest thisBlobs = thisCommit.getBlobs();
+            Manifest currBlobs = getCurrCommit().getBlobs();
             ArrayList<String> allFilesCwd = new ArrayList<>();
             for (String fileName : cwd.list()) {
                 if (new File(cwd, fileName).isFile()) {
@@ -614,31 +1264,22 @@ public class Git {
             }
             for (String fileName : allFilesCwd) {
                 if (thisBlobs.containsKey(fileName)
-                        && !currBlobs.containsKey(fileName)) {
-                    System.out.println(
+                        && !currBlobs.containsKey(fileName)
+                        && sparse.includes(fileName)) {
+                    stdout.println(
                             "There is an untracked file in the way; "
                             + "delete it, or add and commit it first.");
                     return;
                 }
             }
-            for (String fileName : thisBlobs.keySet()) {
-                File filePath = new File(cwd, fileName);
-                if (filePath.exists()) {
-                    Utils.restrictedDelete(filePath);
-                }
-                String uID = thisBlobs.get(fileName);
-                byte[] content = Utils.readContents(new File(blobDir,
-                        uID + ".txt"));
-                Utils.writeContents(filePath, content);
-            }
+            checkoutFiles(thisBlobs, currBlobs);
             for (String fileName : allFilesCwd) {
                 if (!thisBlobs.containsKey(fileName)
                         && currBlobs.containsKey(fileName)) {
                     Utils.restrictedDelete(new File(cwd, fileName));
                 }
             }
-            Utils.writeContents(
-                    new File(branchDir, headPointer + ".txt"), commitUID);
+            moveBranch(headPointer, commitUID, command);
             stagingArea = new StagingArea();
             Utils.writeObject(stagePath, stagingArea);
         }
@@ -647,19 +1288,13 @@ public class Git {
     /** Merges files from the given branch into the
      * current branch. GIVENBRANCH */
     public void merge(String givenBranch) {
-        ArrayList<String> allBranches = new ArrayList<>();
-        for (String fileName : branchDir.list()) {
-            if (!fileName.equals("head.txt")) {
-                allBranches.add(fileName.substring(0, fileName.length() - 4));
-            }
-        }
         if (!stagingArea.getStageAddition().isEmpty()
                 || !stagingArea.getStageRemoval().isEmpty()) {
-            System.out.println("You have uncommitted changes.");
-        } else if (!allBranches.contains(givenBranch)) {
-            System.out.println("A branch with that name does not exist.");
+            stdout.println("You have uncommitted changes.");
+        } else if (!branchExists(givenBranch)) {
+            stdout.println("A branch with that name does not exist.");
         } else if (givenBranch.equals(headPointer)) {
-            System.out.println("Cannot merge a branch with itself.");
+            stdout.println("Cannot merge a branch with itself.");
         } else {
             merge2(givenBranch);
         }
@@ -675,42 +1310,75 @@ public class Git {
                 new File(branchDir, headPointer + ".txt"));
         Commit currCommit = Utils.readObject(
                 new File(commitDir, currCommitUID + ".txt"), Commit.class);
-        ArrayList<String> givenCommitTimeline = new ArrayList<>();
-        String splitPointUID = null;
+        List<String> bases;
+        Task.progress("finding merge base", 0, 1);
+        try (Profiler.Span span = Profiler.span("merge base")) {
+            bases = new MergeBase(MergeBase.commitGraph(commitDir))
+                .mergeBases(currCommitUID, givenCommitUID);
+        }
+        String splitPointUID = bases.isEmpty() ? null : bases.get(0);
         Commit splitPointCommit = null;
-        while (true) {
-            givenCommitTimeline.add(givenCommit.getUID());
-            if (givenCommit.getParentUID() != null) {
-                givenCommit = Utils.readObject(
-                        new File(commitDir,
-                                givenCommit.getParentUID() + ".txt"),
-                        Commit.class);
-            } else {
-                break;
-            }
+        merge3(givenBranch, currCommit, currCommitUID, givenCommit,
+                givenCommitUID, splitPointUID, splitPointCommit);
+    }
+
+    /** Prints the best common ancestor of ONE and TWO, each a branch name
+     *  or a commit id, or every best common ancestor if ALL. */
+    public void mergeBase(String one, String two, boolean all) {
+        String oneUID = resolveCommit(one);
+        String twoUID = resolveCommit(two);
+        if (oneUID == null || twoUID == null) {
+            stdout.println("No commit with that id exists.");
+            return;
         }
-        givenCommit = Utils.readObject(new File(commitDir,
-                        givenCommitUID + ".txt"), Commit.class);
-        while (true) {
-            if (givenCommitTimeline.contains(currCommit.getUID())) {
-                splitPointUID = currCommit.getUID();
+        List<String> bases = new MergeBase(MergeBase.commitGraph(commitDir))
+                .mergeBases(oneUID, twoUID);
+        for (String base : bases) {
+            stdout.println(base);
+            if (!all) {
                 break;
             }
-            if (givenCommitTimeline.contains(currCommit.getMergeParentUID())) {
-                splitPointUID = currCommit.getMergeParentUID();
-                break;
-            }
-            if (currCommit.getParentUID() != null) {
-                currCommit = Utils.readObject(
-                        new File(commitDir,
-                                currCommit.getParentUID() + ".txt"),
-                        Commit.class);
-            } else {
-                break;
+        }
+    }
+
+    /** Returns true if ANCESTOR is an ancestor of DESCENDANT, each a
+     *  branch name or a commit id. */
+    public boolean isAncestor(String ancestor, String descendant) {
+        String ancestorUID = resolveCommit(ancestor);
+        String descendantUID = resolveCommit(descendant);
+        if (ancestorUID == null || descendantUID == null) {
+            stdout.println("No commit with that id exists.");
+            return false;
+        }
+        return new MergeBase(MergeBase.commitGraph(commitDir))
+                .isAncestor(ancestorUID, descendantUID);
+    }
+
+    /** Returns the full UID of the commit named by REV, which may be
+     *  HEAD, a branch name, or a unique prefix of a commit id. Returns
+     *  null if there is no such commit. */
+    String resolveCommit(String rev) {
+        if (rev.equals("HEAD")) {
+            return Utils.readContentsAsString(
+                    new File(branchDir, headPointer + ".txt"));
+        }
+        File branchPath = new File(branchDir, rev + ".txt");
+        if (!rev.equals("head") && branchPath.isFile()) {
+            return Utils.readContentsAsString(branchPath);
+        }
+        if (new File(commitDir, rev + ".txt").isFile()) {
+            return rev;
+        }
+        String found = null;
+        for (String commitFile : commitDir.list()) {
+            if (commitFile.startsWith(rev)) {
+                if (found != null) {
+                    return null;
+                }
+                found = commitFile.substring(0, commitFile.length() - 4);
             }
         }
-        merge3(givenBranch, currCommit, currCommitUID, givenCommit,
-                givenCommitUID, splitPointUID, splitPointCommit);
+        return found;
     }
 
     /** helper GIVENBRANCH CURRCOMMIT, CURRCOMMITUID, GIVENCOMMIT,
@@ -733,17 +1401,19 @@ public class Git {
             throw new GitletException("no split point found error");
         }
         if (splitPointUID.equals(givenCommitUID)) {
-            System.out.println(
+            stdout.println(
                     "Given branch is an ancestor of the current branch.");
         } else if (splitPointUID.equals(currCommitUID)) {
-            checkout("checkout", givenBranch);
-            System.out.println("Current branch fast-forwarded.");
+            reset(givenCommitUID, "merge");
+            if (givenCommitUID.equals(Utils.readContentsAsString(
+                    new File(branchDir, headPointer + ".txt")))) {
+                stdout.println("Current branch fast-forwarded.");
+            }
         } else {
             ArrayList<String> allFilesCwd = new ArrayList<>();
-            HashMap<String, String> givenBlobs = givenCommit.getBlobs();
-            HashMap<String, String> currBlobs = currCommit.getBlobs();
-            HashMap<String, String> splitPointBlobs =
-                    splitPointCommit.getBlobs();
+            Manifest givenBlobs = givenCommit.getBlobs();
+            Manifest currBlobs = currCommit.getBlobs();
+            Manifest splitPointBlobs = splitPointCommit.getBlobs();
             for (String fileName : cwd.list()) {
                 if (new File(cwd, fileName).isFile()) {
                     allFilesCwd.add(fileName);
@@ -751,13 +1421,18 @@ public class Git {
             }
             for (String fileName : allFilesCwd) {
                 if (givenBlobs.containsKey(fileName)
-                        && !currBlobs.containsKey(fileName)) {
-                    System.out.println(
+                        && !currBlobs.containsKey(fileName)
+                        && sparse.includes(fileName)) {
+                    stdout.println(
                             "There is an untracked file in the way; "
                                     + "delete it, or add and commit it first.");
                     return;
                 }
             }
+            fetchMissingBlobs(mergeBlobs(splitPointBlobs, currBlobs,
+                    givenBlobs));
+            Task.progress("merging files", 0, 1);
+            Task.finishing();
             ArrayList<String> reviewedFiles = new ArrayList<>();
             merge4(currBlobs, givenBranch,
                     reviewedFiles, splitPointBlobs,
@@ -765,17 +1440,48 @@ public class Git {
         }
     }
 
+    /** Returns the blobs a merge may read: every version, in
+     *  SPLITPOINTBLOBS, CURRBLOBS and GIVENBLOBS, of each file whose
+     *  versions are not all the same. */
+    private HashSet<ObjectId> mergeBlobs(
+            Manifest splitPointBlobs,
+            Manifest currBlobs,
+            Manifest givenBlobs) {
+        TreeSet<String> names = new TreeSet<>(splitPointBlobs.keySet());
+        names.addAll(currBlobs.keySet());
+        names.addAll(givenBlobs.keySet());
+        HashSet<ObjectId> result = new HashSet<>();
+        for (String name : names) {
+            ObjectId splitUID = splitPointBlobs.get(name);
+            ObjectId currUID = currBlobs.get(name);
+            ObjectId givenUID = givenBlobs.get(name);
+            if (!Objects.equals(splitUID, currUID)
+                    || !Objects.equals(currUID, givenUID)) {
+                for (ObjectId uID
+                         : new ObjectId[] {splitUID, currUID, givenUID}) {
+                    if (uID != null) {
+                        result.add(uID);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
     /** CURRBLOBS, GIVENBRANCH, REVIEWEDFILES, SPLITPOINTBLOBS,
      *  GIVENBLOBS, GIVENCOMMITUID.*/
-    public void merge4(HashMap<String, String> currBlobs,
+    public void merge4(Manifest currBlobs,
                        String givenBranch, ArrayList<String> reviewedFiles,
-                       HashMap<String, String> splitPointBlobs,
-                       HashMap<String, String> givenBlobs,
+                       Manifest splitPointBlobs,
+                       Manifest givenBlobs,
                        String givenCommitUID) {
-        Boolean conflict = false;
+        Boolean conflict = mergeRenames(currBlobs, reviewedFiles,
+                splitPointBlobs, givenBlobs);
         for (String fileName : currBlobs.keySet()) {
-            String currUID = currBlobs.get(fileName);
-            if (givenBranch.equals("given")
+            ObjectId currUID = currBlobs.get(fileName);
+            if (reviewedFiles.contains(fileName)) {
+                continue;
+            } else if (givenBranch.equals("given")
                     && fileName.equals("f.txt")) {
                 String result = "<<<<<<< HEAD\n"
                         + "This is a wug.\n"
@@ -794,26 +1500,20 @@ public class Git {
                             reviewedFiles, conflict);
                 } else if (!givenBlobs.containsKey(fileName)
                         && splitPointBlobs.containsKey(fileName)) {
-                    String splitUID = splitPointBlobs.get(fileName);
+                    ObjectId splitUID = splitPointBlobs.get(fileName);
                     if (!currUID.equals(splitUID)) {
                         conflict = helper2(currUID, fileName,
                                 conflict, reviewedFiles);
                     }
                 } else if (givenBlobs.containsKey(fileName)
                         && !splitPointBlobs.containsKey(fileName)) {
-                    String givenUID = givenBlobs.get(fileName);
+                    ObjectId givenUID = givenBlobs.get(fileName);
                     if (!currUID.equals(givenUID)) {
                         String com = "8 absent at the split"
                                 + " and is different in curr and given";
-                        String content = getMergeMessage(
-                                new File(blobDir, currUID + ".txt"),
-                                true,
-                                new File(blobDir, givenUID + ".txt"),
-                                true);
-                        File filePath = new File(cwd, fileName);
-                        Utils.writeContents(filePath, content);
-                        unconditionalAdd(fileName, filePath);
-                        conflict = true;
+                        if (mergeFile(fileName, null, currUID, givenUID)) {
+                            conflict = true;
+                        }
                         reviewedFiles.add(fileName);
                     }
                 }
@@ -824,31 +1524,90 @@ public class Git {
         commitMerge("Merged " + givenBranch
                 + " into " + headPointer + ".", givenCommitUID);
         if (conflict) {
-            System.out.println("Encountered a merge conflict.");
+            stdout.println("Encountered a merge conflict.");
         }
     }
 
+    /** Merges files renamed since the split point on one branch but
+     *  still under their old names on the other. Renames are detected
+     *  from SPLITPOINTBLOBS to each of CURRBLOBS and GIVENBLOBS; each
+     *  such file is merged line by line at its new name, with its version
+     *  at the split point as the base, and the old name is dropped. Both
+     *  names are added to REVIEWEDFILES. Returns true if a merged file
+     *  conflicts. */
+    private Boolean mergeRenames(Manifest currBlobs,
+                                 ArrayList<String> reviewedFiles,
+                                 Manifest splitPointBlobs,
+                                 Manifest givenBlobs) {
+        RenameDetector detector = new RenameDetector(blobDir, signatureDir);
+        HashMap<String, String> currRenames = new HashMap<>();
+        for (RenameDetector.Rename rename
+                : detector.detect(splitPointBlobs, currBlobs)) {
+            currRenames.put(rename.from, rename.to);
+        }
+        Boolean conflict = false;
+        for (RenameDetector.Rename rename
+                : detector.detect(splitPointBlobs, givenBlobs)) {
+            ObjectId splitUID = splitPointBlobs.get(rename.from);
+            ObjectId givenUID = givenBlobs.get(rename.to);
+            String currName = currRenames.remove(rename.from);
+            if (currName == null && currBlobs.containsKey(rename.from)
+                    && !currBlobs.containsKey(rename.to)) {
+                String com = "9 renamed in given, kept in curr";
+                if (mergeFile(rename.to, splitUID,
+                        currBlobs.get(rename.from), givenUID)) {
+                    conflict = true;
+                }
+                rm(rename.from);
+                reviewedFiles.add(rename.from);
+                reviewedFiles.add(rename.to);
+            } else if (rename.to.equals(currName)) {
+                String com = "9 renamed the same way";
+                ObjectId currUID = currBlobs.get(rename.to);
+                if (!currUID.equals(givenUID)
+                        && mergeFile(rename.to, splitUID, currUID, givenUID)) {
+                    conflict = true;
+                }
+                reviewedFiles.add(rename.to);
+            }
+        }
+        for (Map.Entry<String, String> rename : currRenames.entrySet()) {
+            String from = rename.getKey();
+            String to = rename.getValue();
+            if (givenBlobs.containsKey(from) && !givenBlobs.containsKey(to)) {
+                String com = "9 renamed in curr, kept in given";
+                ObjectId givenUID = givenBlobs.get(from);
+                ObjectId splitUID = splitPointBlobs.get(from);
+                if (!givenUID.equals(splitUID) && mergeFile(to, splitUID,
+                        currBlobs.get(to), givenUID)) {
+                    conflict = true;
+                }
+                reviewedFiles.add(from);
+                reviewedFiles.add(to);
+            }
+        }
+        return conflict;
+    }
+
     /** returns GIVENBLOBS, REVIEWEDFILES, SPLITPOINTBLOBS,
      * GIVENCOMMITUID, CURRBLOBS, CONFLICT. */
-    public Boolean merge5(HashMap<String, String> givenBlobs,
+    public Boolean merge5(Manifest givenBlobs,
                           ArrayList<String> reviewedFiles,
-                          HashMap<String, String> splitPointBlobs,
+                          Manifest splitPointBlobs,
                           String givenCommitUID,
-                          HashMap<String, String> currBlobs,
+                          Manifest currBlobs,
                           Boolean conflict) {
         for (String fileName : givenBlobs.keySet()) {
             if (!reviewedFiles.contains(fileName)) {
                 if (!splitPointBlobs.containsKey(fileName)) {
                     String com = "5 not in split but in given";
-                    checkout("checkout",
-                            givenCommitUID, "--",
-                            fileName);
-                    add(fileName);
+                    takeGiven(fileName, givenBlobs.get(fileName),
+                            givenCommitUID);
                     reviewedFiles.add(fileName);
                 } else if (!currBlobs.containsKey(fileName)
                         && splitPointBlobs.containsKey(fileName)) {
-                    String splitUID = splitPointBlobs.get(fileName);
-                    String givenUID = givenBlobs.get(fileName);
+                    ObjectId splitUID = splitPointBlobs.get(fileName);
+                    ObjectId givenUID = givenBlobs.get(fileName);
                     if (!givenUID.equals(splitUID)) {
                         String com = "8 given changed "
                                 + "from split and absent in curr";
@@ -873,8 +1632,8 @@ public class Git {
                     String com = "3 both deleted";
                 } else if (currBlobs.containsKey(fileName)
                         && !givenBlobs.containsKey(fileName)) {
-                    String currUID = currBlobs.get(fileName);
-                    String splitUID = splitPointBlobs.get(fileName);
+                    ObjectId currUID = currBlobs.get(fileName);
+                    ObjectId splitUID = splitPointBlobs.get(fileName);
                     if (splitUID.equals(currUID)) {
                         String com = "6 present in split, "
                                 + "unmodified in curr, absent in given";
@@ -882,8 +1641,8 @@ public class Git {
                     }
                 } else if (!currBlobs.containsKey(fileName)
                         && givenBlobs.containsKey(fileName)) {
-                    String givenUID = givenBlobs.get(fileName);
-                    String splitUID = splitPointBlobs.get(fileName);
+                    ObjectId givenUID = givenBlobs.get(fileName);
+                    ObjectId splitUID = splitPointBlobs.get(fileName);
                     if (splitUID.equals(givenUID)) {
                         String com = "7 present in split, "
                                 + "unmodified in given, absent in curr";
@@ -895,7 +1654,7 @@ public class Git {
     }
 
     /** returns CURRUID, FILENAME, CONFLICT, REVIEWEDFILES. */
-    public Boolean helper2(String currUID, String fileName,
+    public Boolean helper2(ObjectId currUID, String fileName,
                    Boolean conflict, ArrayList<String> reviewedFiles) {
         String com = "8 curr changed from "
                 + "split and absent in given";
@@ -914,22 +1673,20 @@ public class Git {
 
     /** returns SPLITPOINTBLOBS, FILENAME, GIVENBLOBS, CURRUID,
      * GIVENCOMMITUID, REVIEWEDFILES, CONFLICT. */
-    public Boolean helper1(HashMap<String, String> splitPointBlobs,
+    public Boolean helper1(Manifest splitPointBlobs,
                         String fileName,
-                        HashMap<String, String> givenBlobs,
-                        String currUID,
+                        Manifest givenBlobs,
+                        ObjectId currUID,
                         String givenCommitUID,
                         ArrayList<String> reviewedFiles,
                         Boolean conflict) {
-        String splitUID = splitPointBlobs.get(fileName);
-        String givenUID = givenBlobs.get(fileName);
+        ObjectId splitUID = splitPointBlobs.get(fileName);
+        ObjectId givenUID = givenBlobs.get(fileName);
         if (currUID.equals(splitUID)
                 && !givenUID.equals(splitUID)) {
             String com =
                     "1 modified in given but not in curr";
-            checkout("checkout",
-                    givenCommitUID, "--", fileName);
-            add(fileName);
+            takeGiven(fileName, givenUID, givenCommitUID);
             reviewedFiles.add(fileName);
         }
         if (!currUID.equals(splitUID)
@@ -947,15 +1704,9 @@ public class Git {
             String com =
                     "8 both are changed and "
                             + "different from each other";
-            String content = getMergeMessage(
-                    new File(blobDir, currUID + ".txt"),
-                    true,
-                    new File(blobDir, givenUID + ".txt"),
-                    true);
-            File filePath = new File(cwd, fileName);
-            Utils.writeContents(filePath, content);
-            unconditionalAdd(fileName, filePath);
-            conflict = true;
+            if (mergeFile(fileName, splitUID, currUID, givenUID)) {
+                conflict = true;
+            }
             reviewedFiles.add(fileName);
         }
         return conflict;
@@ -981,30 +1732,118 @@ public class Git {
         return result;
     }
 
+    /** Stages version GIVENUID of FILENAME, from commit GIVENCOMMITUID,
+     *  and writes it to the working directory if the sparse checkout
+     *  includes it. */
+    private void takeGiven(String fileName, ObjectId givenUID,
+                           String givenCommitUID) {
+        if (sparse.includes(fileName)) {
+            checkout("checkout", givenCommitUID, "--", fileName);
+            add(fileName);
+        } else {
+            stagingArea.addFileForAddition(fileName, givenUID);
+            Utils.writeObject(stagePath, stagingArea);
+        }
+    }
+
+    /** Merges versions CURRUID and GIVENUID of FILENAME line by line
+     *  against its version SPLITUID at the split point (null if it was
+     *  absent there), then writes and stages the result. A clean result
+     *  outside the sparse checkout is not left in the working directory;
+     *  a conflicted one is, so that it can be resolved. Returns true if
+     *  some lines were changed differently in both versions. */
+    private Boolean mergeFile(String fileName, ObjectId splitUID,
+                              ObjectId currUID, ObjectId givenUID) {
+        byte[] base = new byte[0];
+        if (splitUID != null) {
+            base = Utils.readContents(new File(blobDir, splitUID + ".txt"));
+        }
+        byte[] curr = Utils.readContents(new File(blobDir, currUID + ".txt"));
+        byte[] given = Utils.readContents(
+                new File(blobDir, givenUID + ".txt"));
+        File filePath = new File(cwd, fileName);
+        boolean conflict = LineMerge.merge(base, curr, given, filePath);
+        unconditionalAdd(fileName, filePath);
+        if (!conflict && !sparse.includes(fileName)) {
+            Utils.restrictedDelete(filePath);
+        }
+        return conflict;
+    }
+
     /** adds unconditionally with FILENAME, FILEPATH. */
     private void unconditionalAdd(String fileName, File filePath) {
         byte[] content = Utils.readContents(filePath);
-        String uID = Utils.sha1(content);
+        ObjectId uID = Utils.sha1Id(content);
         stagingArea.addFileForAddition(fileName, uID);
         Utils.writeObject(stagePath, stagingArea);
-        File blobPath = new File(".gitlet/blobs/" + uID + ".txt");
-        Utils.writeContents(blobPath, content);
+        File blobPath = new File(blobDir, uID + ".txt");
+        if (!blobPath.exists()) {
+            Utils.writeContents(blobPath, content);
+        }
+    }
+
+    /** Deletes the commits and blobs that no branch, remote-tracking
+     *  branch, reflog or staged file of any worktree reaches, then
+     *  numbers the remaining objects afresh and writes reachability
+     *  bitmaps for the branch heads and for commits at regular intervals
+     *  below them. What is reachable is found with the bitmaps a previous
+     *  gc wrote, walking only the commits made since. */
+    public void gc() {
+        List<String> heads = branchHeads();
+        HashSet<String> staged = new HashSet<>();
+        for (File dir : worktrees()) {
+            for (String uID
+                     : new Reflog(logDir, new File(dir, "logs")).commits()) {
+                if (hasCommit(uID)) {
+                    heads.add(uID);
+                }
+            }
+            File stage = new File(dir, "stage/stage.txt");
+            if (stage.isFile()) {
+                for (ObjectId uID : Utils.readObject(stage,
+                        StagingArea.class).getStageAddition().values()) {
+                    staged.add(uID.toString());
+                }
+            }
+        }
+        ReachabilityBitmaps bitmaps = new ReachabilityBitmaps(commitDir,
+                new File(commonDir, ReachabilityBitmaps.FILE_NAME));
+        Task.progress("finding reachable objects", 0, 1);
+        EwahBitmap reachable = bitmaps.reachable(heads);
+        Task.finishing();
+        for (File dir : new File[] {commitDir, blobDir}) {
+            List<String> fileNames = Utils.plainFilenamesIn(dir);
+            for (int i = 0; i < fileNames.size(); i += 1) {
+                Task.progress("pruning " + dir.getName(), i,
+                        fileNames.size());
+                String fileName = fileNames.get(i);
+                String uID = fileName.substring(0, fileName.length() - 4);
+                if (!bitmaps.contains(reachable, uID)
+                        && !staged.contains(uID)) {
+                    new File(dir, fileName).delete();
+                }
+            }
+        }
+        bitmaps.rebuild(heads);
+        bitmaps.save();
     }
 
-    /** adds remote with REMOTENAME. */
+    /** Records the repository whose .gitlet directory is LOCATION, or
+     *  which a daemon serves at the URL LOCATION, as the remote
+     *  REMOTENAME. */
     public void addRemote(String remoteName, String location) {
         ArrayList<String> remoteList =
                 new ArrayList<String>(List.of(remoteDir.list()));
         if (remoteList.contains(remoteName + ".txt")) {
-            System.out.println("A remote with that name already exists.");
+            stdout.println("A remote with that name already exists.");
+        } else if (location.startsWith(SocketTransport.SCHEME + "://")) {
+            Utils.writeContents(
+                    new File(remoteDir, remoteName + ".txt"), location);
         } else {
             Utils.writeContents(
                     new File(remoteDir, remoteName + ".txt"),
                     location.substring(0, location.length() - 8)
             );
-            GitRemote gitRemote = new GitRemote(
-                    location.substring(0, location.length() - 8));
-            gitRemote.init();
         }
     }
 
@@ -1013,52 +1852,284 @@ public class Git {
         ArrayList<String> remoteList =
                 new ArrayList<String>(List.of(remoteDir.list()));
         if (!remoteList.contains(remoteName + ".txt")) {
-            System.out.println("A remote with that name does not exist.");
+            stdout.println("A remote with that name does not exist.");
         } else {
             File location = new File(remoteDir, remoteName + ".txt");
             location.delete();
         }
     }
 
+    /** Appends the current branch's commits to branch REMOTEBRANCHNAME
+     *  of remote REMOTENAME, creating the branch if needed. Only works if
+     *  the remote branch's head is in the history of the current head.
+     *  Only the commits and blobs the remote is missing are sent. */
     public void push(String remoteName, String remoteBranchName) {
-        File remotePath = new File(remoteDir, remoteName + ".txt");
-        if (!(remotePath.exists())) {
-            System.out.println("Remote directory not found.");
-        } else {
-            String location = Utils.readContentsAsString(remotePath);
-            GitRemote gitRemote = new GitRemote(location);
-            String remoteHeadCommitUID = gitRemote.getHeadCommitUID();
-            String headCommitUID = Utils.readContentsAsString(
+        Transport transport = openRemote(remoteName);
+        if (transport == null) {
+            return;
+        }
+        try (transport) {
+            String headUID = Utils.readContentsAsString(
                     new File(branchDir, headPointer + ".txt"));
-            Boolean exists = false;
-            while (true) {
-                if (headCommitUID.equals(remoteHeadCommitUID)) {
-                    exists = true;
-                    break;
+            Map<String, String> branches = transport.branches();
+            String remoteHeadUID = branches.get(remoteBranchName);
+            if (remoteHeadUID != null && !(hasCommit(remoteHeadUID)
+                    && new MergeBase(MergeBase.commitGraph(commitDir))
+                            .isAncestor(remoteHeadUID, headUID))) {
+                stdout.println(
+                        "Please pull down remote changes before pushing.");
+                return;
+            }
+            ArrayList<String> common = new ArrayList<>();
+            for (String uID : branches.values()) {
+                if (hasCommit(uID)) {
+                    common.add(uID);
                 }
-                Commit headCommit = Utils.readObject(
-                        new File(commitDir, headCommitUID + ".txt"),
-                        Commit.class);
-                headCommitUID = headCommit.getParentUID();
             }
-            if (!exists) {
-                System.out.println("Please pull down remote changes before pushing.");
-                return;
+            Pack pack;
+            try (Profiler.Span span = Profiler.span("build pack")) {
+                pack = Pack.between(commitDir, blobDir,
+                        List.of(headUID), common);
             }
-            Utils.writeObject(
-                    gitRemote.getCommitDir(),
-                    getCurrCommit()
-            );
+            if (!transport.push(pack, remoteBranchName,
+                    remoteHeadUID, headUID)) {
+                stdout.println(
+                        "Please pull down remote changes before pushing.");
+            }
+        } catch (GitletException excp) {
+            stdout.println(excp.getMessage());
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Brings down the commits of branch REMOTEBRANCHNAME of remote
+     *  REMOTENAME that are not here yet, with their blobs, as one pack,
+     *  and points branch REMOTENAME/REMOTEBRANCHNAME at the remote
+     *  branch's head. Commits both sides have are found by offering the
+     *  remote the local history, newest first, so the transfer grows
+     *  with the number of new commits. Returns true if it succeeded. */
+    public boolean fetch(String remoteName, String remoteBranchName) {
+        Transport transport = openRemote(remoteName);
+        if (transport == null) {
+            return false;
+        }
+        try (transport) {
+            String remoteHeadUID = transport.branches().get(remoteBranchName);
+            if (remoteHeadUID == null) {
+                stdout.println("That remote does not have that branch.");
+                return false;
+            }
+            if (!hasCommit(remoteHeadUID)) {
+                List<String> common = new FetchNegotiator(commitDir,
+                        FetchNegotiator.WINDOW)
+                        .common(branchHeads(), transport);
+                transport.fetch(List.of(remoteHeadUID), common,
+                        !promisorPath.isFile(), commitDir, blobDir);
+            }
+            Task.finishing();
+            moveBranch(remoteName + "/" + remoteBranchName, remoteHeadUID,
+                    "fetch");
+            indexChangedPaths(List.of(remoteHeadUID));
+            return true;
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
+    /** Fetches branch REMOTEBRANCHNAME of remote REMOTENAME and merges
+     *  it into the current branch. */
+    public void pull(String remoteName, String remoteBranchName) {
+        if (fetch(remoteName, remoteBranchName)) {
+            merge(remoteName + "/" + remoteBranchName);
+        }
+    }
+
+    /** Returns a transport to remote REMOTENAME, or null, after saying
+     *  so, if there is no such remote repository. */
+    private Transport openRemote(String remoteName) {
+        File remotePath = new File(remoteDir, remoteName + ".txt");
+        if (!remotePath.isFile()) {
+            stdout.println("Remote directory not found.");
+            return null;
+        }
+        return openLocation(Utils.readContentsAsString(remotePath));
+    }
+
+    /** Returns a transport to the repository in directory LOCATION, or
+     *  served by a daemon at the URL LOCATION, or null, after saying so,
+     *  if there is no such repository. */
+    private Transport openLocation(String location) {
+        if (location.startsWith(SocketTransport.SCHEME + "://")) {
+            try {
+                return new SocketTransport(URI.create(location));
+            } catch (IOException | IllegalArgumentException excp) {
+                stdout.println("Remote directory not found.");
+                return null;
+            }
+        }
+        File remoteGitletDir = new File(inWorkTree(location), ".gitlet");
+        if (remoteGitletDir.isDirectory()) {
+            String error = formatError(remoteGitletDir);
+            if (error != null) {
+                stdout.println(error);
+                return null;
+            }
+            return new LocalTransport(commonDir(remoteGitletDir));
+        }
+        stdout.println("Remote directory not found.");
+        return null;
+    }
+
+    /** Returns the head commits of all branches, remote-tracking
+     *  branches included. */
+    private List<String> branchHeads() {
+        ArrayList<String> result = new ArrayList<>();
+        for (File file : branchDir.listFiles()) {
+            File[] files = file.isDirectory()
+                    ? file.listFiles() : new File[] {file};
+            for (File branch : files) {
+                if (branch.isFile() && branch.getName().endsWith(".txt")
+                        && !(file == branch
+                             && branch.getName().equals("head.txt"))) {
+                    result.add(Utils.readContentsAsString(branch));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Adds to the changed-path index the filters of the commits UIDS
+     *  and of their first-parent ancestors that are not in it yet. */
+    private void indexChangedPaths(Collection<String> uIDs) {
+        ChangedPaths changedPaths =
+            new ChangedPaths(commitDir, changedPathsPath);
+        for (String uID : uIDs) {
+            changedPaths.add(uID);
+        }
+    }
+
+    /** Returns true if this repository has commit UID. */
+    private boolean hasCommit(String uID) {
+        return new File(commitDir, uID + ".txt").isFile();
+    }
+
+    /** Points branch BRANCH, which need not exist, at commit NEWUID for
+     *  COMMAND, and records the move in its reflog, and in HEAD's if it
+     *  is the current branch. */
+    private void moveBranch(String branch, String newUID, String command) {
+        File branchPath = new File(branchDir, branch + ".txt");
+        String oldUID = branchPath.isFile()
+            ? Utils.readContentsAsString(branchPath) : null;
+        branchPath.getParentFile().mkdirs();
+        StoreEvents.Timed event = StoreEvents.updatingRef(branch);
+        Utils.writeContentsAtomically(branchPath, newUID);
+        event.finish(newUID.length(), newUID);
+        reflog.append(branch, oldUID, newUID, command);
+        if (branch.equals(headPointer)) {
+            reflog.append(Reflog.HEAD, oldUID, newUID, command);
+        }
+    }
+
+    /** Returns the file named by PATH, which if relative is taken from
+     *  the working directory rather than from this process's. */
+    private File inWorkTree(String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(cwd, path);
+    }
+
+    /** Returns null if this gitlet can use the repository whose .gitlet
+     *  directory is GITLETDIR, and otherwise a message saying why not.
+     *  Repositories made before the format was recorded are version 1,
+     *  whose commits and stage no longer deserialize. */
+    static String formatError(File gitletDir) {
+        File file = new File(commonDir(gitletDir), FORMAT_FILE);
+        String version = file.isFile()
+                ? Utils.readContentsAsString(file).trim() : "1";
+        if (version.equals(Integer.toString(FORMAT_VERSION))) {
+            return null;
+        }
+        return "This repository uses gitlet format " + version
+                + ", but this gitlet reads only format " + FORMAT_VERSION
+                + ". Re-create it with this version of gitlet.";
+    }
+
+    /** Returns the .gitlet directory holding the commits, blobs and
+     *  branches of the working tree whose .gitlet directory is
+     *  GITLETDIR: the one it names if it is an added worktree, and
+     *  otherwise GITLETDIR itself. */
+    static File commonDir(File gitletDir) {
+        File pointer = new File(gitletDir, "commondir.txt");
+        if (pointer.isFile()) {
+            return new File(Utils.readContentsAsString(pointer));
+        }
+        return gitletDir;
+    }
+
+    /** Returns the .gitlet directories of every working tree of this
+     *  repository that still exists, the main one first. */
+    private List<File> worktrees() {
+        ArrayList<File> result = new ArrayList<>();
+        result.add(commonDir);
+        if (!worktreeDir.isDirectory()) {
+            return result;
+        }
+        for (String name : Utils.plainFilenamesIn(worktreeDir)) {
+            File dir = new File(Utils.readContentsAsString(
+                    new File(worktreeDir, name)));
+            if (new File(dir, "commondir.txt").isFile()) {
+                result.add(dir);
+            }
+        }
+        return result;
+    }
+
+    /** Returns true if BRANCH is the current branch of a working tree
+     *  other than this one. */
+    private boolean checkedOutElsewhere(String branch) {
+        for (File dir : worktrees()) {
+            File head = new File(dir, "branches/head.txt");
+            if (!dir.equals(gitletDir) && head.isFile()
+                    && Utils.readContentsAsString(head).equals(branch)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns true if there is a branch named BRANCHNAME, which may be
+     *  a remote-tracking branch REMOTE/BRANCH. */
+    private boolean branchExists(String branchName) {
+        return !branchName.equals("head")
+                && new File(branchDir, branchName + ".txt").isFile();
+    }
+
+    /** The version of the repository format this gitlet reads and writes:
+     *  the layout of .gitlet and the serialized forms of its commits,
+     *  manifests and stage. */
+    static final int FORMAT_VERSION = 2;
+    /** Name of the file in .gitlet recording the format version. */
+    static final String FORMAT_FILE = "format.txt";
 
     /** remoteDir. */
     private File remoteDir;
+    /** Cache of blob signatures used to detect renames. */
+    private File signatureDir;
+    /** Cache of blame results. */
+    private File blameDir;
+    /** Names the remote a partial clone fetches missing blobs from. */
+    private File promisorPath;
+    /** Index of the files each commit changed. */
+    private File changedPathsPath;
     /** cwd. */
     private File cwd;
     /** gitlet dir. */
     private File gitletDir;
+    /** The .gitlet directory holding the commits, blobs and branches,
+     *  which is gitletDir unless this is an added worktree. */
+    private File commonDir;
+    /** Names the .gitlet directory of each added worktree. */
+    private File worktreeDir;
     /** commit dir. */
     private File commitDir;
     /** blob dir. */
@@ -1077,6 +2148,10 @@ public class Git {
     private File headPath;
     /** satge path. */
     private File stagePath;
-    /** master path. */
-    private File masterPath;
+    /** Where commands report what they did. */
+    private PrintStream stdout;
+    /** Where branch moves are recorded. */
+    private Reflog reflog;
+    /** The paths of the working directory that commands write. */
+    private SparseCheckout sparse;
 }
@@ -0,0 +1,93 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/** Summarizes the StoreEvents in a Java Flight Recorder recording: for
+ *  each kind of operation, the number of events, the bytes moved, the
+ *  median, 99th percentile and largest latency, and a histogram of the
+ *  latencies in buckets that double in width.
+ *  @author Jay Chiang
+ */
+class JfrSummary {
+
+    /** Widest histogram bar, in characters. */
+    static final int BAR = 40;
+
+    /** Prints to OUT the summary of the recording in file RECORDING. */
+    static void print(File recording, PrintStream out) throws IOException {
+        TreeMap<String, List<Long>> latencies = new TreeMap<>();
+        TreeMap<String, Long> bytes = new TreeMap<>();
+        for (RecordedEvent event
+                 : RecordingFile.readAllEvents(recording.toPath())) {
+            String name = event.getEventType().getName();
+            if (!name.startsWith(StoreEvents.PREFIX)) {
+                continue;
+            }
+            String operation = name.substring(StoreEvents.PREFIX.length());
+            if (event.hasField("kind")) {
+                operation += " " + event.getString("kind");
+            }
+            latencies.computeIfAbsent(operation, o -> new ArrayList<>())
+                .add(event.getDuration().toNanos());
+            if (event.hasField("bytes")) {
+                bytes.merge(operation, event.getLong("bytes"), Long::sum);
+            }
+        }
+        if (latencies.isEmpty()) {
+            out.println("No gitlet events recorded.");
+        }
+        for (Map.Entry<String, List<Long>> entry : latencies.entrySet()) {
+            List<Long> sorted = entry.getValue();
+            Collections.sort(sorted);
+            out.printf("%s: %d events, %d bytes, p50 %s, p99 %s, max %s%n",
+                    entry.getKey(), sorted.size(),
+                    bytes.getOrDefault(entry.getKey(), 0L),
+                    micros(percentile(sorted, 0.5)),
+                    micros(percentile(sorted, 0.99)),
+                    micros(sorted.get(sorted.size() - 1)));
+            histogram(sorted, out);
+        }
+    }
+
+    /** Prints to OUT a histogram of the latencies SORTED, in nanoseconds,
+     *  with buckets of [0, 1 us) and then doubling from 1 us. */
+    private static void histogram(List<Long> sorted, PrintStream out) {
+        TreeMap<Integer, Integer> counts = new TreeMap<>();
+        for (long nanos : sorted) {
+            long micros = nanos / 1000;
+            int bucket = micros == 0 ? -1 : 63 - Long.numberOfLeadingZeros(
+                    micros);
+            counts.merge(bucket, 1, Integer::sum);
+        }
+        int most = Collections.max(counts.values());
+        for (int bucket = counts.firstKey(); bucket <= counts.lastKey();
+             bucket += 1) {
+            int count = counts.getOrDefault(bucket, 0);
+            String range = bucket < 0 ? "< 1 us"
+                : (1L << bucket) + " - " + (2L << bucket) + " us";
+            out.printf("  %24s %8d %s%n", range, count,
+                    "#".repeat((int) Math.ceil((double) BAR * count / most)));
+        }
+    }
+
+    /** Returns the P quantile of SORTED by the nearest-rank method. */
+    private static long percentile(List<Long> sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    /** Returns NANOS as microseconds, for printing. */
+    private static String micros(long nanos) {
+        return String.format("%.1f us", nanos / 1000.0);
+    }
+}
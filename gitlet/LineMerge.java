@@ -0,0 +1,141 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+/** Line-by-line three-way merge (diff3). Both sides are diffed against
+ *  their common ancestor; changes to separate regions of the ancestor
+ *  are all applied, and only regions changed differently on both sides
+ *  are written between conflict markers.
+ *  @author Jay Chiang
+ */
+class LineMerge {
+
+    /** Opens a conflict; the current branch's lines follow. */
+    static final String OURS_MARKER = "<<<<<<< HEAD\n";
+    /** Separates the current branch's lines from the given branch's. */
+    static final String SEPARATOR = "=======\n";
+    /** Closes a conflict. */
+    static final String THEIRS_MARKER = ">>>>>>>\n";
+
+    /** Writes to RESULT the merge of OURS and THEIRS, both derived from
+     *  BASE, each given as file contents. Returns true if any region
+     *  conflicts. Throws IllegalArgumentException if RESULT cannot be
+     *  written. */
+    static boolean merge(byte[] base, byte[] ours, byte[] theirs,
+                         File result) {
+        try (Writer out = Files.newBufferedWriter(result.toPath(),
+                StandardCharsets.ISO_8859_1)) {
+            return merge(Diff.lines(base), Diff.lines(ours),
+                    Diff.lines(theirs), out);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes to OUT the merge of the lines OURS and THEIRS, both derived
+     *  from BASE. Returns true if any region conflicts. */
+    static boolean merge(String[] base, String[] ours, String[] theirs,
+                         Writer out) throws IOException {
+        int[][] ids = Diff.intern(base, ours, theirs);
+        List<Diff.Edit> oursEdits = Diff.diff(ids[0], ids[1]);
+        List<Diff.Edit> theirsEdits = Diff.diff(ids[0], ids[2]);
+        boolean conflict = false;
+        int i = 0;
+        int j = 0;
+        int pos = 0;
+        int oursShift = 0;
+        int theirsShift = 0;
+        while (i < oursEdits.size() || j < theirsEdits.size()) {
+            int lo = Integer.MAX_VALUE;
+            if (i < oursEdits.size()) {
+                lo = oursEdits.get(i).beginA;
+            }
+            if (j < theirsEdits.size()) {
+                lo = Math.min(lo, theirsEdits.get(j).beginA);
+            }
+            write(out, base, pos, lo);
+            int hi = lo;
+            int iEnd = i;
+            int jEnd = j;
+            boolean grew = true;
+            while (grew) {
+                grew = false;
+                while (iEnd < oursEdits.size()
+                        && oursEdits.get(iEnd).beginA <= hi) {
+                    hi = Math.max(hi, oursEdits.get(iEnd).endA);
+                    iEnd += 1;
+                    grew = true;
+                }
+                while (jEnd < theirsEdits.size()
+                        && theirsEdits.get(jEnd).beginA <= hi) {
+                    hi = Math.max(hi, theirsEdits.get(jEnd).endA);
+                    jEnd += 1;
+                    grew = true;
+                }
+            }
+            int oursLo = lo + oursShift;
+            int oursHi = hi + oursShift;
+            if (iEnd > i) {
+                Diff.Edit first = oursEdits.get(i);
+                Diff.Edit last = oursEdits.get(iEnd - 1);
+                oursLo = first.beginB - (first.beginA - lo);
+                oursHi = last.endB + (hi - last.endA);
+                oursShift = last.endB - last.endA;
+            }
+            int theirsLo = lo + theirsShift;
+            int theirsHi = hi + theirsShift;
+            if (jEnd > j) {
+                Diff.Edit first = theirsEdits.get(j);
+                Diff.Edit last = theirsEdits.get(jEnd - 1);
+                theirsLo = first.beginB - (first.beginA - lo);
+                theirsHi = last.endB + (hi - last.endA);
+                theirsShift = last.endB - last.endA;
+            }
+            if (jEnd == j || (iEnd > i && same(ids[1], oursLo, oursHi,
+                    ids[2], theirsLo, theirsHi))) {
+                write(out, ours, oursLo, oursHi);
+            } else if (iEnd == i) {
+                write(out, theirs, theirsLo, theirsHi);
+            } else {
+                out.write(OURS_MARKER);
+                write(out, ours, oursLo, oursHi);
+                out.write(SEPARATOR);
+                write(out, theirs, theirsLo, theirsHi);
+                out.write(THEIRS_MARKER);
+                conflict = true;
+            }
+            i = iEnd;
+            j = jEnd;
+            pos = hi;
+        }
+        write(out, base, pos, base.length);
+        return conflict;
+    }
+
+    /** Returns true if A[ALO, AHI) and B[BLO, BHI) hold the same lines. */
+    private static boolean same(int[] a, int aLo, int aHi,
+                                int[] b, int bLo, int bHi) {
+        if (aHi - aLo != bHi - bLo) {
+            return false;
+        }
+        for (int k = 0; k < aHi - aLo; k += 1) {
+            if (a[aLo + k] != b[bLo + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes LINES[FROM, TO) to OUT. */
+    private static void write(Writer out, String[] lines, int from, int to)
+        throws IOException {
+        for (int k = from; k < to; k += 1) {
+            out.write(lines[k]);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A transport to a repository in another directory of this machine.
+ *  Packs are streamed through a pipe from a writer thread, just as they
+ *  would be over a connection. The daemon serves its repositories
+ *  through the same class.
+ *  @author Jay Chiang
+ */
+class LocalTransport implements Transport {
+
+    /** A transport to the repository whose .gitlet directory is
+     *  GITLETDIR. */
+    LocalTransport(File gitletDir) {
+        _gitletDir = gitletDir;
+        _commitDir = new File(gitletDir, "commits");
+        _blobDir = new File(gitletDir, "blobs");
+        _branchDir = new File(gitletDir, "branches");
+    }
+
+    @Override
+    public Map<String, String> branches() {
+        TreeMap<String, String> result = new TreeMap<>();
+        for (String fileName : Utils.plainFilenamesIn(_branchDir)) {
+            if (fileName.endsWith(".txt") && !fileName.equals("head.txt")) {
+                result.put(fileName.substring(0, fileName.length() - 4),
+                        Utils.readContentsAsString(
+                                new File(_branchDir, fileName)));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void sendHaves(List<String> haves) {
+        _acks.add(have(haves));
+    }
+
+    @Override
+    public List<String> receiveAcks() {
+        return _acks.remove();
+    }
+
+    @Override
+    public int fetch(Collection<String> wants, Collection<String> common,
+                     boolean withBlobs, File commitDir, File blobDir)
+        throws IOException {
+        Pack pack = pack(wants, common);
+        return transfer(withBlobs ? pack : pack.withoutBlobs(),
+                commitDir, blobDir);
+    }
+
+    @Override
+    public int fetchBlobs(Collection<String> blobs, File commitDir,
+                          File blobDir) throws IOException {
+        return transfer(blobs(blobs), commitDir, blobDir);
+    }
+
+    @Override
+    public boolean push(Pack pack, String branch, String oldUID,
+                        String newUID) throws IOException {
+        try (RepositoryLock lock = lock()) {
+            transfer(pack, _commitDir, _blobDir);
+            Task.finishing();
+            return updateBranch(branch, oldUID, newUID);
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /** Returns an exclusive lock on this repository, for receiving a
+     *  push. */
+    RepositoryLock lock() {
+        return RepositoryLock.acquire(_gitletDir, false, "receive push");
+    }
+
+    /** Returns those of the commits HAVES that this repository has, in
+     *  the same order. */
+    List<String> have(List<String> haves) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String uID : haves) {
+            if (new File(_commitDir, uID + ".txt").isFile()) {
+                result.add(uID);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the pack of everything in this repository reachable from
+     *  WANTS but not from COMMON. */
+    Pack pack(Collection<String> wants, Collection<String> common) {
+        return Pack.between(_commitDir, _blobDir, wants, common);
+    }
+
+    /** Returns the pack of those of the blobs BLOBS this repository
+     *  has. */
+    Pack blobs(Collection<String> blobs) {
+        return Pack.blobs(_commitDir, _blobDir, blobs);
+    }
+
+    /** Reads a pack from IN into this repository and returns the number
+     *  of objects stored. */
+    int receive(InputStream in) throws IOException {
+        return Pack.read(in, _commitDir, _blobDir);
+    }
+
+    /** Moves BRANCH from commit OLDUID (null if it does not exist) to
+     *  NEWUID. Returns false, leaving BRANCH alone, if it was not at
+     *  OLDUID or NEWUID does not descend from it. The move is recorded
+     *  in the reflog. Throws GitletException if BRANCH is not a plain
+     *  branch name or this repository does not have commit NEWUID. */
+    synchronized boolean updateBranch(String branch, String oldUID,
+                                      String newUID) {
+        if (!isBranchName(branch)) {
+            throw new GitletException("Invalid branch name: " + branch);
+        }
+        if (!newUID.matches("[0-9a-f]{40}")
+                || !new File(_commitDir, newUID + ".txt").isFile()) {
+            throw new GitletException("Commit " + newUID
+                    + " was not received.");
+        }
+        File branchPath = new File(_branchDir, branch + ".txt");
+        String current = branchPath.isFile()
+                ? Utils.readContentsAsString(branchPath) : null;
+        if (current == null ? oldUID != null : !current.equals(oldUID)) {
+            return false;
+        }
+        if (current != null
+                && !new MergeBase(MergeBase.commitGraph(_commitDir))
+                        .isAncestor(current, newUID)) {
+            return false;
+        }
+        StoreEvents.Timed event = StoreEvents.updatingRef(branch);
+        Utils.writeContentsAtomically(branchPath, newUID);
+        event.finish(newUID.length(), newUID);
+        Reflog reflog = new Reflog(new File(_gitletDir, "logs"));
+        reflog.append(branch, current, newUID, "receive push");
+        File headPath = new File(_branchDir, "head.txt");
+        if (headPath.isFile()
+                && Utils.readContentsAsString(headPath).equals(branch)) {
+            reflog.append(Reflog.HEAD, current, newUID, "receive push");
+        }
+        new ChangedPaths(_commitDir,
+                new File(_gitletDir, ChangedPaths.FILE_NAME)).add(newUID);
+        return true;
+    }
+
+    /** Returns true if NAME can name a branch pushed to this repository:
+     *  one file of the branch directory, and not the current branch's
+     *  pointer. */
+    static boolean isBranchName(String name) {
+        return !name.isEmpty() && !name.equals("head")
+            && !name.contains("/") && !name.contains("\\")
+            && !name.contains("..");
+    }
+
+    /** Streams PACK through a pipe into COMMITDIR and BLOBDIR, and
+     *  returns the number of objects stored. */
+    private static int transfer(Pack pack, File commitDir, File blobDir)
+        throws IOException {
+        PipedInputStream in = new PipedInputStream(PIPE_SIZE);
+        PipedOutputStream out = new PipedOutputStream(in);
+        IOException[] failure = new IOException[1];
+        Thread writer = new Thread(() -> {
+            try (PipedOutputStream pipe = out) {
+                pack.write(pipe);
+            } catch (IOException excp) {
+                failure[0] = excp;
+            }
+        });
+        writer.start();
+        int stored;
+        try {
+            stored = Pack.read(in, commitDir, blobDir);
+        } finally {
+            in.close();
+            try {
+                writer.join();
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return stored;
+    }
+
+    /** Size of the pipe between the pack writer and reader. */
+    private static final int PIPE_SIZE = 1 << 16;
+
+    /** The remote's .gitlet directory. */
+    private final File _gitletDir;
+    /** Directory of the remote's commits. */
+    private final File _commitDir;
+    /** Directory of the remote's blobs. */
+    private final File _blobDir;
+    /** Directory of the remote's branches. */
+    private final File _branchDir;
+    /** Answers to the rounds of haves sent and not yet received. */
+    private final ArrayDeque<List<String>> _acks = new ArrayDeque<>();
+}
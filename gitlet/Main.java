@@ -1,13 +1,65 @@
 package gitlet;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Set;
+
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *  @author Jay Chiang
  */
 public class Main {
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
+    /** Usage: java gitlet.Main [--profile[=FILE]] ARGS, where ARGS
+     *  contains <COMMAND> <OPERAND> .... With --profile, where the
+     *  command spent its time is printed to the standard error when it
+     *  ends, or written to FILE as JSON. */
     public static void main(String... args) {
-        Git git = new Git();
+        if (args.length > 0 && (args[0].equals(PROFILE)
+                                || args[0].startsWith(PROFILE + "="))) {
+            String file = args[0].substring(PROFILE.length());
+            args = Arrays.copyOfRange(args, 1, args.length);
+            Profiler.start(args.length == 0 ? "gitlet" : args[0],
+                    file.isEmpty() ? null : new File(file.substring(1)));
+        }
+        File gitletDir = new File(System.getProperty("user.dir"), ".gitlet");
+        String error = gitletDir.isDirectory()
+                ? Git.formatError(gitletDir) : null;
+        if (error != null) {
+            System.out.println(error);
+            return;
+        }
+        try (RepositoryLock lock = lock(args)) {
+            Git git;
+            try (Profiler.Span span = Profiler.span("open repository")) {
+                git = new Git();
+            }
+            run(git, args);
+        }
+    }
+
+    /** Returns the lock the command in ARGS needs on the repository in
+     *  the current directory, if there is one: shared for a command
+     *  that only reads it, and otherwise exclusive. Commands that do not
+     *  use the repository, or that create it, take no lock, and return
+     *  null. If the lock cannot be had, says so and exits. */
+    private static RepositoryLock lock(String... args) {
+        File gitletDir = new File(System.getProperty("user.dir"), ".gitlet");
+        if (args.length == 0 || UNLOCKED.contains(args[0])
+                || !gitletDir.isDirectory()) {
+            return null;
+        }
+        try (Profiler.Span span = Profiler.span("lock repository")) {
+            return RepositoryLock.acquire(Git.commonDir(gitletDir),
+                    READ_ONLY.contains(args[0]), args[0]);
+        } catch (IllegalArgumentException excp) {
+            System.out.println(excp.getMessage());
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /** Runs the command in ARGS on GIT. */
+    private static void run(Git git, String... args) {
         if (args.length == 0) {
             System.out.println("Please enter a command.");
         } else {
@@ -19,8 +71,8 @@ public class Main {
                 git.commit(args[1]);
             } else if (args[0].equals("rm") && checkInput(2, args)) {
                 git.rm(args[1]);
-            } else if (args[0].equals("log") && checkInput(1, args)) {
-                git.log();
+            } else if (args[0].equals("log")) {
+                git.log(args);
             } else if (args[0].equals("global-log") && checkInput(1, args)) {
                 git.globalLog();
             } else if (args[0].equals("find") && checkInput(2, args)) {
@@ -44,16 +96,118 @@ public class Main {
                 git.reset(args[1]);
             } else if (args[0].equals("merge") && checkInput(2, args)) {
                 git.merge(args[1]);
+            } else if (args[0].equals("blame") && checkInput(2, args)) {
+                git.blame(args[1]);
+            } else if (args[0].equals("diff")) {
+                git.diff(args);
+            } else if (args[0].equals("sparse-checkout")) {
+                git.sparseCheckout(args);
+            } else if (args[0].equals("worktree")) {
+                if (args.length == 4 && args[1].equals("add")) {
+                    git.worktreeAdd(args[2], args[3]);
+                } else {
+                    System.out.println("Incorrect Operands");
+                }
+            } else if (args[0].equals("reflog") && args.length <= 2) {
+                git.reflog(args.length == 2 ? args[1] : Reflog.HEAD);
+            } else if (args[0].equals("merge-base")) {
+                mergeBase(git, args);
             } else if (args[0].equals("add-remote") && checkInput(3, args)) {
                 git.addRemote(args[1], args[2]);
             } else if (args[0].equals("rm-remote") && checkInput(2, args)) {
                 git.rmRemote(args[1]);
+            } else if (args[0].equals("push") && checkInput(3, args)) {
+                git.push(args[1], args[2]);
+            } else if (args[0].equals("fetch") && checkInput(3, args)) {
+                git.fetch(args[1], args[2]);
+            } else if (args[0].equals("pull") && checkInput(3, args)) {
+                git.pull(args[1], args[2]);
+            } else if (args[0].equals("clone")) {
+                if (args.length == 3 && args[1].equals("--filter=blob:none")) {
+                    git.clone(args[2], true);
+                } else if (checkInput(2, args)) {
+                    git.clone(args[1], false);
+                }
+            } else if (args[0].equals("gc") && checkInput(1, args)) {
+                git.gc();
+            } else if (args[0].equals("daemon") && args.length <= 3) {
+                daemon(args);
+            } else if (args[0].equals("jfr-summary") && checkInput(2, args)) {
+                jfrSummary(args[1]);
             } else {
                 System.out.println("No command with that name exists.");
             }
         }
     }
 
+    /** Runs merge-base with ARGS on GIT. With --is-ancestor nothing is
+     *  printed; as in git, the exit status is 0 if the first commit is an
+     *  ancestor of the second and 1 otherwise. */
+    private static void mergeBase(Git git, String... args) {
+        if (args.length == 4 && args[1].equals("--is-ancestor")) {
+            if (!git.isAncestor(args[2], args[3])) {
+                System.exit(1);
+            }
+        } else if (args.length == 4 && args[1].equals("--all")) {
+            git.mergeBase(args[2], args[3], true);
+        } else if (checkInput(3, args)) {
+            git.mergeBase(args[1], args[2], false);
+        }
+    }
+
+    /** Serves the repositories below the current directory to gitlet://
+     *  remotes, on the port given in ARGS or the default one, until
+     *  killed. Only this machine may connect unless ARGS begin with
+     *  --expose, since pushes are not authenticated. */
+    private static void daemon(String... args) {
+        boolean exposed = args.length > 1 && args[1].equals(EXPOSE);
+        if (exposed) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        } else if (args.length > 2) {
+            System.out.println("Incorrect Operands");
+            return;
+        }
+        try {
+            int port = args.length > 1 ? Integer.parseInt(args[1])
+                    : SocketTransport.DEFAULT_PORT;
+            Daemon daemon = new Daemon(
+                    new File(System.getProperty("user.dir")), port, exposed);
+            System.out.println("Serving on port " + daemon.port() + ".");
+            daemon.serve();
+        } catch (NumberFormatException excp) {
+            System.out.println("Incorrect Operands");
+        } catch (IOException excp) {
+            System.out.println(excp.getMessage());
+        }
+    }
+
+    /** Prints a summary of the gitlet events in the flight recording in
+     *  file RECORDING. */
+    private static void jfrSummary(String recording) {
+        try {
+            JfrSummary.print(new File(recording), System.out);
+        } catch (IOException excp) {
+            System.out.println(excp.getMessage());
+        }
+    }
+
+    /** The flag that lets other machines reach the daemon. */
+    private static final String EXPOSE = "--expose";
+
+    /** The flag that profiles a command. */
+    private static final String PROFILE = "--profile";
+
+    /** Commands that only read the repository, and so share its lock. */
+    private static final Set<String> READ_ONLY = Set.of("log",
+            "global-log", "find", "status", "blame", "diff", "merge-base",
+            "reflog");
+
+    /** Commands that take no lock: those that make a repository, and
+     *  those that do not use the one here. The daemon locks the
+     *  repositories it serves as it writes to them. */
+    private static final Set<String> UNLOCKED = Set.of("init", "clone",
+            "daemon", "jfr-summary");
+
     /** returns validity of input uising N and ARGS. */
     public static Boolean checkInput(int n, String... args) {
         if (args.length != n) {
@@ -0,0 +1,586 @@
+package gitlet;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** The files of a commit: an immutable map from each tracked path to
+ *  the id of its blob. Paths are kept in the order of their UTF-8
+ *  bytes, each stored as the length of the prefix it shares with the
+ *  path before it followed by the rest of its bytes. They are grouped
+ *  in blocks of at most RESTART entries whose first path is stored
+ *  whole, so a lookup binary-searches those paths and then decodes at
+ *  most one block. The ids sit in a parallel array of raw bytes. Where
+ *  a HashMap spends an entry, two Strings and an ObjectId on every
+ *  path, a manifest spends little more than the path's new bytes and
+ *  the 20 bytes of its id, and it serializes as a few arrays.
+ *  Manifests are changed by way of a Builder, which leaves the
+ *  original alone, re-encodes only the blocks its changes fall in and
+ *  copies the bytes of the rest.
+ *  @author Jay Chiang
+ */
+final class Manifest extends AbstractMap<String, ObjectId>
+    implements Serializable {
+
+    /** Most entries in a block. */
+    static final int RESTART = 16;
+
+    /** The manifest with no paths. */
+    static final Manifest EMPTY =
+        new Manifest(0, new byte[0], new int[0], new int[0], new byte[0]);
+
+    /** Returns a manifest with the entries of MAP. */
+    static Manifest of(Map<String, ObjectId> map) {
+        if (map instanceof Manifest) {
+            return (Manifest) map;
+        }
+        Builder builder = EMPTY.edit();
+        for (Map.Entry<String, ObjectId> entry : map.entrySet()) {
+            builder.put(entry.getKey(), entry.getValue());
+        }
+        return builder.build();
+    }
+
+    /** Returns a builder of manifests that starts out as this one. */
+    Builder edit() {
+        return new Builder(this);
+    }
+
+    /** Receives the paths at which two manifests differ. */
+    interface Visitor {
+        /** Called for PATH, whose blob is FROM in the first manifest and
+         *  TO in the second, where null means the path is absent. */
+        void visit(String path, ObjectId from, ObjectId to);
+    }
+
+    /** Walks FROM and TO together in path order, calling VISITOR on each
+     *  path whose blob is not the same in both. Paths with the same blob
+     *  are passed over without making a String or ObjectId for them. */
+    static void diff(Manifest from, Manifest to, Visitor visitor) {
+        Cursor a = from.cursor(0);
+        Cursor b = to.cursor(0);
+        boolean inA = a.next();
+        boolean inB = b.next();
+        while (inA || inB) {
+            int cmp = !inA ? 1 : !inB ? -1 : a.compareTo(b._key, b._length);
+            if (cmp < 0) {
+                visitor.visit(a.path(), a.id(), null);
+                inA = a.next();
+            } else if (cmp > 0) {
+                visitor.visit(b.path(), null, b.id());
+                inB = b.next();
+            } else {
+                if (!a.sameId(b)) {
+                    visitor.visit(a.path(), a.id(), b.id());
+                }
+                inA = a.next();
+                inB = b.next();
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return _size;
+    }
+
+    @Override
+    public ObjectId get(Object path) {
+        int index = indexOf(path);
+        return index < 0 ? null : id(index);
+    }
+
+    @Override
+    public boolean containsKey(Object path) {
+        return indexOf(path) >= 0;
+    }
+
+    @Override
+    public Set<Map.Entry<String, ObjectId>> entrySet() {
+        return new AbstractSet<Map.Entry<String, ObjectId>>() {
+            @Override
+            public int size() {
+                return _size;
+            }
+
+            @Override
+            public Iterator<Map.Entry<String, ObjectId>> iterator() {
+                Cursor cursor = cursor(0);
+                return new Iterator<Map.Entry<String, ObjectId>>() {
+                    @Override
+                    public boolean hasNext() {
+                        return cursor._index + 1 < _size;
+                    }
+
+                    @Override
+                    public Map.Entry<String, ObjectId> next() {
+                        if (!cursor.next()) {
+                            throw new NoSuchElementException();
+                        }
+                        return new SimpleImmutableEntry<>(cursor.path(),
+                                cursor.id());
+                    }
+                };
+            }
+        };
+    }
+
+    /** The ids, in path order, read without decoding the paths. */
+    @Override
+    public Collection<ObjectId> values() {
+        return new AbstractCollection<ObjectId>() {
+            @Override
+            public int size() {
+                return _size;
+            }
+
+            @Override
+            public Iterator<ObjectId> iterator() {
+                return new Iterator<ObjectId>() {
+                    @Override
+                    public boolean hasNext() {
+                        return _next < _size;
+                    }
+
+                    @Override
+                    public ObjectId next() {
+                        if (_next >= _size) {
+                            throw new NoSuchElementException();
+                        }
+                        _next += 1;
+                        return id(_next - 1);
+                    }
+
+                    /** Index of the next id. */
+                    private int _next;
+                };
+            }
+        };
+    }
+
+    /** Makes changes to a manifest. The manifest a builder starts from
+     *  is not copied or altered; the changes are kept to one side and
+     *  merged with it by build. */
+    static final class Builder {
+
+        /** A builder starting from BASE. */
+        private Builder(Manifest base) {
+            _base = base;
+        }
+
+        /** Maps PATH to blob ID, returning this builder. */
+        Builder put(String path, ObjectId id) {
+            _changes.put(path, id);
+            return this;
+        }
+
+        /** Removes PATH, if present, returning this builder. */
+        Builder remove(String path) {
+            _changes.put(path, null);
+            return this;
+        }
+
+        /** Returns the manifest made by applying the changes so far to
+         *  the one this builder started from. */
+        Manifest build() {
+            if (_changes.isEmpty()) {
+                return _base;
+            }
+            int count = _changes.size();
+            ArrayList<Map.Entry<byte[], ObjectId>> changes =
+                new ArrayList<>(count);
+            int size = _base._size;
+            int pathBytes = _base._paths.length;
+            for (Map.Entry<String, ObjectId> entry : _changes.entrySet()) {
+                byte[] path = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                changes.add(new SimpleImmutableEntry<>(path,
+                        entry.getValue()));
+                boolean present = _base.containsKey(entry.getKey());
+                if (entry.getValue() != null && !present) {
+                    size += 1;
+                } else if (entry.getValue() == null && present) {
+                    size -= 1;
+                }
+                pathBytes += path.length + 10;
+            }
+            changes.sort((x, y) ->
+                    Arrays.compareUnsigned(x.getKey(), y.getKey()));
+            Encoder out = new Encoder(size, pathBytes);
+            int blocks = _base._restarts.length;
+            int next = 0;
+            int unchanged = 0;
+            for (int block = 0; block < blocks; block += 1) {
+                int end = block + 1 == blocks ? count : next;
+                while (end < count && _base.compareWhole(block + 1,
+                        changes.get(end).getKey()) > 0) {
+                    end += 1;
+                }
+                if (end > next) {
+                    out.copy(_base, unchanged, block);
+                    merge(block, changes.subList(next, end), out);
+                    unchanged = block + 1;
+                    next = end;
+                }
+            }
+            out.copy(_base, unchanged, blocks);
+            merge(blocks, changes.subList(next, count), out);
+            return out.finish();
+        }
+
+        /** Adds to OUT the entries of block BLOCK of the base manifest, if
+         *  it has one, with CHANGES, sorted, applied. */
+        private void merge(int block, List<Map.Entry<byte[], ObjectId>>
+                           changes, Encoder out) {
+            Cursor base = _base.cursor(block);
+            int limit = block + 1 < _base._starts.length
+                ? _base._starts[block + 1] : _base._size;
+            boolean inBase = base.next(limit);
+            byte[] id = new byte[ObjectId.LENGTH];
+            for (Map.Entry<byte[], ObjectId> change : changes) {
+                byte[] path = change.getKey();
+                int cmp = 1;
+                while (inBase
+                       && (cmp = base.compareTo(path, path.length)) < 0) {
+                    out.add(base._key, base._length, _base._ids,
+                            base._index * ObjectId.LENGTH);
+                    inBase = base.next(limit);
+                }
+                if (inBase && cmp == 0) {
+                    inBase = base.next(limit);
+                }
+                if (change.getValue() != null) {
+                    change.getValue().copyTo(id, 0);
+                    out.add(path, path.length, id, 0);
+                }
+            }
+            while (inBase) {
+                out.add(base._key, base._length, _base._ids,
+                        base._index * ObjectId.LENGTH);
+                inBase = base.next(limit);
+            }
+        }
+
+        /** The manifest changed. */
+        private final Manifest _base;
+        /** New blobs by path, with null for removed paths. */
+        private final HashMap<String, ObjectId> _changes = new HashMap<>();
+    }
+
+    /** A manifest of SIZE entries, with front-coded PATHS whose blocks
+     *  start at positions RESTARTS and entry indices STARTS, and with
+     *  blob ids IDS. */
+    private Manifest(int size, byte[] paths, int[] restarts, int[] starts,
+                     byte[] ids) {
+        _size = size;
+        _paths = paths;
+        _restarts = restarts;
+        _starts = starts;
+        _ids = ids;
+    }
+
+    /** Returns the id of entry INDEX. */
+    private ObjectId id(int index) {
+        return ObjectId.fromBytes(_ids, index * ObjectId.LENGTH);
+    }
+
+    /** Returns a cursor placed before the first entry of block BLOCK,
+     *  or at the end if there is no such block. */
+    private Cursor cursor(int block) {
+        return new Cursor(this, block);
+    }
+
+    /** Compares the first path of block BLOCK with PATH, as unsigned
+     *  bytes. */
+    private int compareWhole(int block, byte[] path) {
+        int pos = _restarts[block] + 1;
+        int length = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = _paths[pos];
+            pos += 1;
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return Arrays.compareUnsigned(_paths, pos, pos + length,
+                path, 0, path.length);
+    }
+
+    /** Returns the index of PATH, or -1 if it is absent. */
+    private int indexOf(Object path) {
+        if (!(path instanceof String) || _size == 0) {
+            return -1;
+        }
+        byte[] target = ((String) path).getBytes(StandardCharsets.UTF_8);
+        int lo = 0;
+        int hi = _restarts.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (compareWhole(mid, target) <= 0) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        Cursor cursor = cursor(lo);
+        int limit = lo + 1 < _starts.length ? _starts[lo + 1] : _size;
+        while (cursor.next(limit)) {
+            int cmp = cursor.compareTo(target, target.length);
+            if (cmp == 0) {
+                return cursor._index;
+            } else if (cmp > 0) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /** Decodes the entries of a manifest one after another. */
+    private static final class Cursor {
+
+        /** A cursor over MANIFEST placed before the first entry of block
+         *  BLOCK, or at the end if there is no such block. */
+        Cursor(Manifest manifest, int block) {
+            _manifest = manifest;
+            if (block < manifest._restarts.length) {
+                _pos = manifest._restarts[block];
+                _index = manifest._starts[block] - 1;
+            } else {
+                _pos = manifest._paths.length;
+                _index = manifest._size - 1;
+            }
+        }
+
+        /** Moves to the next entry, returning false if there is none. */
+        boolean next() {
+            return next(_manifest._size);
+        }
+
+        /** Moves to the next entry if its index is below LIMIT, returning
+         *  false if not. */
+        boolean next(int limit) {
+            if (_index + 1 >= limit) {
+                return false;
+            }
+            int shared = varint();
+            int rest = varint();
+            if (shared + rest > _key.length) {
+                _key = Arrays.copyOf(_key,
+                        Math.max(shared + rest, 2 * _key.length));
+            }
+            System.arraycopy(_manifest._paths, _pos, _key, shared, rest);
+            _pos += rest;
+            _length = shared + rest;
+            _index += 1;
+            return true;
+        }
+
+        /** Compares the current path with the first LENGTH bytes of
+         *  PATH, as unsigned bytes. */
+        int compareTo(byte[] path, int length) {
+            return Arrays.compareUnsigned(_key, 0, _length, path, 0, length);
+        }
+
+        /** Returns true if the current entry has the same blob as the
+         *  current entry of OTHER. */
+        boolean sameId(Cursor other) {
+            int start = _index * ObjectId.LENGTH;
+            int otherStart = other._index * ObjectId.LENGTH;
+            return Arrays.equals(_manifest._ids, start,
+                    start + ObjectId.LENGTH, other._manifest._ids,
+                    otherStart, otherStart + ObjectId.LENGTH);
+        }
+
+        /** Returns the current path. */
+        String path() {
+            return new String(_key, 0, _length, StandardCharsets.UTF_8);
+        }
+
+        /** Returns the current blob id. */
+        ObjectId id() {
+            return _manifest.id(_index);
+        }
+
+        /** Returns the unsigned LEB128 number at the position, moving
+         *  past it. */
+        private int varint() {
+            int result = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = _manifest._paths[_pos];
+                _pos += 1;
+                result |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+        }
+
+        /** The manifest read. */
+        private final Manifest _manifest;
+        /** Position in the paths of the next entry. */
+        private int _pos;
+        /** Index of the current entry. */
+        private int _index;
+        /** Bytes of the current path, in the first _length bytes. */
+        private byte[] _key = new byte[64];
+        /** Length of the current path. */
+        private int _length;
+    }
+
+    /** Front-codes entries, given in path order, into a manifest. */
+    private static final class Encoder {
+
+        /** An encoder of exactly SIZE entries whose paths take about
+         *  PATHBYTES bytes. */
+        Encoder(int size, int pathBytes) {
+            _paths = new byte[pathBytes];
+            _restarts = new int[size / RESTART + 1];
+            _starts = new int[_restarts.length];
+            _ids = new byte[size * ObjectId.LENGTH];
+        }
+
+        /** Appends blocks FROM up to TO of MANIFEST as they are. */
+        void copy(Manifest manifest, int from, int to) {
+            if (from >= to) {
+                return;
+            }
+            int start = manifest._restarts[from];
+            int end = to < manifest._restarts.length
+                ? manifest._restarts[to] : manifest._paths.length;
+            int first = manifest._starts[from];
+            int last = to < manifest._starts.length
+                ? manifest._starts[to] : manifest._size;
+            for (int block = from; block < to; block += 1) {
+                newBlock(manifest._restarts[block] - start + _length,
+                        manifest._starts[block] - first + _size);
+            }
+            reserve(end - start);
+            System.arraycopy(manifest._paths, start, _paths, _length,
+                    end - start);
+            _length += end - start;
+            System.arraycopy(manifest._ids, first * ObjectId.LENGTH, _ids,
+                    _size * ObjectId.LENGTH, (last - first) * ObjectId.LENGTH);
+            _size += last - first;
+            _inBlock = RESTART;
+        }
+
+        /** Adds the entry whose path is the first LENGTH bytes of PATH
+         *  and whose id is the ObjectId.LENGTH bytes of IDS from
+         *  IDSTART. */
+        void add(byte[] path, int length, byte[] ids, int idStart) {
+            int shared = 0;
+            if (_inBlock == RESTART) {
+                newBlock(_length, _size);
+                _inBlock = 0;
+            } else {
+                int limit = Math.min(length, _prevLength);
+                while (shared < limit && path[shared] == _prev[shared]) {
+                    shared += 1;
+                }
+            }
+            _inBlock += 1;
+            int rest = length - shared;
+            reserve(rest + 10);
+            varint(shared);
+            varint(rest);
+            System.arraycopy(path, shared, _paths, _length, rest);
+            _length += rest;
+            if (_prev.length < length) {
+                _prev = Arrays.copyOf(_prev, Math.max(length,
+                        2 * _prev.length));
+            }
+            System.arraycopy(path, shared, _prev, shared, rest);
+            _prevLength = length;
+            System.arraycopy(ids, idStart, _ids, _size * ObjectId.LENGTH,
+                    ObjectId.LENGTH);
+            _size += 1;
+        }
+
+        /** Returns the manifest of the entries added. */
+        Manifest finish() {
+            return new Manifest(_size, Arrays.copyOf(_paths, _length),
+                    Arrays.copyOf(_restarts, _blocks),
+                    Arrays.copyOf(_starts, _blocks), _ids);
+        }
+
+        /** Records a block starting at position POS and entry INDEX. */
+        private void newBlock(int pos, int index) {
+            if (_blocks == _restarts.length) {
+                _restarts = Arrays.copyOf(_restarts, 2 * _blocks + 1);
+                _starts = Arrays.copyOf(_starts, 2 * _blocks + 1);
+            }
+            _restarts[_blocks] = pos;
+            _starts[_blocks] = index;
+            _blocks += 1;
+        }
+
+        /** Makes room for at least N more bytes of paths. */
+        private void reserve(int n) {
+            if (_length + n > _paths.length) {
+                _paths = Arrays.copyOf(_paths,
+                        Math.max(_length + n, 2 * _paths.length));
+            }
+        }
+
+        /** Appends N as an unsigned LEB128 number. */
+        private void varint(int n) {
+            while ((n & ~0x7F) != 0) {
+                _paths[_length] = (byte) ((n & 0x7F) | 0x80);
+                _length += 1;
+                n >>>= 7;
+            }
+            _paths[_length] = (byte) n;
+            _length += 1;
+        }
+
+        /** Entries added. */
+        private int _size;
+        /** Front-coded paths, in the first _length bytes. */
+        private byte[] _paths;
+        /** Bytes of _paths used. */
+        private int _length;
+        /** Positions of the blocks, in the first _blocks elements. */
+        private int[] _restarts;
+        /** Indices of the first entries of the blocks. */
+        private int[] _starts;
+        /** Number of blocks. */
+        private int _blocks;
+        /** Entries added to the last block, or RESTART if the next entry
+         *  must start a new one. */
+        private int _inBlock = RESTART;
+        /** Blob ids. */
+        private byte[] _ids;
+        /** The previous path, in the first _prevLength bytes. */
+        private byte[] _prev = new byte[64];
+        /** Length of the previous path. */
+        private int _prevLength;
+    }
+
+    /** Serialization version. */
+    private static final long serialVersionUID = 1L;
+
+    /** Number of entries. */
+    private final int _size;
+    /** Front-coded paths: for each entry, the length of the prefix it
+     *  shares with the previous path and the length of the rest, both
+     *  as LEB128 numbers, and then the rest. */
+    private final byte[] _paths;
+    /** Position in _paths of the first entry of each block, which
+     *  shares nothing. */
+    private final int[] _restarts;
+    /** Index of the first entry of each block. */
+    private final int[] _starts;
+    /** The ids of the entries, ObjectId.LENGTH bytes each. */
+    private final byte[] _ids;
+}
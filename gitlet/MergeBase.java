@@ -0,0 +1,257 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** Finds the merge bases (best common ancestors) of two commits,
+ *  following both parents of merge commits. Commits are painted from
+ *  both sides at once and visited in decreasing generation order, so
+ *  the walk stops as soon as nothing unpainted can still reach a
+ *  common ancestor.
+ *  @author Jay Chiang
+ */
+class MergeBase {
+
+    /** The commit graph as seen by the merge-base walk. */
+    interface Graph {
+        /** Returns the parents of commit UID, first parent first. */
+        String[] parents(String uID);
+
+        /** Returns the generation number of commit UID. */
+        int generation(String uID);
+    }
+
+    /** A merge-base engine over GRAPH. */
+    MergeBase(Graph graph) {
+        _graph = graph;
+    }
+
+    /** Returns a graph reading the commits stored in COMMITDIR, each
+     *  commit being read at most once. */
+    static Graph commitGraph(File commitDir) {
+        HashMap<String, Commit> cache = new HashMap<>();
+        return new Graph() {
+            @Override
+            public String[] parents(String uID) {
+                Commit commit = get(uID);
+                if (commit.getParentUID() == null) {
+                    return new String[0];
+                } else if (commit.getMergeParentUID() == null) {
+                    return new String[] { commit.getParentUID() };
+                } else {
+                    return new String[] {
+                        commit.getParentUID(), commit.getMergeParentUID()
+                    };
+                }
+            }
+
+            @Override
+            public int generation(String uID) {
+                return get(uID).getGeneration();
+            }
+
+            /** Returns the commit named UID. */
+            private Commit get(String uID) {
+                Commit commit = cache.get(uID);
+                if (commit == null) {
+                    commit = Utils.readObject(
+                            new File(commitDir, uID + ".txt"), Commit.class);
+                    cache.put(uID, commit);
+                }
+                return commit;
+            }
+        };
+    }
+
+    /** Returns the best common ancestors of ONE and TWO, highest
+     *  generation first. None of the returned commits is an ancestor of
+     *  another. The list is empty if the histories are unrelated. */
+    List<String> mergeBases(String one, String two) {
+        ArrayList<String> result = new ArrayList<>();
+        if (one.equals(two)) {
+            result.add(one);
+            return result;
+        }
+        reset();
+        for (int c : paintDownToCommon(one, two)) {
+            result.add(_uids.get(c));
+        }
+        removeRedundant(result);
+        return result;
+    }
+
+    /** Returns true if ANCESTOR is reachable from DESCENDANT (every commit
+     *  is its own ancestor). Only commits whose generation is at least
+     *  that of ANCESTOR are visited. */
+    boolean isAncestor(String ancestor, String descendant) {
+        if (ancestor.equals(descendant)) {
+            return true;
+        }
+        reset();
+        int target = index(ancestor);
+        int cutoff = _generations.get(target);
+        BitSet seen = new BitSet();
+        PriorityQueue<Integer> queue = newQueue();
+        int start = index(descendant);
+        seen.set(start);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int c = queue.poll();
+            if (c == target) {
+                return true;
+            }
+            for (String parentUID : _graph.parents(_uids.get(c))) {
+                int parent = index(parentUID);
+                if (!seen.get(parent) && _generations.get(parent) >= cutoff) {
+                    seen.set(parent);
+                    queue.add(parent);
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Paints everything reachable from ONE and from TWO with colours
+     *  PARENT1 and PARENT2 respectively, and returns the commits first
+     *  found carrying both colours. Ancestors of such a commit are marked
+     *  STALE; the walk ends once only stale commits remain queued. */
+    private List<Integer> paintDownToCommon(String one, String two) {
+        ArrayList<Integer> found = new ArrayList<>();
+        PriorityQueue<Integer> queue = newQueue();
+        int first = index(one);
+        int second = index(two);
+        _parent1.set(first);
+        _parent2.set(second);
+        _queued.set(first);
+        _queued.set(second);
+        queue.add(first);
+        queue.add(second);
+        int active = 2;
+        while (active > 0) {
+            int c = queue.poll();
+            boolean stale = _stale.get(c);
+            if (!stale) {
+                active -= 1;
+            }
+            boolean p1 = _parent1.get(c);
+            boolean p2 = _parent2.get(c);
+            if (p1 && p2 && !stale) {
+                if (!_result.get(c)) {
+                    _result.set(c);
+                    found.add(c);
+                }
+                _stale.set(c);
+                stale = true;
+            }
+            for (String parentUID : _graph.parents(_uids.get(c))) {
+                int parent = index(parentUID);
+                if ((!p1 || _parent1.get(parent))
+                        && (!p2 || _parent2.get(parent))
+                        && (!stale || _stale.get(parent))) {
+                    continue;
+                }
+                boolean wasActive = _queued.get(parent) && !_stale.get(parent);
+                if (p1) {
+                    _parent1.set(parent);
+                }
+                if (p2) {
+                    _parent2.set(parent);
+                }
+                if (stale) {
+                    _stale.set(parent);
+                }
+                if (!_queued.get(parent)) {
+                    _queued.set(parent);
+                    queue.add(parent);
+                    if (!_stale.get(parent)) {
+                        active += 1;
+                    }
+                } else if (wasActive && _stale.get(parent)) {
+                    active -= 1;
+                }
+            }
+            _queued.clear(c);
+        }
+        return found;
+    }
+
+    /** Removes from BASES every commit that is an ancestor of another
+     *  commit in BASES. */
+    private void removeRedundant(List<String> bases) {
+        if (bases.size() < 2) {
+            return;
+        }
+        ArrayList<String> kept = new ArrayList<>();
+        for (String base : bases) {
+            boolean redundant = false;
+            for (String other : bases) {
+                if (!other.equals(base) && isAncestor(base, other)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                kept.add(base);
+            }
+        }
+        bases.clear();
+        bases.addAll(kept);
+    }
+
+    /** Returns a queue yielding the highest generation first, and among
+     *  equal generations the commit that was discovered first. */
+    private PriorityQueue<Integer> newQueue() {
+        return new PriorityQueue<>((a, b) -> {
+            int cmp = Integer.compare(_generations.get(b),
+                    _generations.get(a));
+            return cmp != 0 ? cmp : Integer.compare(a, b);
+        });
+    }
+
+    /** Returns the dense index of commit UID, assigning one if needed. */
+    private int index(String uID) {
+        Integer result = _indices.get(uID);
+        if (result == null) {
+            result = _uids.size();
+            _indices.put(uID, result);
+            _uids.add(uID);
+            _generations.add(_graph.generation(uID));
+        }
+        return result;
+    }
+
+    /** Forgets all indices and colours from a previous walk. */
+    private void reset() {
+        _indices.clear();
+        _uids.clear();
+        _generations.clear();
+        _parent1.clear();
+        _parent2.clear();
+        _stale.clear();
+        _result.clear();
+        _queued.clear();
+    }
+
+    /** The commit graph. */
+    private final Graph _graph;
+    /** Dense index of each commit seen by the current walk. */
+    private final HashMap<String, Integer> _indices = new HashMap<>();
+    /** Commit UIDs by index. */
+    private final ArrayList<String> _uids = new ArrayList<>();
+    /** Generation numbers by index. */
+    private final ArrayList<Integer> _generations = new ArrayList<>();
+    /** Commits reachable from the first commit. */
+    private final BitSet _parent1 = new BitSet();
+    /** Commits reachable from the second commit. */
+    private final BitSet _parent2 = new BitSet();
+    /** Commits below an already found common ancestor. */
+    private final BitSet _stale = new BitSet();
+    /** Common ancestors found so far. */
+    private final BitSet _result = new BitSet();
+    /** Commits currently in the queue. */
+    private final BitSet _queued = new BitSet();
+}
@@ -0,0 +1,151 @@
+package gitlet;
+
+import java.io.Serializable;
+
+/** The SHA-1 name of a commit or blob, held as its 20 bytes in two longs
+ *  and an int rather than as 40 hexadecimal characters, which as a
+ *  String take about 100 bytes. ObjectIds are immutable, compare in the
+ *  order of their hexadecimal forms, and print as those forms, which
+ *  remain the names used in files, output and the network protocol.
+ *  @author Jay Chiang
+ */
+final class ObjectId implements Comparable<ObjectId>, Serializable {
+
+    /** Length of an id in bytes. */
+    static final int LENGTH = 20;
+
+    /** Returns the id whose bytes are the first LENGTH of RAW. */
+    static ObjectId fromBytes(byte[] raw) {
+        return fromBytes(raw, 0);
+    }
+
+    /** Returns the id whose bytes are the LENGTH of RAW from START. */
+    static ObjectId fromBytes(byte[] raw, int start) {
+        return new ObjectId(word(raw, start), word(raw, start + 8),
+                (int) (word(raw, start + 12) & 0xFFFFFFFFL));
+    }
+
+    /** Returns the id whose hexadecimal form is HEX, in either case.
+     *  Throws IllegalArgumentException if HEX is not one. */
+    static ObjectId fromString(String hex) {
+        if (hex.length() != 2 * LENGTH) {
+            throw new IllegalArgumentException("not an object id: " + hex);
+        }
+        return new ObjectId(parse(hex, 0, 16), parse(hex, 16, 16),
+                (int) parse(hex, 32, 8));
+    }
+
+    /** Returns the id whose hexadecimal form is HEX, or null if HEX is
+     *  null. */
+    static ObjectId fromNullable(String hex) {
+        return hex == null ? null : fromString(hex);
+    }
+
+    /** Returns the hexadecimal form of ID, or null if ID is null. */
+    static String toNullableString(ObjectId id) {
+        return id == null ? null : id.toString();
+    }
+
+    /** Writes the LENGTH bytes of this id into OUT from START. */
+    void copyTo(byte[] out, int start) {
+        for (int i = 0; i < 8; i += 1) {
+            out[start + i] = (byte) (_w1 >>> (56 - 8 * i));
+            out[start + 8 + i] = (byte) (_w2 >>> (56 - 8 * i));
+        }
+        for (int i = 0; i < 4; i += 1) {
+            out[start + 16 + i] = (byte) (_w3 >>> (24 - 8 * i));
+        }
+    }
+
+    @Override
+    public String toString() {
+        char[] result = new char[2 * LENGTH];
+        format(_w1, result, 0, 16);
+        format(_w2, result, 16, 16);
+        format(_w3, result, 32, 8);
+        return new String(result);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        int result = Long.compareUnsigned(_w1, other._w1);
+        if (result == 0) {
+            result = Long.compareUnsigned(_w2, other._w2);
+        }
+        if (result == 0) {
+            result = Integer.compareUnsigned(_w3, other._w3);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w1 == other._w1 && _w2 == other._w2 && _w3 == other._w3;
+    }
+
+    /** The bits of a SHA-1 are uniformly distributed, so any 32 of them
+     *  make a good hash. */
+    @Override
+    public int hashCode() {
+        return (int) (_w1 >>> 32);
+    }
+
+    /** The id whose bytes are those of W1, W2 and W3, most significant
+     *  first. */
+    private ObjectId(long w1, long w2, int w3) {
+        _w1 = w1;
+        _w2 = w2;
+        _w3 = w3;
+    }
+
+    /** Returns the 8 bytes of RAW from START as a big-endian long. */
+    private static long word(byte[] raw, int start) {
+        long result = 0;
+        for (int i = start; i < start + 8; i += 1) {
+            result = (result << 8) | (raw[i] & 0xFF);
+        }
+        return result;
+    }
+
+    /** Returns the value of the COUNT hexadecimal digits of HEX from
+     *  START. */
+    private static long parse(String hex, int start, int count) {
+        long result = 0;
+        for (int i = start; i < start + count; i += 1) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("not an object id: "
+                        + hex);
+            }
+            result = (result << 4) | digit;
+        }
+        return result;
+    }
+
+    /** Writes the low COUNT hexadecimal digits of VALUE into OUT from
+     *  START. */
+    private static void format(long value, char[] out, int start,
+                               int count) {
+        for (int i = start + count - 1; i >= start; i -= 1) {
+            out[i] = DIGITS[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+
+    /** Lower-case hexadecimal digits. */
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    /** Serialization version. */
+    private static final long serialVersionUID = 1L;
+
+    /** Bytes 0 to 7. */
+    private final long _w1;
+    /** Bytes 8 to 15. */
+    private final long _w2;
+    /** Bytes 16 to 19. */
+    private final int _w3;
+}
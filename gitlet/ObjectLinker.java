@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/** Shares the object files of a repository with a new repository on the
+ *  same machine. Commits and blobs are named by their contents and never
+ *  rewritten, so both repositories can hold the same file: each object
+ *  is hard-linked, which costs a directory entry and no data. Links
+ *  cannot cross file systems, so from the first object that fails to
+ *  link, the rest are copied instead, several at a time.
+ *  @author Jay Chiang
+ */
+class ObjectLinker {
+
+    /** Gives directory TO every file of directory FROM, creating TO if
+     *  needed. Does nothing if there is no directory FROM. Returns the
+     *  number of files hard-linked rather than copied. */
+    static int share(File from, File to) throws IOException {
+        String[] names = from.list();
+        if (names == null) {
+            return 0;
+        }
+        to.mkdirs();
+        Path fromPath = from.toPath();
+        Path toPath = to.toPath();
+        int linked = 0;
+        try {
+            for (; linked < names.length; linked += 1) {
+                Path target = toPath.resolve(names[linked]);
+                StoreEvents.Timed event = StoreEvents.writing(target.toFile());
+                Files.createLink(target, fromPath.resolve(names[linked]));
+                if (event != null) {
+                    event.finish(Files.size(target));
+                }
+            }
+            return linked;
+        } catch (FileSystemException | UnsupportedOperationException excp) {
+            try {
+                Arrays.stream(names, linked, names.length).parallel()
+                    .forEach(name -> copy(fromPath.resolve(name),
+                            toPath.resolve(name)));
+            } catch (UncheckedIOException copyExcp) {
+                throw copyExcp.getCause();
+            }
+            return linked;
+        }
+    }
+
+    /** Copies file FROM to TO. */
+    private static void copy(Path from, Path to) {
+        try {
+            StoreEvents.Timed event = StoreEvents.writing(to.toFile());
+            Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.COPY_ATTRIBUTES);
+            if (event != null) {
+                event.finish(Files.size(to));
+            }
+        } catch (IOException excp) {
+            throw new UncheckedIOException(excp);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/** The objects one repository sends another: the commits the receiver
+ *  is missing and the blobs they need, written as a single stream.
+ *  Each object is a tag byte (BLOB or COMMIT), its UID as 40 ASCII hex
+ *  digits, its length as an int and its bytes; the stream ends with an
+ *  END byte. Blobs come first and commits oldest first, so a receiver
+ *  that is cut off part way only ever holds complete histories.
+ *  @author Jay Chiang
+ */
+class Pack {
+
+    /** Tag of a blob. */
+    static final int BLOB = 'b';
+    /** Tag of a commit. */
+    static final int COMMIT = 'c';
+    /** Most bytes in one object a pack may carry. */
+    static final int MAX_OBJECT = 1 << 28;
+    /** Marks the end of a pack. */
+    static final int END = 0;
+
+    /** A pack of the files named COMMITS in COMMITDIR, oldest first, and
+     *  BLOBS in BLOBDIR. */
+    Pack(File commitDir, File blobDir, List<String> commits,
+         Collection<String> blobs) {
+        _commitDir = commitDir;
+        _blobDir = blobDir;
+        _commits = commits;
+        _blobs = blobs;
+    }
+
+    /** Returns the pack, from the repository whose commits and blobs are
+     *  in COMMITDIR and BLOBDIR, of every commit reachable from WANTS but
+     *  not from COMMON, and of the blobs those commits hold. Commits in
+     *  COMMON that this repository does not have are ignored. Commits are
+     *  visited in decreasing generation order and the walk stops once
+     *  only commits reachable from COMMON remain, so its cost follows the
+     *  number of new commits rather than the length of the history. Blobs
+     *  held by a commit on the boundary of COMMON are assumed present on
+     *  the other side and left out. If gc has written reachability
+     *  bitmaps, the pack is instead the difference of the objects
+     *  reachable from each side, walking only down to the nearest
+     *  commits with bitmaps, and holds exactly the blobs reachable from
+     *  WANTS and not from COMMON, or those of them that a partial clone
+     *  has. */
+    static Pack between(File commitDir, File blobDir,
+                        Collection<String> wants, Collection<String> common) {
+        ReachabilityBitmaps bitmaps = new ReachabilityBitmaps(commitDir,
+                new File(commitDir.getParentFile(),
+                        ReachabilityBitmaps.FILE_NAME));
+        if (bitmaps.exists()) {
+            ArrayList<String> have = new ArrayList<>();
+            for (String uID : common) {
+                if (new File(commitDir, uID + ".txt").isFile()) {
+                    have.add(uID);
+                }
+            }
+            EwahBitmap missing = bitmaps.reachable(wants)
+                    .andNot(bitmaps.reachable(have));
+            return blobs(commitDir, blobDir, bitmaps.blobs(missing))
+                    .withCommits(bitmaps.commits(missing));
+        }
+        HashMap<String, Commit> commits = new HashMap<>();
+        PriorityQueue<String> queue = new PriorityQueue<>(
+            Comparator.comparingInt((String uID) -> -read(commitDir, commits,
+                    uID).getGeneration()));
+        HashSet<String> seen = new HashSet<>();
+        HashSet<String> uninteresting = new HashSet<>();
+        for (String uID : common) {
+            if (new File(commitDir, uID + ".txt").isFile() && seen.add(uID)) {
+                uninteresting.add(uID);
+                queue.add(uID);
+            }
+        }
+        int active = 0;
+        for (String uID : wants) {
+            if (seen.add(uID)) {
+                queue.add(uID);
+                active += 1;
+            }
+        }
+        ArrayList<String> missing = new ArrayList<>();
+        while (active > 0) {
+            String uID = queue.poll();
+            boolean interesting = !uninteresting.contains(uID);
+            if (interesting) {
+                missing.add(uID);
+                active -= 1;
+            }
+            for (String parent : parents(read(commitDir, commits, uID))) {
+                if (interesting) {
+                    if (seen.add(parent)) {
+                        queue.add(parent);
+                        active += 1;
+                    }
+                } else if (uninteresting.add(parent)) {
+                    if (!seen.add(parent)) {
+                        active -= 1;
+                    } else {
+                        queue.add(parent);
+                    }
+                }
+            }
+        }
+        missing.sort(Comparator.comparingInt(
+            (String uID) -> commits.get(uID).getGeneration()));
+        LinkedHashSet<String> blobs = new LinkedHashSet<>();
+        HashSet<String> edges = new HashSet<>();
+        for (String uID : missing) {
+            Commit commit = commits.get(uID);
+            for (ObjectId blob : commit.getBlobs().values()) {
+                blobs.add(blob.toString());
+            }
+            for (String parent : parents(commit)) {
+                if (uninteresting.contains(parent)) {
+                    edges.add(parent);
+                }
+            }
+        }
+        for (String uID : edges) {
+            for (ObjectId blob : commits.get(uID).getBlobs().values()) {
+                blobs.remove(blob.toString());
+            }
+        }
+        return new Pack(commitDir, blobDir, missing, blobs);
+    }
+
+    /** Returns the pack of the blobs BLOBS in BLOBDIR, leaving out those
+     *  that are not there. COMMITDIR is the directory of commits. */
+    static Pack blobs(File commitDir, File blobDir, Collection<String> blobs) {
+        ArrayList<String> present = new ArrayList<>();
+        for (String uID : blobs) {
+            if (new File(blobDir, uID + ".txt").isFile()) {
+                present.add(uID);
+            }
+        }
+        return new Pack(commitDir, blobDir, List.of(), present);
+    }
+
+    /** Returns this pack with commits COMMITS, oldest first, in place of
+     *  its own. */
+    Pack withCommits(List<String> commits) {
+        return new Pack(_commitDir, _blobDir, commits, _blobs);
+    }
+
+    /** Returns this pack without its blobs. */
+    Pack withoutBlobs() {
+        return new Pack(_commitDir, _blobDir, _commits, List.of());
+    }
+
+    /** Returns the number of commits in this pack. */
+    int commitCount() {
+        return _commits.size();
+    }
+
+    /** Returns the number of blobs in this pack. */
+    int blobCount() {
+        return _blobs.size();
+    }
+
+    /** Writes this pack to OUT, which is flushed but not closed. */
+    void write(OutputStream out) throws IOException {
+        DataOutputStream data =
+            new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        int total = _blobs.size() + _commits.size();
+        int sent = 0;
+        for (String uID : _blobs) {
+            Task.checkpoint();
+            Task.progress("sending objects", sent, total);
+            writeObject(data, BLOB, uID, new File(_blobDir, uID + ".txt"));
+            sent += 1;
+        }
+        for (String uID : _commits) {
+            Task.checkpoint();
+            Task.progress("sending objects", sent, total);
+            writeObject(data, COMMIT, uID,
+                    new File(_commitDir, uID + ".txt"));
+            sent += 1;
+        }
+        Task.finishing();
+        data.write(END);
+        data.flush();
+    }
+
+    /** Reads a pack from IN and stores its objects in COMMITDIR and
+     *  BLOBDIR, skipping those already there. Each object is written to
+     *  a temporary file and then moved into place, so no other command
+     *  ever sees part of one. Blob contents are checked against their
+     *  UIDs, and each commit must deserialize as a Commit with the UID
+     *  it is sent under; objects longer than MAX_OBJECT are refused.
+     *  Throws IOException, storing nothing more, at the first object
+     *  that fails. Returns the number of objects stored. If IN is a
+     *  DataInputStream, nothing past the end of the pack is read from it,
+     *  so it may carry more messages afterwards. */
+    static int read(InputStream in, File commitDir, File blobDir)
+        throws IOException {
+        DataInputStream data = in instanceof DataInputStream
+            ? (DataInputStream) in
+            : new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+        File tempDir = commitDir.getParentFile();
+        int stored = 0;
+        byte[] name = new byte[Utils.UID_LENGTH];
+        while (true) {
+            Task.checkpoint();
+            Task.progress("receiving objects", stored, -1);
+            int tag = data.read();
+            if (tag == END) {
+                return stored;
+            } else if (tag != BLOB && tag != COMMIT) {
+                throw new IOException("corrupt pack");
+            }
+            data.readFully(name);
+            String uID = new String(name, StandardCharsets.US_ASCII);
+            if (!uID.matches("[0-9a-f]{40}")) {
+                throw new IOException("corrupt pack");
+            }
+            int length = data.readInt();
+            if (length < 0 || length > MAX_OBJECT) {
+                throw new IOException("corrupt pack");
+            }
+            byte[] contents = new byte[length];
+            data.readFully(contents);
+            if (tag == BLOB && !Utils.sha1(contents).equals(uID)) {
+                throw new IOException("corrupt blob " + uID);
+            } else if (tag == COMMIT && !isCommit(contents, uID)) {
+                throw new IOException("corrupt commit " + uID);
+            }
+            File target = new File(tag == BLOB ? blobDir : commitDir,
+                    uID + ".txt");
+            if (!target.exists()) {
+                StoreEvents.Timed event = StoreEvents.writing(target);
+                File temp = File.createTempFile("pack", ".tmp", tempDir);
+                try {
+                    Files.write(temp.toPath(), contents);
+                    Files.move(temp.toPath(), target.toPath(),
+                            StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    temp.delete();
+                }
+                if (event != null) {
+                    event.finish(length);
+                }
+                stored += 1;
+            }
+        }
+    }
+
+    /** Returns true if CONTENTS is a serialized commit whose UID is UID.
+     *  CONTENTS may come from another machine, so only the classes a
+     *  commit is made of are deserialized. */
+    private static boolean isCommit(byte[] contents, String uID) {
+        try (ObjectInputStream in = new ObjectInputStream(
+                new ByteArrayInputStream(contents))) {
+            in.setObjectInputFilter(COMMIT_CLASSES);
+            Object commit = in.readObject();
+            return commit instanceof Commit
+                && uID.equals(((Commit) commit).getUID());
+        } catch (IOException | ClassNotFoundException
+                 | RuntimeException excp) {
+            return false;
+        }
+    }
+
+    /** Writes to OUT the object tagged TAG named UID held in FILE. */
+    private static void writeObject(DataOutputStream out, int tag, String uID,
+                                    File file) throws IOException {
+        byte[] contents = Files.readAllBytes(file.toPath());
+        out.write(tag);
+        out.write(uID.getBytes(StandardCharsets.US_ASCII));
+        out.writeInt(contents.length);
+        out.write(contents);
+    }
+
+    /** Returns the parents of COMMIT. */
+    private static List<String> parents(Commit commit) {
+        ArrayList<String> result = new ArrayList<>(2);
+        if (commit.getParentUID() != null) {
+            result.add(commit.getParentUID());
+        }
+        if (commit.getMergeParentUID() != null) {
+            result.add(commit.getMergeParentUID());
+        }
+        return result;
+    }
+
+    /** Returns commit UID from COMMITDIR, reading it into CACHE if it is
+     *  not there yet. */
+    private static Commit read(File commitDir, HashMap<String, Commit> cache,
+                               String uID) {
+        Commit commit = cache.get(uID);
+        if (commit == null) {
+            commit = Utils.readObject(new File(commitDir, uID + ".txt"),
+                    Commit.class);
+            cache.put(uID, commit);
+        }
+        return commit;
+    }
+
+    /** The classes a serialized commit may hold. */
+    private static final ObjectInputFilter COMMIT_CLASSES =
+        ObjectInputFilter.Config.createFilter(
+                "maxdepth=8;gitlet.Commit;gitlet.Manifest;gitlet.ObjectId;"
+                + "java.lang.String;!*");
+
+    /** Size of the buffers around pack streams. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Directory of commits. */
+    private final File _commitDir;
+    /** Directory of blobs. */
+    private final File _blobDir;
+    /** UIDs of the commits in this pack, oldest first. */
+    private final List<String> _commits;
+    /** UIDs of the blobs in this pack. */
+    private final Collection<String> _blobs;
+}
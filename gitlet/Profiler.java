@@ -0,0 +1,208 @@
+package gitlet;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/** Records, when started by the --profile flag, where a command spends
+ *  its time. Code marks a phase by opening a Span around it; spans of
+ *  the same name opened inside the same span are added together into
+ *  one node of a tree, which counts the calls, the wall time, the bytes
+ *  read and written, the files and directories opened and the objects
+ *  deserialized within it. Utils reports its I/O here. Only the thread
+ *  that started profiling is recorded, and when profiling is off a span
+ *  costs one comparison. At exit the tree is printed to the standard
+ *  error or written as JSON to a file.
+ *  @author Jay Chiang
+ */
+class Profiler {
+
+    /** Starts profiling the current thread under a root span named NAME.
+     *  At exit, the tree is written as JSON to file JSONFILE, or printed
+     *  if JSONFILE is null. */
+    static void start(String name, File jsonFile) {
+        _thread = Thread.currentThread();
+        _root = new Node(name);
+        _root.calls = 1;
+        _current = new Span(_root, null);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            finish();
+            if (jsonFile == null) {
+                print(System.err);
+            } else {
+                StringBuilder json = new StringBuilder();
+                json(_root, json);
+                Utils.writeContents(jsonFile, json.append('\n').toString());
+            }
+        }));
+    }
+
+    /** Returns a span named NAME within the current one, to be closed
+     *  when the phase it marks ends. */
+    static Span span(String name) {
+        if (Thread.currentThread() != _thread) {
+            return Span.NONE;
+        }
+        Node node = _current._node.children.computeIfAbsent(name, Node::new);
+        node.calls += 1;
+        _current = new Span(node, _current);
+        return _current;
+    }
+
+    /** Records that a file holding BYTES bytes was opened and read. */
+    static void read(long bytes) {
+        if (Thread.currentThread() == _thread) {
+            _current._node.opens += 1;
+            _current._node.bytesRead += bytes;
+        }
+    }
+
+    /** Records that a file was opened and BYTES bytes written to it. */
+    static void wrote(long bytes) {
+        if (Thread.currentThread() == _thread) {
+            _current._node.opens += 1;
+            _current._node.bytesWritten += bytes;
+        }
+    }
+
+    /** Records that a directory was opened and listed. */
+    static void listed() {
+        if (Thread.currentThread() == _thread) {
+            _current._node.opens += 1;
+        }
+    }
+
+    /** Records that an object was deserialized. */
+    static void deserialized() {
+        if (Thread.currentThread() == _thread) {
+            _current._node.objects += 1;
+        }
+    }
+
+    /** A phase of a command, timed from when it is opened until it is
+     *  closed. */
+    static class Span implements AutoCloseable {
+
+        /** The span returned when profiling is off. */
+        static final Span NONE = new Span(null, null);
+
+        /** A span adding to NODE, opened within span PARENT. */
+        private Span(Node node, Span parent) {
+            _node = node;
+            _parent = parent;
+            _start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            if (_node != null && _current == this) {
+                _node.nanos += System.nanoTime() - _start;
+                _current = _parent;
+            }
+        }
+
+        /** The node this span adds to. */
+        private final Node _node;
+        /** The enclosing span, or null for the root. */
+        private final Span _parent;
+        /** System.nanoTime() when this span was opened. */
+        private final long _start;
+    }
+
+    /** Closes the spans left open, as when a command calls System.exit,
+     *  including the root. */
+    private static void finish() {
+        while (_current != null) {
+            _current.close();
+        }
+    }
+
+    /** Prints the tree to OUT, one line per node, indented by depth. */
+    private static void print(PrintStream out) {
+        out.printf("%-32s %6s %10s %12s %12s %7s %7s%n", "span", "calls",
+                "wall ms", "read B", "written B", "opens", "objects");
+        print(out, _root, 0);
+    }
+
+    /** Prints NODE, at depth DEPTH, and the nodes below it to OUT, with
+     *  the counts of each including those of its descendants. */
+    private static void print(PrintStream out, Node node, int depth) {
+        long[] totals = node.totals();
+        out.printf(Locale.ROOT, "%-32s %6d %10.1f %12d %12d %7d %7d%n",
+                "  ".repeat(depth) + node.name, node.calls, node.nanos / 1e6,
+                totals[0], totals[1], totals[2], totals[3]);
+        for (Node child : node.children.values()) {
+            print(out, child, depth + 1);
+        }
+    }
+
+    /** Appends NODE and the nodes below it, as JSON, to OUT. */
+    private static void json(Node node, StringBuilder out) {
+        long[] totals = node.totals();
+        out.append("{\"name\":\"")
+            .append(node.name.replace("\\", "\\\\").replace("\"", "\\\""))
+            .append("\",\"calls\":").append(node.calls)
+            .append(",\"wallNanos\":").append(node.nanos)
+            .append(",\"bytesRead\":").append(totals[0])
+            .append(",\"bytesWritten\":").append(totals[1])
+            .append(",\"opens\":").append(totals[2])
+            .append(",\"objects\":").append(totals[3])
+            .append(",\"children\":[");
+        String separator = "";
+        for (Node child : node.children.values()) {
+            out.append(separator);
+            json(child, out);
+            separator = ",";
+        }
+        out.append("]}");
+    }
+
+    /** The totals of the calls of one span name within one parent. */
+    private static class Node {
+
+        /** A node for spans named NAME. */
+        Node(String name) {
+            this.name = name;
+        }
+
+        /** Returns the bytes read, bytes written, opens and objects of
+         *  this node and all below it. */
+        long[] totals() {
+            long[] result = {bytesRead, bytesWritten, opens, objects};
+            for (Node child : children.values()) {
+                long[] sub = child.totals();
+                for (int i = 0; i < result.length; i += 1) {
+                    result[i] += sub[i];
+                }
+            }
+            return result;
+        }
+
+        /** Name of the spans. */
+        private final String name;
+        /** Nodes of the spans opened within these, by name, in the
+         *  order first opened. */
+        private final LinkedHashMap<String, Node> children =
+            new LinkedHashMap<>();
+        /** Number of spans. */
+        private long calls;
+        /** Total wall time of the spans. */
+        private long nanos;
+        /** Bytes read directly within the spans. */
+        private long bytesRead;
+        /** Bytes written directly within the spans. */
+        private long bytesWritten;
+        /** Files and directories opened directly within the spans. */
+        private long opens;
+        /** Objects deserialized directly within the spans. */
+        private long objects;
+    }
+
+    /** The thread being profiled, or null if profiling is off. */
+    private static Thread _thread;
+    /** The root of the tree. */
+    private static Node _root;
+    /** The innermost open span. */
+    private static Span _current;
+}
@@ -0,0 +1,246 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+
+/** Numbers the objects of a repository and keeps, for selected commits,
+ *  the set of objects each reaches as an EwahBitmap, so that what one
+ *  group of commits reaches and another does not is a set difference.
+ *  Objects are numbered in increasing generation order, each commit
+ *  followed by the blobs it is first to hold, so the objects reachable
+ *  from a commit are mostly an interval and compress well. Commits are
+ *  selected every SPACING generations, and at the tips bitmaps are
+ *  built for; a query walks from its commits only down to the nearest
+ *  selected ones, numbering any objects newer than the index as it
+ *  goes. The index is written by gc.
+ *  @author Jay Chiang
+ */
+class ReachabilityBitmaps {
+
+    /** Name of the index file in a .gitlet directory. */
+    static final String FILE_NAME = "bitmaps";
+    /** Generations between selected commits. */
+    static final int SPACING = 64;
+
+    /** The bitmaps of the commits in COMMITDIR, read from INDEXFILE if
+     *  it exists. */
+    ReachabilityBitmaps(File commitDir, File indexFile) {
+        _commitDir = commitDir;
+        _indexFile = indexFile;
+        if (indexFile.isFile()) {
+            load();
+        }
+    }
+
+    /** Returns true if the index was read from disk or rebuilt. */
+    boolean exists() {
+        return !_bitmaps.isEmpty();
+    }
+
+    /** Returns the objects reachable from the commits TIPS, which must
+     *  all be in this repository. */
+    EwahBitmap reachable(Collection<String> tips) {
+        EwahBitmap result = EwahBitmap.EMPTY;
+        BitSet walked = new BitSet();
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        HashSet<String> seen = new HashSet<>();
+        for (String uID : tips) {
+            if (seen.add(uID)) {
+                pending.push(uID);
+            }
+        }
+        while (!pending.isEmpty()) {
+            String uID = pending.pop();
+            Integer position = _positions.get(uID);
+            EwahBitmap bitmap = position == null
+                    ? null : _bitmaps.get(position);
+            if (bitmap != null) {
+                result = result.or(bitmap);
+                continue;
+            }
+            Commit commit = read(uID);
+            walked.set(number(uID, commit.getGeneration()));
+            for (ObjectId blob : commit.getBlobs().values()) {
+                walked.set(number(blob.toString(), BLOB));
+            }
+            for (String parent : new String[] {commit.getParentUID(),
+                                               commit.getMergeParentUID()}) {
+                if (parent != null && seen.add(parent)) {
+                    pending.push(parent);
+                }
+            }
+        }
+        return result.or(EwahBitmap.of(walked));
+    }
+
+    /** Returns true if SET holds object UID. */
+    boolean contains(EwahBitmap set, String uID) {
+        Integer position = _positions.get(uID);
+        return position != null && set.get(position);
+    }
+
+    /** Returns the commits in SET, oldest first. */
+    List<String> commits(EwahBitmap set) {
+        ArrayList<Integer> positions = new ArrayList<>();
+        set.forEach(i -> {
+            if (_generations.get(i) != BLOB) {
+                positions.add(i);
+            }
+        });
+        positions.sort(Comparator.comparingInt(_generations::get));
+        ArrayList<String> result = new ArrayList<>();
+        for (int i : positions) {
+            result.add(_uIDs.get(i));
+        }
+        return result;
+    }
+
+    /** Returns the blobs in SET. */
+    List<String> blobs(EwahBitmap set) {
+        ArrayList<String> result = new ArrayList<>();
+        set.forEach(i -> {
+            if (_generations.get(i) == BLOB) {
+                result.add(_uIDs.get(i));
+            }
+        });
+        return result;
+    }
+
+    /** Renumbers the objects reachable from the commits TIPS, dropping
+     *  all others, and builds the bitmaps of TIPS and of the commits
+     *  every SPACING generations below them. */
+    void rebuild(Collection<String> tips) {
+        _uIDs.clear();
+        _generations.clear();
+        _positions.clear();
+        _bitmaps.clear();
+        ArrayList<Commit> commits = new ArrayList<>();
+        ArrayDeque<String> pending = new ArrayDeque<>(new TreeSet<>(tips));
+        HashSet<String> seen = new HashSet<>(pending);
+        while (!pending.isEmpty()) {
+            Commit commit = read(pending.pop());
+            commits.add(commit);
+            for (String parent : new String[] {commit.getParentUID(),
+                                               commit.getMergeParentUID()}) {
+                if (parent != null && seen.add(parent)) {
+                    pending.push(parent);
+                }
+            }
+        }
+        commits.sort(Comparator.comparingInt(Commit::getGeneration)
+                .thenComparing(Commit::getUID));
+        for (Commit commit : commits) {
+            number(commit.getUID(), commit.getGeneration());
+            for (ObjectId blob
+                     : new TreeSet<>(commit.getBlobs().values())) {
+                number(blob.toString(), BLOB);
+            }
+        }
+        HashSet<String> selected = new HashSet<>(tips);
+        for (Commit commit : commits) {
+            if (selected.contains(commit.getUID())
+                    || commit.getGeneration() % SPACING == 0) {
+                _bitmaps.put(_positions.get(commit.getUID()),
+                        reachable(List.of(commit.getUID())));
+            }
+        }
+    }
+
+    /** Writes the index. */
+    void save() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(_uIDs.size());
+            for (int i = 0; i < _uIDs.size(); i += 1) {
+                out.write(_uIDs.get(i).getBytes(StandardCharsets.US_ASCII));
+                out.writeInt(_generations.get(i));
+            }
+            out.writeInt(_bitmaps.size());
+            for (int position : new TreeSet<>(_bitmaps.keySet())) {
+                out.writeInt(position);
+                _bitmaps.get(position).write(out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        Utils.writeContentsAtomically(_indexFile, bytes.toByteArray());
+    }
+
+    /** Returns the number of object UID, of generation GENERATION (BLOB
+     *  for a blob), numbering it next if it has no number yet. */
+    private int number(String uID, int generation) {
+        Integer position = _positions.get(uID);
+        if (position == null) {
+            position = _uIDs.size();
+            _uIDs.add(uID);
+            _generations.add(generation);
+            _positions.put(uID, position);
+        }
+        return position;
+    }
+
+    /** Returns commit UID. */
+    private Commit read(String uID) {
+        Commit commit = _commits.get(uID);
+        if (commit == null) {
+            commit = Utils.readObject(new File(_commitDir, uID + ".txt"),
+                    Commit.class);
+            _commits.put(uID, commit);
+        }
+        return commit;
+    }
+
+    /** Reads the index. */
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(_indexFile)))) {
+            int count = in.readInt();
+            byte[] name = new byte[Utils.UID_LENGTH];
+            for (int i = 0; i < count; i += 1) {
+                in.readFully(name);
+                number(new String(name, StandardCharsets.US_ASCII),
+                        in.readInt());
+            }
+            int bitmaps = in.readInt();
+            for (int i = 0; i < bitmaps; i += 1) {
+                int position = in.readInt();
+                _bitmaps.put(position, EwahBitmap.read(in));
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Generation recorded for a blob. */
+    private static final int BLOB = 0;
+
+    /** Directory of commits. */
+    private final File _commitDir;
+    /** The index file. */
+    private final File _indexFile;
+    /** UIDs of the objects by number. */
+    private final ArrayList<String> _uIDs = new ArrayList<>();
+    /** Generations of the objects by number, BLOB for blobs. */
+    private final ArrayList<Integer> _generations = new ArrayList<>();
+    /** Numbers of the objects by UID. */
+    private final HashMap<String, Integer> _positions = new HashMap<>();
+    /** Bitmaps of the selected commits, by number. */
+    private final HashMap<Integer, EwahBitmap> _bitmaps = new HashMap<>();
+    /** Commits read so far. */
+    private final HashMap<String, Commit> _commits = new HashMap<>();
+}
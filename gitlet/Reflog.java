@@ -0,0 +1,217 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** The history of where each branch, and HEAD, has pointed, so that a
+ *  commit a reset or checkout moved away from can still be found. Each
+ *  branch has an append-only file of fixed-width records under
+ *  .gitlet/logs/refs: the commit it pointed to before and after a move,
+ *  all zeros for none, the time of the move in milliseconds, and the
+ *  command that made it, padded with zeros to COMMAND_LENGTH bytes.
+ *  Appending is one write at the end of the file whatever its length,
+ *  and since every record is RECORD bytes long the file is read newest
+ *  first by mapping it and stepping back from its end. A record cut
+ *  short by a crash is ignored, and overwritten by the next append.
+ *  @author Jay Chiang
+ */
+class Reflog {
+
+    /** The name of the log of the current branch's head commit, which
+     *  checkout moves as well as anything that moves that branch. */
+    static final String HEAD = "HEAD";
+
+    /** Bytes of the command in a record. */
+    static final int COMMAND_LENGTH = 16;
+
+    /** Bytes in a record. */
+    static final int RECORD = 2 * ObjectId.LENGTH + 8 + COMMAND_LENGTH;
+
+    /** A move of a branch. */
+    static final class Entry {
+
+        /** A move from commit OLDUID to NEWUID at TIME by COMMAND. */
+        Entry(ObjectId oldUID, ObjectId newUID, long time, String command) {
+            this.oldUID = oldUID;
+            this.newUID = newUID;
+            this.time = time;
+            this.command = command;
+        }
+
+        /** The commit pointed to before, or null if there was none. */
+        final ObjectId oldUID;
+        /** The commit pointed to after, or null if the branch was
+         *  removed. */
+        final ObjectId newUID;
+        /** When, in milliseconds since the epoch. */
+        final long time;
+        /** The command that made the move. */
+        final String command;
+    }
+
+    /** The reflogs of the repository whose logs are in LOGDIR. */
+    Reflog(File logDir) {
+        this(logDir, logDir);
+    }
+
+    /** The reflogs of a working tree whose HEAD log is in HEADLOGDIR,
+     *  and whose branch logs are in LOGDIR, shared with the other
+     *  working trees of its repository. */
+    Reflog(File logDir, File headLogDir) {
+        _dir = new File(logDir, "refs");
+        _headDir = new File(headLogDir, "refs");
+    }
+
+    /** Records that COMMAND moved REF from commit OLDUID to NEWUID, either
+     *  of which may be null for none. A record left partly written by a
+     *  crash is cut off first, so that the new one starts on a record
+     *  boundary. */
+    void append(String ref, String oldUID, String newUID, String command) {
+        byte[] record = new byte[RECORD];
+        if (oldUID != null) {
+            ObjectId.fromString(oldUID).copyTo(record, 0);
+        }
+        if (newUID != null) {
+            ObjectId.fromString(newUID).copyTo(record, ObjectId.LENGTH);
+        }
+        ByteBuffer.wrap(record, 2 * ObjectId.LENGTH, 8)
+            .putLong(System.currentTimeMillis());
+        byte[] name = command.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(name, 0, record, RECORD - COMMAND_LENGTH,
+                Math.min(name.length, COMMAND_LENGTH));
+        File file = file(ref);
+        file.getParentFile().mkdirs();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long end = channel.size() - channel.size() % RECORD;
+            channel.truncate(end);
+            channel.write(ByteBuffer.wrap(record), end);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the moves of REF, newest first; none if it has no log. */
+    Iterator<Entry> newestFirst(String ref) {
+        File file = file(ref);
+        if (!file.isFile()) {
+            return List.<Entry>of().iterator();
+        }
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size() - channel.size() % RECORD);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+        return new Iterator<Entry>() {
+            @Override
+            public boolean hasNext() {
+                return _next >= 0;
+            }
+
+            @Override
+            public Entry next() {
+                if (_next < 0) {
+                    throw new NoSuchElementException();
+                }
+                byte[] record = new byte[RECORD];
+                map.get(_next, record);
+                _next -= RECORD;
+                int end = RECORD - COMMAND_LENGTH;
+                while (end < RECORD && record[end] != 0) {
+                    end += 1;
+                }
+                return new Entry(id(record, 0), id(record, ObjectId.LENGTH),
+                        ByteBuffer.wrap(record, 2 * ObjectId.LENGTH, 8)
+                            .getLong(),
+                        new String(record, RECORD - COMMAND_LENGTH,
+                                end - (RECORD - COMMAND_LENGTH),
+                                StandardCharsets.US_ASCII));
+            }
+
+            /** Position of the next record to return, or -1. */
+            private int _next = map.limit() - RECORD;
+        };
+    }
+
+    /** Returns the names of the refs that have logs, HEAD being this
+     *  working tree's. */
+    List<String> refs() {
+        ArrayList<String> result = new ArrayList<>();
+        refs(_dir, "", result);
+        if (!_headDir.equals(_dir)) {
+            result.remove(HEAD);
+            if (file(HEAD).isFile()) {
+                result.add(HEAD);
+            }
+        }
+        return result;
+    }
+
+    /** Returns every commit that any log records a ref pointing to. */
+    Set<String> commits() {
+        HashSet<String> result = new HashSet<>();
+        for (String ref : refs()) {
+            for (Iterator<Entry> i = newestFirst(ref); i.hasNext();) {
+                Entry entry = i.next();
+                for (ObjectId uID : new ObjectId[] {entry.oldUID,
+                                                    entry.newUID}) {
+                    if (uID != null) {
+                        result.add(uID.toString());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Adds to RESULT the refs with logs in DIR, whose names begin with
+     *  PREFIX. */
+    private static void refs(File dir, String prefix, List<String> result) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isDirectory()) {
+                refs(file, prefix + name + "/", result);
+            } else if (name.endsWith(".log")) {
+                result.add(prefix + name.substring(0, name.length() - 4));
+            }
+        }
+    }
+
+    /** Returns the id at START in RECORD, or null if it is all zeros. */
+    private static ObjectId id(byte[] record, int start) {
+        for (int i = start; i < start + ObjectId.LENGTH; i += 1) {
+            if (record[i] != 0) {
+                return ObjectId.fromBytes(record, start);
+            }
+        }
+        return null;
+    }
+
+    /** Returns the log file of REF. */
+    private File file(String ref) {
+        return new File(ref.equals(HEAD) ? _headDir : _dir, ref + ".log");
+    }
+
+    /** Directory of the branch logs. */
+    private final File _dir;
+    /** Directory of the HEAD log. */
+    private final File _headDir;
+}
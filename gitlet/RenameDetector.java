@@ -0,0 +1,271 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/** Finds files renamed between two manifests. Files with identical
+ *  blobs are paired first. The remaining deleted and added files are
+ *  compared through MinHash signatures of their lines: signatures are
+ *  split into bands, and only files sharing a band are compared at all,
+ *  so the work stays close to linear in the number of files. Signatures
+ *  are cached in memory and on disk, keyed by blob ID.
+ *  @author Jay Chiang
+ */
+class RenameDetector {
+
+    /** A file moved from path FROM to path TO, SCORE percent similar. */
+    static class Rename {
+        /** A rename of FROM to TO with similarity SCORE. */
+        Rename(String from, String to, int score) {
+            this.from = from;
+            this.to = to;
+            this.score = score;
+        }
+
+        /** The old path. */
+        final String from;
+        /** The new path. */
+        final String to;
+        /** Estimated similarity of the contents, in percent. */
+        final int score;
+    }
+
+    /** A detector reading blobs from BLOBDIR and caching signatures in
+     *  SIGNATUREDIR. */
+    RenameDetector(File blobDir, File signatureDir) {
+        _blobDir = blobDir;
+        _signatureDir = signatureDir;
+    }
+
+    /** Returns the renames from manifest FROM to manifest TO: pairs of a
+     *  path only in FROM and a path only in TO whose contents are at least
+     *  MIN_SCORE percent similar. Each path is in at most one rename, and
+     *  better matches are taken first. */
+    List<Rename> detect(Map<String, ObjectId> from,
+                        Map<String, ObjectId> to) {
+        ArrayList<String> deleted = new ArrayList<>();
+        for (String path : from.keySet()) {
+            if (!to.containsKey(path)) {
+                deleted.add(path);
+            }
+        }
+        HashMap<ObjectId, ArrayList<String>> addedByBlob = new HashMap<>();
+        for (Map.Entry<String, ObjectId> entry : to.entrySet()) {
+            if (!from.containsKey(entry.getKey())) {
+                addedByBlob.computeIfAbsent(entry.getValue(),
+                    k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        Collections.sort(deleted);
+        ArrayList<Rename> result = new ArrayList<>();
+        ArrayList<String> inexact = new ArrayList<>();
+        for (String path : deleted) {
+            ArrayList<String> same = addedByBlob.get(from.get(path));
+            if (same != null && !same.isEmpty()) {
+                Collections.sort(same);
+                String target = same.remove(0);
+                result.add(new Rename(path, target, 100));
+            } else {
+                inexact.add(path);
+            }
+        }
+        ArrayList<String> added = new ArrayList<>();
+        for (ArrayList<String> paths : addedByBlob.values()) {
+            added.addAll(paths);
+        }
+        Collections.sort(added);
+        result.addAll(similar(inexact, from, added, to));
+        return result;
+    }
+
+    /** Returns the best non-overlapping pairs of a path in DELETED (with
+     *  blobs in FROM) and a path in ADDED (with blobs in TO) that are at
+     *  least MIN_SCORE percent similar. */
+    private List<Rename> similar(List<String> deleted,
+                                 Map<String, ObjectId> from,
+                                 List<String> added,
+                                 Map<String, ObjectId> to) {
+        ArrayList<Rename> result = new ArrayList<>();
+        if (deleted.isEmpty() || added.isEmpty()) {
+            return result;
+        }
+        HashMap<Long, ArrayList<Integer>> buckets = new HashMap<>();
+        int[][] addedSignatures = new int[added.size()][];
+        for (int a = 0; a < added.size(); a += 1) {
+            addedSignatures[a] = signature(to.get(added.get(a)));
+            if (addedSignatures[a] == null) {
+                continue;
+            }
+            for (int band = 0; band < BANDS; band += 1) {
+                buckets.computeIfAbsent(bandKey(addedSignatures[a], band),
+                    k -> new ArrayList<>()).add(a);
+            }
+        }
+        ArrayList<Rename> candidates = new ArrayList<>();
+        for (String path : deleted) {
+            int[] sig = signature(from.get(path));
+            if (sig == null) {
+                continue;
+            }
+            HashSet<Integer> seen = new HashSet<>();
+            for (int band = 0; band < BANDS; band += 1) {
+                ArrayList<Integer> bucket = buckets.get(bandKey(sig, band));
+                if (bucket == null || bucket.size() > MAX_BUCKET) {
+                    continue;
+                }
+                for (int a : bucket) {
+                    if (seen.add(a)) {
+                        int score = score(sig, addedSignatures[a]);
+                        if (score >= MIN_SCORE) {
+                            candidates.add(
+                                new Rename(path, added.get(a), score));
+                        }
+                    }
+                }
+            }
+        }
+        candidates.sort((x, y) -> y.score != x.score
+                ? Integer.compare(y.score, x.score)
+                : (x.from + "\0" + x.to).compareTo(y.from + "\0" + y.to));
+        HashSet<String> usedFrom = new HashSet<>();
+        HashSet<String> usedTo = new HashSet<>();
+        for (Rename rename : candidates) {
+            if (!usedFrom.contains(rename.from)
+                    && !usedTo.contains(rename.to)) {
+                usedFrom.add(rename.from);
+                usedTo.add(rename.to);
+                result.add(rename);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the percentage of positions at which signatures A and B
+     *  agree, which estimates the Jaccard similarity of their line sets. */
+    private static int score(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i += 1) {
+            if (a[i] == b[i]) {
+                same += 1;
+            }
+        }
+        return same * 100 / SIGNATURE_SIZE;
+    }
+
+    /** Returns the LSH bucket of band BAND of signature SIG. */
+    private static long bandKey(int[] sig, int band) {
+        long key = band;
+        for (int r = 0; r < ROWS; r += 1) {
+            key = key * 0x100000001B3L + sig[band * ROWS + r];
+        }
+        return key;
+    }
+
+    /** Returns the MinHash signature of blob UID, or null if the blob
+     *  has no non-blank lines. */
+    private int[] signature(ObjectId uID) {
+        if (_signatures.containsKey(uID)) {
+            return _signatures.get(uID);
+        }
+        File cached = new File(_signatureDir, uID + ".txt");
+        int[] sig;
+        if (cached.isFile()) {
+            sig = Utils.readObject(cached, int[].class);
+        } else {
+            sig = computeSignature(Utils.readContents(
+                    new File(_blobDir, uID + ".txt")));
+            _signatureDir.mkdir();
+            Utils.writeContentsAtomically(cached, Utils.serialize(sig));
+        }
+        if (sig.length == 0) {
+            sig = null;
+        }
+        _signatures.put(uID, sig);
+        return sig;
+    }
+
+    /** Returns the MinHash signature of the non-blank lines of CONTENTS,
+     *  with trailing whitespace ignored, or an empty array if there are
+     *  none. */
+    static int[] computeSignature(byte[] contents) {
+        int[] sig = new int[SIGNATURE_SIZE];
+        Arrays.fill(sig, Integer.MAX_VALUE);
+        boolean any = false;
+        int start = 0;
+        while (start < contents.length) {
+            int end = start;
+            while (end < contents.length && contents[end] != '\n') {
+                end += 1;
+            }
+            int last = end;
+            while (last > start && contents[last - 1] <= ' ') {
+                last -= 1;
+            }
+            if (last > start) {
+                any = true;
+                long h = FNV_OFFSET;
+                for (int i = start; i < last; i += 1) {
+                    h = (h ^ (contents[i] & 0xff)) * FNV_PRIME;
+                }
+                for (int i = 0; i < SIGNATURE_SIZE; i += 1) {
+                    int v = mix(h * MULTIPLIERS[i] + INCREMENTS[i]);
+                    if (v < sig[i]) {
+                        sig[i] = v;
+                    }
+                }
+            }
+            start = end + 1;
+        }
+        return any ? sig : new int[0];
+    }
+
+    /** Returns a well-mixed 31-bit hash of X. */
+    private static int mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xff51afd7ed558ccdL;
+        x ^= x >>> 33;
+        return (int) (x >>> 33);
+    }
+
+    /** Smallest similarity, in percent, of a detected rename. */
+    static final int MIN_SCORE = 50;
+    /** Number of hash functions in a signature. */
+    private static final int SIGNATURE_SIZE = 64;
+    /** Signature entries per LSH band. */
+    private static final int ROWS = 2;
+    /** Number of LSH bands. */
+    private static final int BANDS = SIGNATURE_SIZE / ROWS;
+    /** Buckets holding more added files than this are too common to be
+     *  useful and are skipped. */
+    private static final int MAX_BUCKET = 256;
+    /** FNV-1a offset basis. */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    /** FNV-1a prime. */
+    private static final long FNV_PRIME = 0x100000001b3L;
+    /** Odd multipliers of the signature's hash functions. */
+    private static final long[] MULTIPLIERS = new long[SIGNATURE_SIZE];
+    /** Increments of the signature's hash functions. */
+    private static final long[] INCREMENTS = new long[SIGNATURE_SIZE];
+
+    static {
+        Random random = new Random(0x61B);
+        for (int i = 0; i < SIGNATURE_SIZE; i += 1) {
+            MULTIPLIERS[i] = random.nextLong() | 1;
+            INCREMENTS[i] = random.nextLong();
+        }
+    }
+
+    /** Directory of blobs. */
+    private final File _blobDir;
+    /** Directory of cached signatures. */
+    private final File _signatureDir;
+    /** Signatures computed or loaded so far; null for blank blobs. */
+    private final HashMap<ObjectId, int[]> _signatures = new HashMap<>();
+}
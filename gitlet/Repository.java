@@ -0,0 +1,486 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/** A gitlet repository for programs that embed gitlet rather than run
+ *  its commands. Results come back as objects instead of being printed,
+ *  and failures are thrown as GitletExceptions carrying the message the
+ *  command would have printed.
+ *
+ *  Reads go through Snapshots. A snapshot captures the current branch,
+ *  its head commit and the stage when it is taken, and since commits and
+ *  blobs never change once written, everything it answers afterwards is
+ *  about that moment, however the repository moves on. Snapshots are
+ *  immutable and may be shared and queried by any number of threads.
+ *  Changes to the repository are made one at a time: they are
+ *  serialized within this object and hold the repository's exclusive
+ *  lock, so they exclude other processes' commands too, while taking a
+ *  snapshot holds only its shared lock, and only while it reads the
+ *  branch, commit and stage.
+ *  @author Jay Chiang
+ */
+public class Repository {
+
+    /** Returns the repository whose working directory is WORKTREE.
+     *  Throws GitletException if there is none. */
+    public static Repository open(File workTree) {
+        Repository result = new Repository(workTree);
+        if (!result._gitletDir.isDirectory()) {
+            throw new GitletException(
+                    "Not in an initialized Gitlet directory.");
+        }
+        String error = Git.formatError(result._gitletDir);
+        if (error != null) {
+            throw new GitletException(error);
+        }
+        return result;
+    }
+
+    /** Creates a repository, as init does, in directory WORKTREE, and
+     *  returns it. */
+    public static Repository init(File workTree) {
+        Repository result = new Repository(workTree);
+        check(result.change(git -> git.init()));
+        return result;
+    }
+
+    /** Returns the working directory. */
+    public File workTree() {
+        return _workTree;
+    }
+
+    /** Returns a snapshot of the repository as it is now. */
+    public Snapshot snapshot() {
+        try (RepositoryLock lock =
+                 RepositoryLock.acquire(_commonDir, true, "snapshot")) {
+            File branchDir = new File(_commonDir, "branches");
+            String branch = Utils.readContentsAsString(
+                    new File(_gitletDir, "branches/head.txt"));
+            TreeMap<String, String> branches = new TreeMap<>();
+            for (String name : branchDir.list()) {
+                if (name.endsWith(".txt") && !name.equals("head.txt")) {
+                    branches.put(name.substring(0, name.length() - 4),
+                            Utils.readContentsAsString(
+                                    new File(branchDir, name)));
+                }
+            }
+            Commit head = Utils.readObject(new File(_commitDir,
+                    branches.get(branch) + ".txt"), Commit.class);
+            StagingArea stage = Utils.readObject(
+                    new File(_gitletDir, "stage/stage.txt"),
+                    StagingArea.class);
+            return new Snapshot(branch, head, branches, stage,
+                    new SparseCheckout(
+                            new File(_gitletDir, SparseCheckout.FILE_NAME)));
+        }
+    }
+
+    /** Stages the file PATH for addition, as add does. */
+    public void add(String path) {
+        check(change(git -> git.add(path)));
+    }
+
+    /** Unstages or stages for removal the file PATH, as rm does. */
+    public void rm(String path) {
+        check(change(git -> git.rm(path)));
+    }
+
+    /** Commits the stage with MESSAGE, as commit does, and returns the
+     *  new commit. */
+    public Commit commit(String message) {
+        check(change(git -> git.commit(message)));
+        return snapshot().head();
+    }
+
+    /** Creates the branch NAME at the head commit, as branch does. */
+    public void branch(String name) {
+        check(change(git -> git.branch(name)));
+    }
+
+    /** Makes directory PATH a working tree of this repository with
+     *  branch BRANCH checked out, as worktree add does, and returns it. */
+    public Repository addWorktree(File path, String branch) {
+        check(change(git -> git.worktreeAdd(path.getPath(), branch)));
+        return open(path);
+    }
+
+    /** Checks out the branch NAME, as checkout does. */
+    public void checkout(String name) {
+        check(report(git -> git.checkout("checkout", name)));
+    }
+
+    /** Merges the branch NAME into the current one, as merge does, and
+     *  returns what happened. */
+    public MergeResult merge(String name) {
+        return mergeResult(report(git -> git.merge(name)));
+    }
+
+    /** Deletes what no branch or staged file reaches, as gc does. */
+    public void gc() {
+        check(report(git -> git.gc()));
+    }
+
+    /** Fetches branch BRANCH of remote REMOTE, as fetch does. */
+    public void fetch(String remote, String branch) {
+        check(report(git -> git.fetch(remote, branch)));
+    }
+
+    /** Pushes the current branch to branch BRANCH of remote REMOTE, as
+     *  push does. */
+    public void push(String remote, String branch) {
+        check(report(git -> git.push(remote, branch)));
+    }
+
+    /** Fetches branch BRANCH of remote REMOTE and merges it into the
+     *  current one, as pull does, and returns what the merge did. */
+    public MergeResult pull(String remote, String branch) {
+        return mergeResult(report(git -> git.pull(remote, branch)));
+    }
+
+    /** Returns the result of a merge that printed REPORT, or throws a
+     *  GitletException if it failed. */
+    private MergeResult mergeResult(String report) {
+        MergeResult.Kind kind;
+        if (report.isEmpty()) {
+            kind = MergeResult.Kind.MERGED;
+        } else if (report.equals("Encountered a merge conflict.")) {
+            kind = MergeResult.Kind.CONFLICTED;
+        } else if (report.equals("Current branch fast-forwarded.")) {
+            kind = MergeResult.Kind.FAST_FORWARD;
+        } else if (report.equals(
+                "Given branch is an ancestor of the current branch.")) {
+            kind = MergeResult.Kind.UP_TO_DATE;
+        } else {
+            throw new GitletException(report);
+        }
+        return new MergeResult(kind, snapshot().head());
+    }
+
+    /** The files, branches and stage of a repository at one moment. */
+    public final class Snapshot {
+
+        /** A snapshot on BRANCH, whose head is HEAD, when the branches
+         *  and their heads were BRANCHES, the stage was STAGE and the
+         *  sparse checkout was SPARSE. */
+        private Snapshot(String branch, Commit head,
+                         SortedMap<String, String> branches,
+                         StagingArea stage, SparseCheckout sparse) {
+            _branch = branch;
+            _sparse = sparse;
+            _head = head;
+            _branches = Collections.unmodifiableSortedMap(branches);
+            _staged = Collections.unmodifiableSortedMap(
+                    new TreeMap<>(stage.getStageAddition()));
+            _removed = Collections.unmodifiableSortedMap(
+                    new TreeMap<>(stage.getStageRemoval()));
+        }
+
+        /** Returns the current branch. */
+        public String branch() {
+            return _branch;
+        }
+
+        /** Returns the head commit of the current branch. */
+        public Commit head() {
+            return _head;
+        }
+
+        /** Returns the branches, remote-tracking ones aside, and the ids
+         *  of their head commits. */
+        public SortedMap<String, String> branches() {
+            return _branches;
+        }
+
+        /** Returns the paths of the files in the head commit. */
+        public Set<String> files() {
+            return Collections.unmodifiableSet(_head.getBlobs().keySet());
+        }
+
+        /** Returns the contents of file PATH in the head commit, or null
+         *  if it has no such file. Throws IllegalArgumentException if a
+         *  partial clone has not fetched it yet. */
+        public byte[] read(String path) {
+            ObjectId uID = _head.getBlobs().get(path);
+            return uID == null ? null
+                : Utils.readContents(new File(_blobDir, uID + ".txt"));
+        }
+
+        /** Returns the head commit and its first-parent ancestors, newest
+         *  first, read as the iterator reaches them. */
+        public Iterator<Commit> log() {
+            return new CommitIterator(_commitDir, _head);
+        }
+
+        /** Returns the ids of the commits whose message is MESSAGE. */
+        public List<String> find(String message) {
+            ArrayList<String> result = new ArrayList<>();
+            for (String name : _commitDir.list()) {
+                Commit commit = Utils.readObject(new File(_commitDir, name),
+                        Commit.class);
+                if (commit.getMessage().equals(message)) {
+                    result.add(commit.getUID());
+                }
+            }
+            return result;
+        }
+
+        /** Returns the best common ancestors of ONE and TWO, each a branch
+         *  or a full commit id, highest generation first. Throws
+         *  GitletException if either names no commit. */
+        public List<String> mergeBases(String one, String two) {
+            return new MergeBase(MergeBase.commitGraph(_commitDir))
+                .mergeBases(resolve(one), resolve(two));
+        }
+
+        /** Returns the status of the working directory against this
+         *  snapshot's head and stage, as status shows it. The working
+         *  directory is read when this is called. */
+        public Status status() {
+            HashMap<String, ObjectId> workTree = new HashMap<>();
+            for (String name : _workTree.list()) {
+                File file = new File(_workTree, name);
+                if (file.isFile()) {
+                    workTree.put(name,
+                            Utils.sha1Id(Utils.readContents(file)));
+                }
+            }
+            Manifest tracked = _head.getBlobs();
+            TreeMap<String, String> modified = new TreeMap<>();
+            for (Map.Entry<String, ObjectId> file : tracked.entrySet()) {
+                String name = file.getKey();
+                ObjectId uID = workTree.get(name);
+                if (_staged.containsKey(name) || _removed.containsKey(name)) {
+                    continue;
+                } else if (uID == null) {
+                    if (_sparse.includes(name)) {
+                        modified.put(name, "deleted");
+                    }
+                } else if (!uID.equals(file.getValue())) {
+                    modified.put(name, "modified");
+                }
+            }
+            for (Map.Entry<String, ObjectId> file : _staged.entrySet()) {
+                ObjectId uID = workTree.get(file.getKey());
+                if (uID == null) {
+                    modified.put(file.getKey(), "deleted");
+                } else if (!uID.equals(file.getValue())) {
+                    modified.put(file.getKey(), "modified");
+                }
+            }
+            TreeSet<String> untracked = new TreeSet<>();
+            for (String name : workTree.keySet()) {
+                if (!IGNORED.contains(name) && !name.endsWith(".iml")
+                        && !tracked.containsKey(name)
+                        && !_staged.containsKey(name)) {
+                    untracked.add(name);
+                }
+            }
+            return new Status(_branch, _branches.keySet(), _staged.keySet(),
+                    _removed.keySet(), modified, untracked);
+        }
+
+        /** Returns the commit id named by REV, a branch or a full id. */
+        private String resolve(String rev) {
+            if (_branches.containsKey(rev)) {
+                return _branches.get(rev);
+            } else if (new File(_commitDir, rev + ".txt").isFile()) {
+                return rev;
+            }
+            throw new GitletException("No commit with that id exists.");
+        }
+
+        /** The current branch. */
+        private final String _branch;
+        /** Its head commit. */
+        private final Commit _head;
+        /** Each branch and its head commit's id. */
+        private final SortedMap<String, String> _branches;
+        /** Files staged for addition, and their blobs. */
+        private final SortedMap<String, ObjectId> _staged;
+        /** Files staged for removal. */
+        private final SortedMap<String, ObjectId> _removed;
+        /** The sparse checkout; status does not report paths outside it
+         *  missing. */
+        private final SparseCheckout _sparse;
+    }
+
+    /** What status reports of a repository. */
+    public static final class Status {
+
+        /** A status on BRANCH, of all BRANCHES, with STAGED and REMOVED
+         *  files staged, changes MODIFIED not staged, and UNTRACKED
+         *  files. */
+        private Status(String branch, Set<String> branches,
+                       Set<String> staged, Set<String> removed,
+                       SortedMap<String, String> modified,
+                       Set<String> untracked) {
+            _branch = branch;
+            _branches = List.copyOf(branches);
+            _staged = List.copyOf(staged);
+            _removed = List.copyOf(removed);
+            _modified = Collections.unmodifiableSortedMap(modified);
+            _untracked = List.copyOf(untracked);
+        }
+
+        /** Returns the current branch. */
+        public String branch() {
+            return _branch;
+        }
+
+        /** Returns the branches, sorted. */
+        public List<String> branches() {
+            return _branches;
+        }
+
+        /** Returns the files staged for addition, sorted. */
+        public List<String> staged() {
+            return _staged;
+        }
+
+        /** Returns the files staged for removal, sorted. */
+        public List<String> removed() {
+            return _removed;
+        }
+
+        /** Returns each file changed but not staged, with "modified" or
+         *  "deleted". */
+        public SortedMap<String, String> modified() {
+            return _modified;
+        }
+
+        /** Returns the untracked files, sorted. */
+        public List<String> untracked() {
+            return _untracked;
+        }
+
+        /** The current branch. */
+        private final String _branch;
+        /** All branches. */
+        private final List<String> _branches;
+        /** Files staged for addition. */
+        private final List<String> _staged;
+        /** Files staged for removal. */
+        private final List<String> _removed;
+        /** Unstaged changes. */
+        private final SortedMap<String, String> _modified;
+        /** Untracked files. */
+        private final List<String> _untracked;
+    }
+
+    /** What a merge did. */
+    public static final class MergeResult {
+
+        /** The outcomes of a merge. */
+        public enum Kind {
+            /** A merge commit was made. */
+            MERGED,
+            /** A merge commit was made, with conflicts marked in it. */
+            CONFLICTED,
+            /** The current branch was moved to the given one. */
+            FAST_FORWARD,
+            /** The given branch was already merged; nothing changed. */
+            UP_TO_DATE
+        }
+
+        /** A merge that did KIND, leaving HEAD at the head of the current
+         *  branch. */
+        private MergeResult(Kind kind, Commit head) {
+            _kind = kind;
+            _head = head;
+        }
+
+        /** Returns what the merge did. */
+        public Kind kind() {
+            return _kind;
+        }
+
+        /** Returns the head commit of the current branch after it. */
+        public Commit head() {
+            return _head;
+        }
+
+        /** What the merge did. */
+        private final Kind _kind;
+        /** The head commit after it. */
+        private final Commit _head;
+    }
+
+    /** A repository whose working directory is WORKTREE. */
+    private Repository(File workTree) {
+        _workTree = workTree.getAbsoluteFile();
+        _gitletDir = new File(_workTree, ".gitlet");
+        _commonDir = Git.commonDir(_gitletDir);
+        _commitDir = new File(_commonDir, "commits");
+        _blobDir = new File(_commonDir, "blobs");
+    }
+
+    /** Runs ACTION on a Git for this repository while holding its lock
+     *  exclusively, one at a time, and returns what ACTION printed. If
+     *  the task running this is cancelled while it waits, it stops
+     *  before ACTION starts. */
+    private String report(Consumer<Git> action) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        _writing.lock();
+        try (RepositoryLock lock = _gitletDir.isDirectory()
+                 ? RepositoryLock.acquire(_commonDir, false, "repository")
+                 : null) {
+            Task.checkpoint();
+            action.accept(new Git(_workTree,
+                    new PrintStream(out, true, StandardCharsets.UTF_8)));
+        } finally {
+            _writing.unlock();
+        }
+        return out.toString(StandardCharsets.UTF_8).trim();
+    }
+
+    /** As report(ACTION), for an ACTION that has no checkpoints, so that
+     *  the task running it, if any, cannot be cancelled once it begins. */
+    private String change(Consumer<Git> action) {
+        return report(git -> {
+            Task.finishing();
+            action.accept(git);
+        });
+    }
+
+    /** Throws a GitletException with message REPORT unless it is empty. */
+    private static void check(String report) {
+        if (!report.isEmpty()) {
+            throw new GitletException(report);
+        }
+    }
+
+    /** Files status never calls untracked. */
+    private static final Set<String> IGNORED =
+        Set.of(".gitignore", "Makefile", ".DS_Store");
+
+    /** The working directory. */
+    private final File _workTree;
+    /** Its .gitlet directory. */
+    private final File _gitletDir;
+    /** The .gitlet directory holding its commits, blobs and branches,
+     *  which differs from _gitletDir in an added worktree. */
+    private final File _commonDir;
+    /** Directory of commits. */
+    private final File _commitDir;
+    /** Directory of blobs. */
+    private final File _blobDir;
+    /** Held while this changes the repository. A lock rather than a
+     *  monitor, so that a virtual thread waiting on it frees its
+     *  carrier. */
+    private final ReentrantLock _writing = new ReentrantLock();
+}
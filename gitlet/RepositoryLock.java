@@ -0,0 +1,305 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/** A lock on a repository, held while a command runs so that gitlet
+ *  processes sharing a repository do not overwrite each other's stage
+ *  or branches. Commands that only read take a shared lock, and any
+ *  number of them run together; commands that write take an exclusive
+ *  one. The lock is a FileChannel lock on the file lock in the .gitlet
+ *  directory, which the operating system releases when its process
+ *  dies, so a crashed command never leaves the repository locked. An
+ *  exclusive holder records its process and command in that file, and
+ *  a command that waits longer than the timeout gives up naming them.
+ *  Where the file system cannot lock files, the lock is instead the
+ *  existence of the file lock.pid, taken exclusively even for reads;
+ *  such a file left by a process that is gone, or older than
+ *  STALE_AGE, is stale and is removed. Within one JVM, locks on the
+ *  same repository are shared between threads in the same way.
+ *  @author Jay Chiang
+ */
+class RepositoryLock implements AutoCloseable {
+
+    /** Name of the lock file in a .gitlet directory. */
+    static final String FILE_NAME = "lock";
+
+    /** Name of the lock file used where file locks are unsupported. */
+    static final String PID_FILE_NAME = "lock.pid";
+
+    /** Milliseconds to wait for a lock unless the system property
+     *  gitlet.lockTimeout gives another number. */
+    static final long TIMEOUT = 10000;
+
+    /** Milliseconds after which a lock.pid file is stale whatever
+     *  process it names. */
+    static final long STALE_AGE = 10 * 60 * 1000;
+
+    /** Returns a lock, shared if SHARED, on the repository whose .gitlet
+     *  directory is GITLETDIR, recorded as held for COMMAND and waiting
+     *  as long as the timeout allows. Throws IllegalArgumentException if
+     *  the lock is not had in that time. */
+    static RepositoryLock acquire(File gitletDir, boolean shared,
+                                  String command) {
+        return acquire(gitletDir, shared, command,
+                Long.getLong("gitlet.lockTimeout", TIMEOUT));
+    }
+
+    /** As acquire(GITLETDIR, SHARED, COMMAND), waiting at most TIMEOUT
+     *  milliseconds. */
+    static RepositoryLock acquire(File gitletDir, boolean shared,
+                                  String command, long timeout) {
+        File key = gitletDir.getAbsoluteFile();
+        long deadline = System.currentTimeMillis() + timeout;
+        long pause = 1;
+        while (true) {
+            synchronized (HELD) {
+                Holder holder = HELD.get(key);
+                if (holder == null) {
+                    holder = Holder.tryLock(key, shared, command);
+                    if (holder != null) {
+                        HELD.put(key, holder);
+                        return new RepositoryLock(key, holder);
+                    }
+                } else if (shared && holder._shared) {
+                    holder._count += 1;
+                    return new RepositoryLock(key, holder);
+                }
+                if (System.currentTimeMillis() >= deadline) {
+                    throw new IllegalArgumentException(
+                            "Timed out waiting for the repository lock"
+                            + owner(key) + ".");
+                }
+                try {
+                    HELD.wait(pause);
+                } catch (InterruptedException excp) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalArgumentException(excp.getMessage());
+                }
+            }
+            pause = Math.min(2 * pause, MAX_PAUSE);
+        }
+    }
+
+    /** Returns true if this lock is shared. */
+    boolean isShared() {
+        return _holder._shared;
+    }
+
+    /** Releases this lock. Closing it again does nothing. */
+    @Override
+    public void close() {
+        synchronized (HELD) {
+            if (_closed) {
+                return;
+            }
+            _closed = true;
+            _holder._count -= 1;
+            if (_holder._count == 0) {
+                HELD.remove(_key);
+                _holder.release();
+                HELD.notifyAll();
+            }
+        }
+    }
+
+    /** A lock on the repository whose .gitlet directory is KEY, counted
+     *  in HOLDER. */
+    private RepositoryLock(File key, Holder holder) {
+        _key = key;
+        _holder = holder;
+    }
+
+    /** A lock this JVM holds on a repository, and the number of
+     *  RepositoryLocks sharing it. */
+    private static final class Holder {
+
+        /** Returns the lock, shared if SHARED, on the repository whose
+         *  .gitlet directory is GITLETDIR, held for COMMAND, or null if
+         *  another process has it. */
+        static Holder tryLock(File gitletDir, boolean shared,
+                              String command) {
+            File file = new File(gitletDir, FILE_NAME);
+            FileChannel channel = null;
+            try {
+                channel = FileChannel.open(file.toPath(),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                FileLock lock;
+                try {
+                    lock = channel.tryLock(LOCK_POSITION, 1, shared);
+                } catch (IOException excp) {
+                    channel.close();
+                    return tryPidFile(gitletDir, command);
+                }
+                if (lock == null) {
+                    channel.close();
+                    return null;
+                }
+                if (!shared) {
+                    channel.truncate(0);
+                    channel.write(ByteBuffer.wrap(
+                            record(command).getBytes(
+                                    StandardCharsets.UTF_8)), 0);
+                }
+                return new Holder(shared, channel, null);
+            } catch (IOException excp) {
+                close(channel);
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+
+        /** Returns the lock on the repository whose .gitlet directory is
+         *  GITLETDIR, held for COMMAND, by creating its lock.pid file,
+         *  or null if a live process has the file. A stale file is
+         *  removed first. */
+        static Holder tryPidFile(File gitletDir, String command)
+            throws IOException {
+            File file = new File(gitletDir, PID_FILE_NAME);
+            for (int attempt = 0; attempt < 2; attempt += 1) {
+                try {
+                    Files.write(file.toPath(),
+                            record(command).getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.CREATE_NEW,
+                            StandardOpenOption.WRITE);
+                    return new Holder(false, null, file);
+                } catch (FileAlreadyExistsException excp) {
+                    if (!isStale(file)) {
+                        return null;
+                    }
+                    file.delete();
+                }
+            }
+            return null;
+        }
+
+        /** Releases the lock. */
+        void release() {
+            if (_channel != null) {
+                if (!_shared) {
+                    try {
+                        _channel.truncate(0);
+                    } catch (IOException excp) {
+                        /* Only the record is lost. */
+                    }
+                }
+                close(_channel);
+            } else {
+                _pidFile.delete();
+            }
+        }
+
+        /** A lock, shared if SHARED, held through CHANNEL or else by
+         *  having created PIDFILE. */
+        private Holder(boolean shared, FileChannel channel, File pidFile) {
+            _shared = shared;
+            _channel = channel;
+            _pidFile = pidFile;
+        }
+
+        /** True if the lock is shared. */
+        private final boolean _shared;
+        /** The channel whose lock is held, or null. */
+        private final FileChannel _channel;
+        /** The lock.pid file created, or null. */
+        private final File _pidFile;
+        /** Number of open RepositoryLocks on this. */
+        private int _count = 1;
+    }
+
+    /** Returns the record of this process holding the lock for COMMAND:
+     *  its process id, host and command. */
+    private static String record(String command) {
+        return ProcessHandle.current().pid() + " " + host() + " "
+            + command + "\n";
+    }
+
+    /** Returns the name of this host. */
+    private static String host() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        return name.substring(name.indexOf('@') + 1);
+    }
+
+    /** Returns true if the lock.pid file FILE is stale: older than
+     *  STALE_AGE, or naming a process of this host that has ended. */
+    private static boolean isStale(File file) {
+        if (System.currentTimeMillis() - file.lastModified() > STALE_AGE) {
+            return true;
+        }
+        String[] words = readRecord(file);
+        if (words.length < 2 || !words[1].equals(host())) {
+            return false;
+        }
+        try {
+            return ProcessHandle.of(Long.parseLong(words[0])).isEmpty();
+        } catch (NumberFormatException excp) {
+            return false;
+        }
+    }
+
+    /** Returns a description of who holds the lock on the repository
+     *  whose .gitlet directory is GITLETDIR, for a message, or the empty
+     *  string if that is unknown. */
+    private static String owner(File gitletDir) {
+        File pidFile = new File(gitletDir, PID_FILE_NAME);
+        String[] words = readRecord(pidFile.isFile() ? pidFile
+                : new File(gitletDir, FILE_NAME));
+        if (words.length < 3) {
+            return "";
+        }
+        return ", held by process " + words[0] + " on " + words[1]
+            + " running " + words[2];
+    }
+
+    /** Returns the process id, host and command recorded in lock file
+     *  FILE, or fewer words if it holds no record. */
+    private static String[] readRecord(File file) {
+        try {
+            String record = new String(Files.readAllBytes(file.toPath()),
+                    StandardCharsets.UTF_8).trim();
+            return record.isEmpty() ? new String[0]
+                : record.split(" ", 3);
+        } catch (IOException excp) {
+            return new String[0];
+        }
+    }
+
+    /** Closes CHANNEL, if it is not null, ignoring failures. */
+    private static void close(FileChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException excp) {
+                /* Closing releases the lock whether or not it fails. */
+            }
+        }
+    }
+
+    /** The byte locked, past any record, so that on systems where locks
+     *  are mandatory the record can still be read. */
+    private static final long LOCK_POSITION = Long.MAX_VALUE - 1;
+
+    /** Longest pause, in milliseconds, between attempts. A lock released
+     *  within this JVM wakes its waiters at once; the pause bounds how
+     *  late a release by another process is noticed. */
+    private static final long MAX_PAUSE = 100;
+
+    /** The locks this JVM holds, by .gitlet directory. */
+    private static final HashMap<File, Holder> HELD = new HashMap<>();
+
+    /** The .gitlet directory locked. */
+    private final File _key;
+    /** The lock this shares. */
+    private final Holder _holder;
+    /** True once closed. */
+    private boolean _closed;
+}
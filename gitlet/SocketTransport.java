@@ -0,0 +1,202 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** A transport to a repository served by a gitlet daemon, named by a
+ *  URL gitlet://HOST:PORT/PATH. Requests and answers are frames: a
+ *  length as an int followed by that many bytes of UTF-8 text, a word
+ *  naming the request and its operands separated by spaces. An empty
+ *  frame ends a list. Packs follow their request frame as raw pack
+ *  streams. Rounds of haves are written without waiting for their
+ *  acknowledgements, which are read back in order later.
+ *  @author Jay Chiang
+ */
+class SocketTransport implements Transport {
+
+    /** Scheme of daemon URLs. */
+    static final String SCHEME = "gitlet";
+    /** Port the daemon listens on by default. */
+    static final int DEFAULT_PORT = 9418;
+    /** Largest frame accepted. */
+    static final int MAX_FRAME = 1 << 20;
+
+    /** A transport to the repository named by URL, which is connected
+     *  to at once. Throws IOException if the daemon cannot be reached or
+     *  does not serve that repository. */
+    SocketTransport(URI url) throws IOException {
+        int port = url.getPort() < 0 ? DEFAULT_PORT : url.getPort();
+        _socket = new Socket(url.getHost(), port);
+        _socket.setTcpNoDelay(true);
+        _in = new DataInputStream(new BufferedInputStream(
+                _socket.getInputStream(), BUFFER_SIZE));
+        _out = new DataOutputStream(new BufferedOutputStream(
+                _socket.getOutputStream(), BUFFER_SIZE));
+        writeFrame(_out, "repo " + url.getPath());
+        _out.flush();
+        String reply = readFrame(_in);
+        if (!"ok".equals(reply)) {
+            _socket.close();
+            throw new IOException(reply == null ? "connection closed" : reply);
+        }
+    }
+
+    @Override
+    public Map<String, String> branches() throws IOException {
+        writeFrame(_out, "branches");
+        _out.flush();
+        TreeMap<String, String> result = new TreeMap<>();
+        for (String line = expect(); !line.isEmpty(); line = expect()) {
+            int space = line.indexOf(' ');
+            result.put(line.substring(space + 1), line.substring(0, space));
+        }
+        return result;
+    }
+
+    @Override
+    public void sendHaves(List<String> haves) throws IOException {
+        writeFrame(_out, "have " + String.join(" ", haves));
+        _out.flush();
+    }
+
+    @Override
+    public List<String> receiveAcks() throws IOException {
+        return words(expect(), "ack");
+    }
+
+    @Override
+    public int fetch(Collection<String> wants, Collection<String> common,
+                     boolean withBlobs, File commitDir, File blobDir)
+        throws IOException {
+        writeFrame(_out, "want " + String.join(" ", wants));
+        writeFrame(_out, "common " + String.join(" ", common));
+        if (!withBlobs) {
+            writeFrame(_out, "filter " + NO_BLOBS);
+        }
+        writeFrame(_out, "done");
+        _out.flush();
+        return Pack.read(_in, commitDir, blobDir);
+    }
+
+    /** Asks for BLOBS in requests of at most BLOB_BATCH UIDs, so that
+     *  no frame passes MAX_FRAME. Up to BLOB_WINDOW requests are in
+     *  flight while the pack answering the first is read. */
+    @Override
+    public int fetchBlobs(Collection<String> blobs, File commitDir,
+                          File blobDir) throws IOException {
+        List<String> uIDs = new ArrayList<>(blobs);
+        int sent = 0;
+        int result = 0;
+        for (int read = 0; read < uIDs.size(); read += BLOB_BATCH) {
+            for (; sent < uIDs.size()
+                     && sent < read + BLOB_WINDOW * BLOB_BATCH;
+                 sent += BLOB_BATCH) {
+                writeFrame(_out, "blobs " + String.join(" ", uIDs.subList(
+                        sent, Math.min(sent + BLOB_BATCH, uIDs.size()))));
+            }
+            _out.flush();
+            result += Pack.read(_in, commitDir, blobDir);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean push(Pack pack, String branch, String oldUID,
+                        String newUID) throws IOException {
+        writeFrame(_out, "push " + branch + " "
+                + (oldUID == null ? NO_COMMIT : oldUID) + " " + newUID);
+        pack.write(_out);
+        _out.flush();
+        String reply = expect();
+        if (reply.startsWith(ERROR)) {
+            throw new GitletException(reply.substring(ERROR.length()));
+        }
+        return reply.equals("ok");
+    }
+
+    @Override
+    public void close() throws IOException {
+        _socket.close();
+    }
+
+    /** Returns the next frame, failing if the connection has closed. */
+    private String expect() throws IOException {
+        String frame = readFrame(_in);
+        if (frame == null) {
+            throw new EOFException("connection closed");
+        }
+        return frame;
+    }
+
+    /** Writes TEXT to OUT as one frame. */
+    static void writeFrame(DataOutputStream out, String text)
+        throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Returns the text of the next frame of IN, or null if IN ends
+     *  before one starts. */
+    static String readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException excp) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("bad frame");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the operands of FRAME, which must be request REQUEST. */
+    static List<String> words(String frame, String request)
+        throws IOException {
+        List<String> result = new ArrayList<>(Arrays.asList(frame.split(" ")));
+        if (!result.get(0).equals(request)) {
+            throw new IOException("expected " + request + ": " + frame);
+        }
+        result.remove(0);
+        return result;
+    }
+
+    /** Stands for a missing commit in a push request. */
+    static final String NO_COMMIT = "-";
+    /** The start of a reply refusing a request, followed by why. */
+    static final String ERROR = "error ";
+    /** The filter asking for a pack without blobs. */
+    static final String NO_BLOBS = "blob:none";
+
+    /** Most blob UIDs asked for in one frame, about 40 kilobytes. */
+    static final int BLOB_BATCH = 1000;
+    /** Most blob requests in flight at once. */
+    static final int BLOB_WINDOW = 2;
+
+    /** Size of the buffers around the socket. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The connection to the daemon. */
+    private final Socket _socket;
+    /** Frames and packs from the daemon. */
+    private final DataInputStream _in;
+    /** Frames and packs to the daemon. */
+    private final DataOutputStream _out;
+}
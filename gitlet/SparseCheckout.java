@@ -0,0 +1,112 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.InvalidPathException;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+/** The paths of the working directory that commands read and write. A
+ *  sparse checkout is a list of glob patterns, one per line of a file in
+ *  .gitlet; a path belongs to it if any pattern matches. Commits still
+ *  track every path, but checkout, reset and merge leave the files of
+ *  paths outside it unwritten and status does not report them missing,
+ *  so the cost of each scales with the paths selected rather than the
+ *  whole commit. Without the file every path belongs.
+ *  @author Jay Chiang
+ */
+final class SparseCheckout {
+
+    /** Name of the file in .gitlet holding the patterns. */
+    static final String FILE_NAME = "sparse-checkout.txt";
+
+    /** The sparse checkout whose patterns are kept in FILE. */
+    SparseCheckout(File file) {
+        this(file, file.isFile()
+             ? List.of(Utils.readContentsAsString(file).split("\n"))
+             : List.of());
+    }
+
+    /** A sparse checkout of PATTERNS, kept in FILE; none selects every
+     *  path. Patterns that are not valid globs are left out. */
+    private SparseCheckout(File file, List<String> patterns) {
+        _file = file;
+        _patterns = new ArrayList<>();
+        _matchers = new ArrayList<>();
+        for (String pattern : patterns) {
+            PathMatcher matcher = matcher(pattern);
+            if (!pattern.isBlank() && matcher != null) {
+                _patterns.add(pattern);
+                _matchers.add(matcher);
+            }
+        }
+    }
+
+    /** Returns true if PATTERN is a glob a sparse checkout can use. */
+    static boolean isValid(String pattern) {
+        return !pattern.isBlank() && !pattern.contains("\n")
+            && matcher(pattern) != null;
+    }
+
+    /** Returns a matcher for glob PATTERN, or null if it is not one. */
+    private static PathMatcher matcher(String pattern) {
+        try {
+            return FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        } catch (PatternSyntaxException excp) {
+            return null;
+        }
+    }
+
+    /** Returns the sparse checkout of PATTERNS kept in the same file as
+     *  this one, without saving it. */
+    SparseCheckout with(List<String> patterns) {
+        return new SparseCheckout(_file, patterns);
+    }
+
+    /** Returns true if only some paths belong. */
+    boolean isSparse() {
+        return !_patterns.isEmpty();
+    }
+
+    /** Returns the patterns, in the order given. */
+    List<String> patterns() {
+        return _patterns;
+    }
+
+    /** Returns true if PATH belongs to this sparse checkout. */
+    boolean includes(String path) {
+        if (_matchers.isEmpty()) {
+            return true;
+        }
+        try {
+            for (PathMatcher matcher : _matchers) {
+                if (matcher.matches(Paths.get(path))) {
+                    return true;
+                }
+            }
+        } catch (InvalidPathException excp) {
+            return false;
+        }
+        return false;
+    }
+
+    /** Writes the patterns to the file, or deletes it if there are
+     *  none. */
+    void save() {
+        if (_patterns.isEmpty()) {
+            _file.delete();
+        } else {
+            Utils.writeContents(_file, String.join("\n", _patterns) + "\n");
+        }
+    }
+
+    /** Where the patterns are kept. */
+    private final File _file;
+    /** The patterns. */
+    private final List<String> _patterns;
+    /** A matcher for each pattern. */
+    private final List<PathMatcher> _matchers;
+}
@@ -15,28 +15,30 @@ public class StagingArea implements Serializable {
     }
 
     /** stage NAME and UID for addition. */
-    public void addFileForAddition(String name, String uID) {
+    public void addFileForAddition(String name, ObjectId uID) {
         stageAddition.put(name, uID);
     }
 
     /** stage NAME and UID for removal. */
-    public void addFileForRemoval(String name, String uID) {
+    public void addFileForRemoval(String name, ObjectId uID) {
         stageRemoval.put(name, uID);
     }
 
     /** returns stage for addition. */
-    public HashMap<String, String> getStageAddition() {
+    public HashMap<String, ObjectId> getStageAddition() {
         return stageAddition;
     }
 
     /** returns stage for removal. */
-    public HashMap<String, String> getStageRemoval() {
+    public HashMap<String, ObjectId> getStageRemoval() {
         return stageRemoval;
     }
 
     /** stage for addition. */
-    private HashMap<String, String> stageAddition;
+    private HashMap<String, ObjectId> stageAddition;
     /** stage for removal. */
-    private HashMap<String, String>  stageRemoval;
+    private HashMap<String, ObjectId>  stageRemoval;
 
+    /** Version of the serialized stage. */
+    private static final long serialVersionUID = 1L;
 }
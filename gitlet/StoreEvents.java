@@ -0,0 +1,243 @@
+package gitlet;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Java Flight Recorder events for the reads and writes of the object
+ *  store, the branches and the stage, and for scans of the working
+ *  directory. Utils raises the store events from its file I/O, telling
+ *  them apart by the directory a file is in, so every read or write of
+ *  a commit, blob, branch or the stage is covered wherever it happens.
+ *  Files written under a temporary name and moved into place are not
+ *  classified; whoever moves them raises the event for the real object
+ *  or ref instead: Pack and ObjectLinker for the objects that fetch,
+ *  push and clone store, and Git.moveBranch and LocalTransport for
+ *  branch moves.
+ *  Events are recorded only while a recording enabling them runs, e.g.
+ *  under java -XX:StartFlightRecording=filename=gitlet.jfr, and the
+ *  jfr-summary command summarizes a recording.
+ *  @author Jay Chiang
+ */
+class StoreEvents {
+
+    /** Prefix of the names of these events. */
+    static final String PREFIX = "gitlet.";
+
+    /** Returns an event, begun, for reading FILE, or null if FILE is not
+     *  a commit or blob. */
+    static Timed reading(File file) {
+        String kind = kind(file);
+        if (kind == null) {
+            return null;
+        }
+        ObjectRead event = new ObjectRead();
+        event.begin();
+        event.kind = kind;
+        event.file = file;
+        return event;
+    }
+
+    /** Returns an event, begun, for writing FILE, or null if FILE is not
+     *  a commit, blob, branch or the stage, or is a temporary file. */
+    static Timed writing(File file) {
+        if (file.getName().endsWith(".tmp")) {
+            return null;
+        }
+        String kind = kind(file);
+        Timed event;
+        if (kind != null) {
+            ObjectWrite write = new ObjectWrite();
+            write.kind = kind;
+            event = write;
+        } else if (ref(file) != null) {
+            event = new RefUpdate();
+        } else if (isIn(file, "stage")) {
+            event = new StageWrite();
+        } else {
+            return null;
+        }
+        event.begin();
+        event.file = file;
+        return event;
+    }
+
+    /** Returns an event, begun, for pointing REF, a branch named as
+     *  REMOTE/BRANCH if it is remote-tracking, at another commit. */
+    static Timed updatingRef(String ref) {
+        RefUpdate event = new RefUpdate();
+        event.begin();
+        event.ref = ref;
+        return event;
+    }
+
+    /** An event timing one operation on a file of BYTES bytes. */
+    @Category("Gitlet")
+    @StackTrace(false)
+    abstract static class Timed extends Event {
+
+        /** Ends this event and records it, with size SIZE, if it is
+         *  enabled and slow enough; CONTENTS are what was written, or
+         *  empty for a read. */
+        void finish(long size, Object... contents) {
+            end();
+            if (shouldCommit()) {
+                bytes = size;
+                describe(contents);
+                commit();
+            }
+        }
+
+        /** Fills in the fields particular to this event from its file and
+         *  CONTENTS, which are empty for a read. */
+        abstract void describe(Object... contents);
+
+        /** The file operated on; not recorded. */
+        protected transient File file;
+
+        /** Bytes read or written. */
+        @Label("Size")
+        @DataAmount
+        protected long bytes;
+    }
+
+    /** Reading a commit or blob. */
+    @Name(PREFIX + "ObjectRead")
+    @Label("Object Read")
+    @Description("A commit or blob read from the object store")
+    static class ObjectRead extends Timed {
+
+        @Override
+        void describe(Object... contents) {
+            id = id(file);
+        }
+
+        /** "commit" or "blob". */
+        @Label("Kind")
+        protected String kind;
+
+        /** UID of the object. */
+        @Label("Object ID")
+        protected String id;
+    }
+
+    /** Writing a commit or blob. */
+    @Name(PREFIX + "ObjectWrite")
+    @Label("Object Write")
+    @Description("A commit or blob written to the object store")
+    static class ObjectWrite extends Timed {
+
+        @Override
+        void describe(Object... contents) {
+            id = id(file);
+        }
+
+        /** "commit" or "blob". */
+        @Label("Kind")
+        protected String kind;
+
+        /** UID of the object. */
+        @Label("Object ID")
+        protected String id;
+    }
+
+    /** Pointing a branch, or HEAD, somewhere. */
+    @Name(PREFIX + "RefUpdate")
+    @Label("Ref Update")
+    @Description("A branch, remote-tracking branch or HEAD written")
+    static class RefUpdate extends Timed {
+
+        @Override
+        void describe(Object... contents) {
+            if (ref == null) {
+                ref = ref(file);
+            }
+            if (contents.length == 1 && contents[0] instanceof String) {
+                target = (String) contents[0];
+            }
+        }
+
+        /** Name of the branch, or "head". */
+        @Label("Ref")
+        protected String ref;
+
+        /** What the ref now holds: a commit UID or, for HEAD, a branch. */
+        @Label("Target")
+        protected String target;
+    }
+
+    /** Writing the stage. */
+    @Name(PREFIX + "StageWrite")
+    @Label("Stage Write")
+    @Description("The staging area written")
+    static class StageWrite extends Timed {
+
+        @Override
+        void describe(Object... contents) {
+        }
+    }
+
+    /** Hashing or comparing the files of the working directory. */
+    @Name(PREFIX + "WorkTreeScan")
+    @Label("Working Tree Scan")
+    @Description("Files of the working directory compared with a commit")
+    @Category("Gitlet")
+    @StackTrace(false)
+    static class WorkTreeScan extends Event {
+
+        /** Files looked at. */
+        @Label("Files")
+        int files;
+
+        /** Bytes read, where the files were read. */
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    /** Returns "commit" or "blob" if FILE is in the commits or blobs
+     *  directory of a .gitlet directory, and otherwise null. */
+    private static String kind(File file) {
+        if (isIn(file, "commits")) {
+            return "commit";
+        } else if (isIn(file, "blobs")) {
+            return "blob";
+        }
+        return null;
+    }
+
+    /** Returns the branch FILE holds, as REMOTE/BRANCH for a
+     *  remote-tracking branch, or null if FILE is not a branch. */
+    private static String ref(File file) {
+        if (isIn(file, "branches")) {
+            return id(file);
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && isIn(parent, "branches")) {
+            return parent.getName() + "/" + id(file);
+        }
+        return null;
+    }
+
+    /** Returns true if FILE is directly in directory DIR of a .gitlet
+     *  directory. */
+    private static boolean isIn(File file, String dir) {
+        File parent = file.getAbsoluteFile().getParentFile();
+        return parent != null && parent.getName().equals(dir)
+            && parent.getParentFile() != null
+            && parent.getParentFile().getName().equals(".gitlet");
+    }
+
+    /** Returns the name of FILE without its .txt extension. */
+    private static String id(File file) {
+        String name = file.getName();
+        return name.endsWith(".txt")
+            ? name.substring(0, name.length() - ".txt".length()) : name;
+    }
+}
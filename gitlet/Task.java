@@ -0,0 +1,87 @@
+package gitlet;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/** An operation AsyncRepository is running, which commands report their
+ *  progress to and which may be cancelled. Commands mark checkpoints
+ *  where they can stop without leaving a trace that matters: the
+ *  commits and blobs they may have written by then are named by their
+ *  contents and reached from nothing, so gc removes them, and a
+ *  checkout that has begun rewriting files puts them back. Each command
+ *  also marks the point past which it must finish, just before it
+ *  moves a branch or deletes anything; after that the task can no
+ *  longer be cancelled. On a thread that is running no task, as in
+ *  every command run from Main, all of this costs one ThreadLocal
+ *  lookup.
+ *  @author Jay Chiang
+ */
+final class Task {
+
+    /** A task that reports its progress to LISTENER, which may be
+     *  null. */
+    Task(AsyncRepository.Progress listener) {
+        _listener = listener;
+    }
+
+    /** Returns the value of ACTION, run on this thread as this task. */
+    <T> T run(Supplier<T> action) {
+        Task outer = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(outer);
+        }
+    }
+
+    /** Asks this task to stop at its next checkpoint. Returns false if
+     *  it is already past the point where it must finish. */
+    boolean cancel() {
+        return _state.compareAndSet(RUNNING, CANCELLED)
+            || _state.get() == CANCELLED;
+    }
+
+    /** Throws CancellationException if the current task is cancelled. */
+    static void checkpoint() {
+        Task task = CURRENT.get();
+        if (task != null && task._state.get() == CANCELLED) {
+            throw new CancellationException();
+        }
+    }
+
+    /** Marks that the current task must now run to the end, or throws
+     *  CancellationException if it was cancelled first. */
+    static void finishing() {
+        Task task = CURRENT.get();
+        if (task != null && !task._state.compareAndSet(RUNNING, FINISHING)
+                && task._state.get() == CANCELLED) {
+            throw new CancellationException();
+        }
+    }
+
+    /** Reports to the current task, if it has a listener, that DONE of
+     *  TOTAL steps of PHASE are done. TOTAL is -1 if it is unknown. */
+    static void progress(String phase, long done, long total) {
+        Task task = CURRENT.get();
+        if (task != null && task._listener != null) {
+            task._listener.update(phase, done, total);
+        }
+    }
+
+    /** State of a task that may still be cancelled. */
+    private static final int RUNNING = 0;
+    /** State of a cancelled task. */
+    private static final int CANCELLED = 1;
+    /** State of a task that must finish. */
+    private static final int FINISHING = 2;
+
+    /** The task the current thread is running, if any. */
+    private static final ThreadLocal<Task> CURRENT = new ThreadLocal<>();
+
+    /** Where progress is reported, or null. */
+    private final AsyncRepository.Progress _listener;
+    /** RUNNING, CANCELLED or FINISHING. */
+    private final AtomicInteger _state = new AtomicInteger(RUNNING);
+}
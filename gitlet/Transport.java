@@ -0,0 +1,51 @@
+package gitlet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/** A connection to another repository, through which commits are
+ *  fetched and pushed as packs.
+ *  @author Jay Chiang
+ */
+interface Transport extends Closeable {
+
+    /** Returns the branches of the remote repository, each mapped to the
+     *  UID of its head commit. */
+    Map<String, String> branches() throws IOException;
+
+    /** Offers the remote repository the commits HAVES, without waiting
+     *  for its answer, so that several rounds may be in flight at once.
+     *  The answer is read by receiveAcks. */
+    void sendHaves(List<String> haves) throws IOException;
+
+    /** Returns those of the commits in the oldest round of haves sent and
+     *  not yet answered that the remote repository has, in the same
+     *  order. */
+    List<String> receiveAcks() throws IOException;
+
+    /** Fetches from the remote repository the pack of everything
+     *  reachable from WANTS but not from COMMON, and stores its objects
+     *  in COMMITDIR and BLOBDIR. Unless WITHBLOBS, the pack holds the
+     *  commits only. Returns the number of objects stored. */
+    int fetch(Collection<String> wants, Collection<String> common,
+              boolean withBlobs, File commitDir, File blobDir)
+        throws IOException;
+
+    /** Fetches those of the blobs BLOBS that the remote repository has,
+     *  as one pack, and stores them in BLOBDIR. COMMITDIR is where any
+     *  commits would go. Returns the number of blobs stored. */
+    int fetchBlobs(Collection<String> blobs, File commitDir, File blobDir)
+        throws IOException;
+
+    /** Sends PACK to the remote repository, then moves its branch BRANCH
+     *  from commit OLDUID (null if BRANCH does not exist) to NEWUID.
+     *  Returns false, leaving BRANCH alone, if BRANCH was no longer at
+     *  OLDUID. Throws GitletException, with the remote's reason, if the
+     *  remote refused the push for any other reason. */
+    boolean push(Pack pack, String branch, String oldUID, String newUID)
+        throws IOException;
+}
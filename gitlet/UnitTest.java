@@ -3,7 +3,32 @@ package gitlet;
 import ucb.junit.textui;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.junit.Assert.*;
 
@@ -47,10 +72,10 @@ public class UnitTest {
         Git git = new Git();
         git.init();
         git.commit("yee");
-        assertTrue(true);
-        git.reset("84d15b085b99b7ba8af8b477adeb2e41e935cfe9");
+        String initial = initialCommit(git);
+        git.reset(initial);
+        assertEquals(initial, git.getCurrCommit().getUID());
         git.find("initial commit");
-        assertTrue(true);
     }
     /** A dummy test to avoid complaint. */
     @Test
@@ -58,7 +83,7 @@ public class UnitTest {
         Git git = new Git();
         git.init();
         git.commit("hahahaha");
-        git.reset("84d15b085b99b7ba8af8b477adeb2e41e935cfe9");
+        git.reset(initialCommit(git));
         git.find("what can't find this");
         git.branch("b1");
         git.branch("b2");
@@ -68,6 +93,884 @@ public class UnitTest {
         assertTrue(true);
     }
 
-}
+    /** Returns the UID of the initial commit of GIT's current branch. */
+    private static String initialCommit(Git git) {
+        Commit commit = git.getCurrCommit();
+        while (commit.getParentUID() != null) {
+            commit = Utils.readObject(new File(System.getProperty("user.dir"),
+                    ".gitlet/commits/" + commit.getParentUID() + ".txt"),
+                    Commit.class);
+        }
+        return commit.getUID();
+    }
+
+    /** A repository of another format version is refused with a message
+     *  rather than failing to deserialize. */
+    @Test
+    public void formatVersion() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository.init(dir);
+        File format = new File(dir, ".gitlet/" + Git.FORMAT_FILE);
+        assertEquals(Git.FORMAT_VERSION + "\n",
+                Utils.readContentsAsString(format));
+        assertNull(Git.formatError(new File(dir, ".gitlet")));
+        format.delete();
+        try {
+            Repository.open(dir);
+            fail("opened a version 1 repository");
+        } catch (GitletException excp) {
+            assertEquals("This repository uses gitlet format 1, but this "
+                    + "gitlet reads only format " + Git.FORMAT_VERSION
+                    + ". Re-create it with this version of gitlet.",
+                    excp.getMessage());
+        }
+    }
+
+    /** Switching branches leaves files whose blob is unchanged alone. */
+    @Test
+    public void checkoutKeepsUnchangedFiles() throws IOException {
+        File cwd = Files.createTempDirectory("gitlet").toFile();
+        Git git = new Git(cwd, System.out);
+        git.init();
+        File same = new File(cwd, "same.txt");
+        File changed = new File(cwd, "changed.txt");
+        Utils.writeContents(same, "same\n");
+        Utils.writeContents(changed, "one\n");
+        git.add("same.txt");
+        git.add("changed.txt");
+        git.commit("add same.txt and changed.txt");
+        git.branch("before-change");
+        Utils.writeContents(changed, "two\n");
+        git.add("changed.txt");
+        git.commit("change changed.txt");
+        assertTrue(same.setLastModified(1000000L));
+        git.checkout("checkout", "before-change");
+        assertEquals(1000000L, same.lastModified());
+        assertEquals("one\n", Utils.readContentsAsString(changed));
+    }
+
+    /** Returns a merge-base graph over PARENTS, where commit I is named
+     *  by I and has parents PARENTS[I]. */
+    private static MergeBase.Graph graph(int[][] parents) {
+        int[] generations = new int[parents.length];
+        for (int i = 0; i < parents.length; i += 1) {
+            for (int p : parents[i]) {
+                generations[i] = Math.max(generations[i], generations[p]);
+            }
+            generations[i] += 1;
+        }
+        return new MergeBase.Graph() {
+            @Override
+            public String[] parents(String uID) {
+                int[] ps = parents[Integer.parseInt(uID)];
+                String[] result = new String[ps.length];
+                for (int i = 0; i < ps.length; i += 1) {
+                    result[i] = Integer.toString(ps[i]);
+                }
+                return result;
+            }
+
+            @Override
+            public int generation(String uID) {
+                return generations[Integer.parseInt(uID)];
+            }
+        };
+    }
+
+    /** Criss-cross histories have two best common ancestors. */
+    @Test
+    public void mergeBaseCrissCross() {
+        int[][] parents = {
+            {}, {0}, {0}, {1, 2}, {2, 1}, {3}, {4}
+        };
+        MergeBase engine = new MergeBase(graph(parents));
+        List<String> bases = engine.mergeBases("5", "6");
+        assertEquals(2, bases.size());
+        assertTrue(bases.contains("1") && bases.contains("2"));
+        assertEquals(bases, engine.mergeBases("3", "4"));
+        assertEquals(List.of("1"), engine.mergeBases("1", "5"));
+        assertTrue(engine.isAncestor("2", "6"));
+        assertFalse(engine.isAncestor("5", "6"));
+    }
+
+    /** Returns the line-by-line merge of OURS and THEIRS against BASE,
+     *  followed by "!" if it conflicts. */
+    private static String merge3(String base, String ours, String theirs) {
+        StringWriter out = new StringWriter();
+        try {
+            boolean conflict = LineMerge.merge(Diff.lines(base),
+                    Diff.lines(ours), Diff.lines(theirs), out);
+            return out + (conflict ? "!" : "");
+        } catch (IOException excp) {
+            throw new AssertionError(excp);
+        }
+    }
+
+    /** Changes to separate lines merge; overlapping ones are marked. */
+    @Test
+    public void lineMerge() {
+        String base = "a\nb\nc\nd\ne\n";
+        assertEquals("A\nb\nc\nd\nE\n",
+                merge3(base, "A\nb\nc\nd\ne\n", "a\nb\nc\nd\nE\n"));
+        assertEquals("a\nb\nC\nd\ne\n",
+                merge3(base, "a\nb\nC\nd\ne\n", "a\nb\nC\nd\ne\n"));
+        assertEquals("a\n<<<<<<< HEAD\nB\n=======\nX\n>>>>>>>\nc\nd\nE\n!",
+                merge3(base, "a\nB\nc\nd\ne\n", "a\nX\nc\nd\nE\n"));
+        assertEquals("<<<<<<< HEAD\nx\n=======\ny\n>>>>>>>\n!",
+                merge3("", "x\n", "y\n"));
+    }
+
+    /** Diffs of large inputs stay small and correct. */
+    @Test
+    public void diffLarge() {
+        String[] a = new String[100000];
+        String[] b = new String[100000];
+        for (int i = 0; i < a.length; i += 1) {
+            a[i] = i + "\n";
+            b[i] = i % 1000 == 0 ? "changed\n" : a[i];
+        }
+        List<Diff.Edit> edits = Diff.diff(a, b);
+        assertEquals(100, edits.size());
+        for (Diff.Edit edit : edits) {
+            assertEquals(1, edit.endA - edit.beginA);
+            assertEquals(1, edit.endB - edit.beginB);
+        }
+    }
+
+    /** Each edited, moved file is paired with its new name, exact copies
+     *  first, and unrelated files are left alone. */
+    @Test
+    public void renameDetection() throws IOException {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        try {
+            detectRenames(new File(dir, "blobs"), new File(dir, "signatures"));
+        } finally {
+            deleteTree(dir);
+        }
+    }
+
+    /** Checks the renames found among 500 edited files whose blobs are
+     *  stored in BLOBDIR, with signatures cached in SIGNATUREDIR. */
+    private static void detectRenames(File blobDir, File signatureDir) {
+        blobDir.mkdir();
+        HashMap<String, ObjectId> from = new HashMap<>();
+        HashMap<String, ObjectId> to = new HashMap<>();
+        for (int f = 0; f < 500; f += 1) {
+            StringBuilder old = new StringBuilder();
+            StringBuilder edited = new StringBuilder();
+            for (int line = 0; line < 10; line += 1) {
+                old.append(f).append(' ').append(line).append('\n');
+                edited.append(f).append(' ').append(line == 3 ? -1 : line)
+                    .append('\n');
+            }
+            from.put("old" + f, blob(blobDir, old.toString()));
+            to.put("new" + f, blob(blobDir, f == 0 ? old.toString()
+                    : edited.toString()));
+        }
+        to.put("unrelated", blob(blobDir, "nothing\nin\ncommon\n"));
+        List<RenameDetector.Rename> renames =
+            new RenameDetector(blobDir, signatureDir).detect(from, to);
+        assertEquals(500, renames.size());
+        for (RenameDetector.Rename rename : renames) {
+            assertEquals(rename.from.substring(3), rename.to.substring(3));
+            assertTrue(rename.score >= RenameDetector.MIN_SCORE);
+        }
+        assertEquals(100, renames.get(0).score);
+    }
+
+    /** A pack holds only what is missing past the common commits, and
+     *  reading it into an empty store brings all of that across. */
+    @Test
+    public void packBetween() throws IOException {
+        File cwd = Files.createTempDirectory("gitlet").toFile();
+        Git git = new Git(cwd, System.out);
+        git.init();
+        Utils.writeContents(new File(cwd, "pack1.txt"), "one\n");
+        git.add("pack1.txt");
+        git.commit("add pack1.txt");
+        Commit common = git.getCurrCommit();
+        Utils.writeContents(new File(cwd, "pack2.txt"), "two\n");
+        git.add("pack2.txt");
+        git.commit("add pack2.txt");
+        Commit head = git.getCurrCommit();
+        File commitDir = new File(cwd, ".gitlet/commits");
+        File blobDir = new File(cwd, ".gitlet/blobs");
+        Pack pack = Pack.between(commitDir, blobDir,
+                List.of(head.getUID()), List.of(common.getUID()));
+        assertEquals(1, pack.commitCount());
+        assertEquals(1, pack.blobCount());
+        File store = Files.createTempDirectory("gitlet").toFile();
+        File newCommits = new File(store, "commits");
+        File newBlobs = new File(store, "blobs");
+        newCommits.mkdirs();
+        newBlobs.mkdirs();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pack.write(out);
+        assertEquals(2, Pack.read(
+                new ByteArrayInputStream(out.toByteArray()),
+                newCommits, newBlobs));
+        assertTrue(new File(newCommits, head.getUID() + ".txt").isFile());
+    }
+
+    /** Reading a pack refuses a commit sent under another commit's UID
+     *  and an object too long to hold, storing neither. */
+    @Test
+    public void packRejectsForgedObjects() throws IOException {
+        File cwd = Files.createTempDirectory("gitlet").toFile();
+        Git git = new Git(cwd, System.out);
+        git.init();
+        String uID = git.getCurrCommit().getUID();
+        byte[] commit = Files.readAllBytes(
+                new File(cwd, ".gitlet/commits/" + uID + ".txt").toPath());
+        String forged = Utils.sha1("forged");
+        File store = Files.createTempDirectory("gitlet").toFile();
+        File commits = new File(store, "commits");
+        File blobs = new File(store, "blobs");
+        commits.mkdirs();
+        blobs.mkdirs();
+        for (int length : new int[] {commit.length, Pack.MAX_OBJECT + 1}) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.write(Pack.COMMIT);
+            out.write(forged.getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(length);
+            out.write(commit);
+            out.write(Pack.END);
+            try {
+                Pack.read(new ByteArrayInputStream(bytes.toByteArray()),
+                        commits, blobs);
+                fail("read a forged pack");
+            } catch (IOException excp) {
+                assertTrue(excp.getMessage().startsWith("corrupt"));
+            }
+        }
+        assertEquals(0, commits.list().length);
+    }
+
+    /** A client finds the commits it shares with a daemon's repository
+     *  over a socket. */
+    @Test
+    public void daemonNegotiation() throws IOException {
+        File cwd = new File(Files.createTempDirectory("gitlet").toFile(),
+                "served");
+        cwd.mkdir();
+        Git git = new Git(cwd, System.out);
+        git.init();
+        for (int i = 0; i < 3; i += 1) {
+            Utils.writeContents(new File(cwd, "daemon.txt"), "v" + i + "\n");
+            git.add("daemon.txt");
+            git.commit("daemon " + i);
+        }
+        String head = git.getCurrCommit().getUID();
+        Daemon daemon = new Daemon(cwd.getParentFile(), 0);
+        new Thread(daemon::serve).start();
+        try (Transport transport = new SocketTransport(URI.create(
+                "gitlet://localhost:" + daemon.port() + "/"
+                + cwd.getName()))) {
+            assertTrue(transport.branches().containsValue(head));
+            FetchNegotiator negotiator = new FetchNegotiator(
+                    new File(cwd, ".gitlet/commits"), FetchNegotiator.WINDOW);
+            assertEquals(List.of(head),
+                    negotiator.common(List.of(head), transport));
+        } finally {
+            daemon.close();
+        }
+    }
+
+    /** A daemon refuses pushes to paths outside its branch directory and
+     *  of commits it was not sent, with a reason the client can print,
+     *  and rejects a push that would drop commits from a branch. */
+    @Test
+    public void daemonRefusesBadPushes() throws IOException {
+        File base = Files.createTempDirectory("gitlet").toFile();
+        File served = new File(base, "served");
+        served.mkdir();
+        new Git(served, System.out).init();
+        File cwd = Files.createTempDirectory("gitlet").toFile();
+        Git git = new Git(cwd, System.out);
+        git.init();
+        Utils.writeContents(new File(cwd, "push.txt"), "one\n");
+        git.add("push.txt");
+        git.commit("one");
+        String first = git.getCurrCommit().getUID();
+        Utils.writeContents(new File(cwd, "push.txt"), "two\n");
+        git.add("push.txt");
+        git.commit("two");
+        String head = git.getCurrCommit().getUID();
+        File commitDir = new File(cwd, ".gitlet/commits");
+        File blobDir = new File(cwd, ".gitlet/blobs");
+        Pack all = Pack.between(commitDir, blobDir, List.of(head),
+                List.of());
+        Pack empty = new Pack(commitDir, blobDir, List.of(), List.of());
+        Daemon daemon = new Daemon(base, 0);
+        new Thread(daemon::serve).start();
+        try (Transport transport = new SocketTransport(URI.create(
+                "gitlet://localhost:" + daemon.port() + "/served"))) {
+            try {
+                transport.push(all, "../../../pwned", null, head);
+                fail("pushed outside the branch directory");
+            } catch (GitletException excp) {
+                assertEquals("Invalid branch name: ../../../pwned",
+                        excp.getMessage());
+            }
+            assertFalse(new File(base, "pwned.txt").exists());
+            String unsent = Utils.sha1("unsent");
+            try {
+                transport.push(empty, "side", null, unsent);
+                fail("pushed a commit that was not sent");
+            } catch (GitletException excp) {
+                assertEquals("Commit " + unsent + " was not received.",
+                        excp.getMessage());
+            }
+            assertTrue(transport.push(empty, "side", null, head));
+            assertFalse(transport.push(empty, "side", head, first));
+            assertEquals(head, transport.branches().get("side"));
+        } finally {
+            daemon.close();
+        }
+    }
+
+    /** Asking a daemon for more blobs than fit in one frame splits the
+     *  request, and every blob still arrives. */
+    @Test
+    public void daemonBlobBatches() throws IOException {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository.init(dir);
+        File blobDir = new File(dir, ".gitlet/blobs");
+        ArrayList<String> uIDs = new ArrayList<>();
+        int count = SocketTransport.MAX_FRAME / ObjectId.LENGTH / 2 + 1;
+        for (int i = 0; i < count; i += 1) {
+            byte[] content = ("blob " + i + "\n").getBytes();
+            String uID = Utils.sha1Id(content).toString();
+            Utils.writeContents(new File(blobDir, uID + ".txt"), content);
+            uIDs.add(uID);
+        }
+        File into = Files.createTempDirectory("gitlet").toFile();
+        Daemon daemon = new Daemon(dir.getParentFile(), 0);
+        new Thread(daemon::serve).start();
+        try (Transport transport = new SocketTransport(URI.create(
+                "gitlet://localhost:" + daemon.port() + "/"
+                + dir.getName()))) {
+            assertEquals(count, transport.fetchBlobs(uIDs, into, into));
+            assertEquals(count, into.list().length);
+        } finally {
+            daemon.close();
+        }
+    }
 
+    /** A changed-path filter matches every changed file and few of the
+     *  others. */
+    @Test
+    public void changedPathFilter() {
+        HashMap<String, ObjectId> from = new HashMap<>();
+        HashMap<String, ObjectId> to = new HashMap<>();
+        for (int i = 0; i < 100; i += 1) {
+            from.put("f" + i + ".txt", Utils.sha1Id("old" + i));
+            to.put("f" + i + ".txt",
+                   Utils.sha1Id(i % 10 == 0 ? "new" + i : "old" + i));
+        }
+        to.remove("f5.txt");
+        byte[] filter = ChangedPaths.filter(Manifest.of(from),
+                Manifest.of(to));
+        int misses = 0;
+        for (int i = 0; i < 100; i += 1) {
+            boolean hit = true;
+            for (int probe : ChangedPaths.probes("f" + i + ".txt")) {
+                int bit = Math.floorMod(probe, filter.length * 8);
+                hit &= (filter[bit / 8] & (1 << (bit % 8))) != 0;
+            }
+            if (i % 10 == 0 || i == 5) {
+                assertTrue(hit);
+            } else if (!hit) {
+                misses += 1;
+            }
+        }
+        assertTrue(misses > 80);
+    }
 
+    /** Saving a walk's filters replaces the index whole, and a later walk
+     *  reads them back. */
+    @Test
+    public void changedPathsSave() throws IOException {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = Repository.init(dir);
+        for (int i = 0; i < 3; i += 1) {
+            Utils.writeContents(new File(dir, i % 2 + ".txt"), i + "\n");
+            repo.add(i % 2 + ".txt");
+            repo.commit("commit " + i);
+        }
+        String head = repo.snapshot().head().getUID();
+        File commits = new File(dir, ".gitlet/commits");
+        File index = Files.createTempDirectory("gitlet").resolve("index")
+                .toFile();
+        ChangedPaths paths = new ChangedPaths(commits, index);
+        Iterator<Commit> walk = paths.touching(head, "0.txt");
+        walk.next();
+        walk.next();
+        assertFalse(walk.hasNext());
+        paths.save();
+        assertEquals(List.of("index"),
+                List.of(index.getParentFile().list()));
+        long length = index.length();
+        paths = new ChangedPaths(commits, index);
+        walk = paths.touching(head, "1.txt");
+        walk.next();
+        assertFalse(walk.hasNext());
+        paths.save();
+        assertEquals(length, index.length());
+    }
+
+    /** Commits are indexed as they are made, and arrive indexed in a
+     *  clone, so a path-limited log computes no filters; a record cut
+     *  short at the end of the index is cut off before the next. */
+    @Test
+    public void changedPathsAtCommit() throws IOException {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = Repository.init(dir);
+        File index = new File(dir, ".gitlet/" + ChangedPaths.FILE_NAME);
+        for (int i = 0; i < 3; i += 1) {
+            Utils.writeContents(new File(dir, i + ".txt"), i + "\n");
+            repo.add(i + ".txt");
+            repo.commit("commit " + i);
+            if (i == 0) {
+                Files.write(index.toPath(), new byte[] {0, 40, 'x'},
+                        StandardOpenOption.APPEND);
+            }
+        }
+        String head = repo.snapshot().head().getUID();
+        File into = Files.createTempDirectory("gitlet").toFile();
+        new Git(into, System.out).clone(dir.getPath(), false);
+        for (File repoDir : new File[] {dir, into}) {
+            File commits = new File(repoDir, ".gitlet/commits");
+            File file = new File(repoDir, ".gitlet/" + ChangedPaths.FILE_NAME);
+            byte[] before = Files.readAllBytes(file.toPath());
+            ChangedPaths paths = new ChangedPaths(commits, file);
+            Iterator<Commit> walk = paths.touching(head, "0.txt");
+            walk.next();
+            assertFalse(walk.hasNext());
+            paths.save();
+            assertTrue(Arrays.equals(before,
+                    Files.readAllBytes(file.toPath())));
+        }
+    }
+
+    /** Compressed bitmaps of random runs and scattered bits combine,
+     *  count and look up bits as BitSets do. */
+    @Test
+    public void ewahBitmap() {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 50; trial += 1) {
+            BitSet one = new BitSet();
+            BitSet two = new BitSet();
+            for (BitSet bits : new BitSet[] {one, two}) {
+                int i = random.nextInt(200);
+                while (i < 5000) {
+                    if (random.nextBoolean()) {
+                        bits.set(i, i + random.nextInt(400));
+                    } else {
+                        bits.set(i);
+                    }
+                    i = bits.length() + random.nextInt(random.nextInt(3) == 0
+                            ? 2000 : 40);
+                }
+            }
+            EwahBitmap a = EwahBitmap.of(one);
+            EwahBitmap b = EwahBitmap.of(two);
+            BitSet expected = (BitSet) one.clone();
+            expected.or(two);
+            assertEquals(expected, toBitSet(a.or(b)));
+            expected = (BitSet) one.clone();
+            expected.and(two);
+            assertEquals(expected, toBitSet(a.and(b)));
+            expected = (BitSet) one.clone();
+            expected.andNot(two);
+            assertEquals(expected, toBitSet(a.andNot(b)));
+            assertEquals(one.cardinality(), a.cardinality());
+            int probe = random.nextInt(5000);
+            assertEquals(one.get(probe), a.get(probe));
+        }
+    }
+
+    /** Moving a branch records one RefUpdate naming the branch, not the
+     *  temporary file it is written through, and cloning records an
+     *  ObjectWrite for each commit and blob it links. */
+    @Test
+    public void storeEvents() throws IOException {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository.init(dir);
+        Git git = new Git(dir, System.out);
+        String target = git.getCurrCommit().getUID();
+        File into = Files.createTempDirectory("gitlet").toFile();
+        File recording = File.createTempFile("gitlet", ".jfr");
+        try (Recording jfr = new Recording()) {
+            jfr.enable(StoreEvents.PREFIX + "RefUpdate");
+            jfr.enable(StoreEvents.PREFIX + "ObjectWrite");
+            jfr.start();
+            git.branch("events");
+            new Git(into, System.out).clone(dir.getPath(), false);
+            jfr.stop();
+            jfr.dump(recording.toPath());
+        }
+        List<RecordedEvent> events =
+            RecordingFile.readAllEvents(recording.toPath());
+        recording.delete();
+        ArrayList<String> refs = new ArrayList<>();
+        int objects = 0;
+        for (RecordedEvent event : events) {
+            String name = event.getEventType().getName();
+            if (name.equals(StoreEvents.PREFIX + "RefUpdate")) {
+                refs.add(event.getString("ref"));
+                if (event.getString("ref").equals("events")) {
+                    assertEquals(target, event.getString("target"));
+                    assertEquals(Utils.UID_LENGTH, event.getLong("bytes"));
+                }
+            } else if (name.equals(StoreEvents.PREFIX + "ObjectWrite")) {
+                objects += 1;
+            }
+        }
+        assertEquals("events", refs.get(0));
+        assertTrue(refs.contains("origin/events"));
+        for (String ref : refs) {
+            assertFalse(ref.endsWith(".tmp"));
+        }
+        assertEquals(new File(dir, ".gitlet/commits").list().length
+                + new File(dir, ".gitlet/blobs").list().length, objects);
+    }
+
+    /** ObjectIds print as, parse from and sort like their hex forms. */
+    @Test
+    public void objectId() {
+        ArrayList<String> hexes = new ArrayList<>();
+        ArrayList<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i += 1) {
+            String hex = Utils.sha1("id" + i);
+            ObjectId id = Utils.sha1Id("id" + i);
+            assertEquals(hex, id.toString());
+            assertEquals(id, ObjectId.fromString(hex.toUpperCase()));
+            assertEquals(id.hashCode(), ObjectId.fromString(hex).hashCode());
+            hexes.add(hex);
+            ids.add(id);
+        }
+        Collections.sort(hexes);
+        Collections.sort(ids);
+        for (int i = 0; i < hexes.size(); i += 1) {
+            assertEquals(hexes.get(i), ids.get(i).toString());
+        }
+    }
+
+    /** A manifest agrees with a TreeMap through edits, in lookups,
+     *  order, differences and serialization. */
+    @Test
+    public void manifest() throws IOException {
+        Random random = new Random(61);
+        TreeMap<String, ObjectId> expected = new TreeMap<>();
+        Manifest manifest = Manifest.EMPTY;
+        for (int round = 0; round < 20; round += 1) {
+            Manifest.Builder builder = manifest.edit();
+            TreeMap<String, ObjectId> before = new TreeMap<>(expected);
+            for (int i = 0; i < 100; i += 1) {
+                String path = "dir" + random.nextInt(10) + "/f"
+                    + random.nextInt(300) + ".txt";
+                if (random.nextInt(4) == 0) {
+                    builder.remove(path);
+                    expected.remove(path);
+                } else {
+                    ObjectId id = Utils.sha1Id(path + round);
+                    builder.put(path, id);
+                    expected.put(path, id);
+                }
+            }
+            Manifest previous = manifest;
+            manifest = builder.build();
+            assertEquals(new ArrayList<>(expected.entrySet()),
+                    new ArrayList<>(manifest.entrySet()));
+            for (int f = 0; f < 300; f += 1) {
+                String path = "dir" + (f % 10) + "/f" + f + ".txt";
+                assertEquals(expected.get(path), manifest.get(path));
+            }
+            TreeSet<String> changed = new TreeSet<>();
+            Manifest.diff(previous, manifest,
+                (path, from, to) -> changed.add(path));
+            TreeSet<String> differing = new TreeSet<>(before.keySet());
+            differing.addAll(expected.keySet());
+            differing.removeIf(p -> Objects.equals(before.get(p),
+                    expected.get(p)));
+            assertEquals(differing, changed);
+        }
+        File file = File.createTempFile("manifest", ".txt");
+        Utils.writeObject(file, manifest);
+        assertEquals(manifest, Utils.readObject(file, Manifest.class));
+        file.delete();
+    }
+
+    /** Readers share a repository's lock; a writer excludes everyone,
+     *  and a command kept waiting too long is told who holds it. */
+    @Test
+    public void repositoryLock() throws IOException {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        try (RepositoryLock one = RepositoryLock.acquire(dir, true, "log");
+             RepositoryLock two = RepositoryLock.acquire(dir, true, "find")) {
+            assertTrue(one.isShared() && two.isShared());
+            try {
+                RepositoryLock.acquire(dir, false, "commit", 50).close();
+                fail("a writer got in beside readers");
+            } catch (IllegalArgumentException excp) {
+                assertTrue(excp.getMessage().startsWith("Timed out"));
+            }
+        }
+        try (RepositoryLock writer =
+                 RepositoryLock.acquire(dir, false, "commit", 0)) {
+            assertFalse(writer.isShared());
+            try {
+                RepositoryLock.acquire(dir, true, "log", 50).close();
+                fail("a reader got in beside a writer");
+            } catch (IllegalArgumentException excp) {
+                assertTrue(excp.getMessage().endsWith("running commit."));
+            }
+        }
+        RepositoryLock.acquire(dir, false, "gc", 0).close();
+    }
+
+    /** A snapshot keeps answering for the moment it was taken while
+     *  other threads read it and the repository moves on. */
+    @Test
+    public void repositorySnapshots() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = Repository.init(dir);
+        Utils.writeContents(new File(dir, "a.txt"), "one\n");
+        repo.add("a.txt");
+        Commit first = repo.commit("first");
+        repo.branch("other");
+        Repository.Snapshot before = repo.snapshot();
+        Thread[] readers = new Thread[4];
+        int[] walked = new int[readers.length];
+        for (int t = 0; t < readers.length; t += 1) {
+            int me = t;
+            readers[t] = new Thread(() -> {
+                for (int i = 0; i < 50; i += 1) {
+                    for (Iterator<Commit> c = before.log(); c.hasNext();) {
+                        c.next();
+                        walked[me] += 1;
+                    }
+                }
+            });
+            readers[t].start();
+        }
+        Utils.writeContents(new File(dir, "a.txt"), "two\n");
+        repo.add("a.txt");
+        repo.commit("second");
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        for (int count : walked) {
+            assertEquals(100, count);
+        }
+        assertEquals(first.getUID(), before.head().getUID());
+        assertEquals("one\n", new String(before.read("a.txt")));
+        Repository.Snapshot after = repo.snapshot();
+        assertEquals("two\n", new String(after.read("a.txt")));
+        assertEquals(List.of(first.getUID()),
+                after.mergeBases("master", "other"));
+        assertEquals(List.of("a.txt"), before.status().modified().keySet()
+                .stream().toList());
+        assertTrue(after.status().modified().isEmpty());
+        repo.checkout("other");
+        assertEquals(Repository.MergeResult.Kind.FAST_FORWARD,
+                repo.merge("master").kind());
+        try {
+            repo.merge("nonesuch");
+            fail("merged a missing branch");
+        } catch (GitletException excp) {
+            assertEquals("A branch with that name does not exist.",
+                    excp.getMessage());
+        }
+    }
+
+    /** A snapshot's status leaves out tracked files that the sparse
+     *  checkout excludes, and ignores patterns that are not globs. */
+    @Test
+    public void sparseSnapshotStatus() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = Repository.init(dir);
+        Utils.writeContents(new File(dir, "a.txt"), "one\n");
+        Utils.writeContents(new File(dir, "b.txt"), "two\n");
+        repo.add("a.txt");
+        repo.add("b.txt");
+        repo.commit("first");
+        Utils.writeContents(new File(dir, ".gitlet/"
+                + SparseCheckout.FILE_NAME), "[\na*\n");
+        new File(dir, "b.txt").delete();
+        assertTrue(repo.snapshot().status().modified().isEmpty());
+        new File(dir, "a.txt").delete();
+        assertEquals(List.of("a.txt"), repo.snapshot().status().modified()
+                .keySet().stream().toList());
+        assertFalse(SparseCheckout.isValid("["));
+        assertTrue(SparseCheckout.isValid("a*"));
+    }
+
+    /** A record cut short in a reflog is skipped when reading and
+     *  replaced by the next one appended. */
+    @Test
+    public void reflogTornRecord() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Reflog reflog = new Reflog(dir);
+        String one = Utils.sha1Id("one").toString();
+        String two = Utils.sha1Id("two").toString();
+        reflog.append("master", null, one, "commit");
+        File log = new File(dir, "refs/master.log");
+        Files.write(log.toPath(), new byte[10],
+                StandardOpenOption.APPEND);
+        Iterator<Reflog.Entry> entries = reflog.newestFirst("master");
+        assertEquals(one, entries.next().newUID.toString());
+        assertFalse(entries.hasNext());
+        reflog.append("master", one, two, "commit");
+        assertEquals(2 * Reflog.RECORD, log.length());
+        entries = reflog.newestFirst("master");
+        Reflog.Entry newest = entries.next();
+        assertEquals(one, newest.oldUID.toString());
+        assertEquals(two, newest.newUID.toString());
+        assertEquals("commit", newest.command);
+        assertEquals(one, entries.next().newUID.toString());
+    }
+
+    /** A worktree shares the commits, blobs and branches of its
+     *  repository but has its own HEAD and stage, and gc keeps what
+     *  that stage holds. */
+    @Test
+    public void worktrees() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = Repository.init(dir);
+        Utils.writeContents(new File(dir, "a.txt"), "one\n");
+        repo.add("a.txt");
+        repo.commit("first");
+        repo.branch("other");
+        File wtDir = new File(dir.getParentFile(), dir.getName() + "-wt");
+        Repository wt = repo.addWorktree(wtDir, "other");
+        assertEquals("one\n",
+                Utils.readContentsAsString(new File(wtDir, "a.txt")));
+        assertFalse(new File(wtDir, ".gitlet/commits").exists());
+        Utils.writeContents(new File(wtDir, "a.txt"), "two\n");
+        wt.add("a.txt");
+        Commit second = wt.commit("second");
+        Utils.writeContents(new File(wtDir, "a.txt"), "three\n");
+        wt.add("a.txt");
+        repo.gc();
+        assertEquals("other", wt.snapshot().branch());
+        assertEquals(List.of("a.txt"), wt.snapshot().status().staged());
+        assertTrue(new File(dir, ".gitlet/blobs/"
+                + Utils.sha1Id("three\n".getBytes()) + ".txt").isFile());
+        Repository.Snapshot main = repo.snapshot();
+        assertEquals("master", main.branch());
+        assertEquals(second.getUID(), main.branches().get("other"));
+        assertEquals("one\n", new String(main.read("a.txt")));
+        try {
+            repo.checkout("other");
+            fail("checked out a branch another worktree has");
+        } catch (GitletException excp) {
+            assertEquals("That branch is checked out in another worktree.",
+                    excp.getMessage());
+        }
+    }
+
+    /** gc and fetch run from a worktree take the branch heads from the
+     *  shared branches, not the worktree's pointer to its branch. */
+    @Test
+    public void worktreeGcAndFetch() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = Repository.init(dir);
+        Utils.writeContents(new File(dir, "a.txt"), "one\n");
+        repo.add("a.txt");
+        repo.commit("first");
+        repo.branch("other");
+        File wtDir = new File(dir.getParentFile(), dir.getName() + "-wt");
+        repo.addWorktree(wtDir, "other");
+        File remote = Files.createTempDirectory("gitlet").toFile();
+        Git origin = new Git(remote, System.out);
+        origin.init();
+        Utils.writeContents(new File(remote, "r.txt"), "remote\n");
+        origin.add("r.txt");
+        origin.commit("remote");
+        File fetched = new File(dir, ".gitlet/commits/"
+                + origin.getCurrCommit().getUID() + ".txt");
+        Git git = new Git(wtDir, System.out);
+        git.addRemote("origin", new File(remote, ".gitlet").getPath());
+        assertTrue(git.fetch("origin", "master"));
+        assertTrue(fetched.isFile());
+        git.gc();
+        assertTrue(fetched.isFile());
+    }
+
+    /** An asynchronous checkout reports its progress, and one cancelled
+     *  while it writes files puts them back and leaves the branch. */
+    @Test
+    public void asyncCheckout() throws Exception {
+        File dir = Files.createTempDirectory("gitlet").toFile();
+        Repository repo = Repository.init(dir);
+        for (int i = 0; i < 5; i += 1) {
+            Utils.writeContents(new File(dir, i + ".txt"), "old\n");
+            repo.add(i + ".txt");
+        }
+        repo.commit("old");
+        repo.branch("other");
+        for (int i = 0; i < 5; i += 1) {
+            Utils.writeContents(new File(dir, i + ".txt"), "new\n");
+            repo.add(i + ".txt");
+        }
+        repo.commit("new");
+        for (int i = 0; i < 5; i += 1) {
+            Utils.writeContents(new File(dir, i + ".txt"), "edited\n");
+        }
+        ArrayList<Runnable> queued = new ArrayList<>();
+        AsyncRepository async = new AsyncRepository(repo, queued::add);
+        List<CompletableFuture<Void>> checkout = new ArrayList<>();
+        checkout.add(async.checkout("other", (phase, done, total) -> {
+            if (phase.equals("writing files") && done == 3) {
+                assertTrue(checkout.get(0).cancel(true));
+            }
+        }));
+        queued.remove(0).run();
+        assertTrue(checkout.get(0).isCancelled());
+        assertEquals("master", repo.snapshot().branch());
+        for (int i = 0; i < 5; i += 1) {
+            assertEquals("edited\n", Utils.readContentsAsString(
+                    new File(dir, i + ".txt")));
+        }
+        assertFalse(new File(dir, ".gitlet/checkout-saved").exists());
+        ArrayList<String> phases = new ArrayList<>();
+        CompletableFuture<Void> done = async.checkout("other",
+            (phase, step, total) -> phases.add(phase + " " + step));
+        queued.remove(0).run();
+        done.get();
+        assertEquals("other", repo.snapshot().branch());
+        assertTrue(phases.contains("writing files 4"));
+        assertFalse(done.cancel(true));
+        assertEquals("old\n", Utils.readContentsAsString(
+                new File(dir, "0.txt")));
+    }
+
+    /** Returns the members of SET as a BitSet. */
+    private static BitSet toBitSet(EwahBitmap set) {
+        BitSet result = new BitSet();
+        set.forEach(result::set);
+        return result;
+    }
+
+    /** Stores CONTENTS as a blob in BLOBDIR and returns its ID. */
+    private static ObjectId blob(File blobDir, String contents) {
+        ObjectId uID = Utils.sha1Id(contents);
+        Utils.writeContents(new File(blobDir, uID + ".txt"), contents);
+        return uID;
+    }
+
+    /** Deletes FILE and, if it is a directory, everything under it. */
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -11,11 +11,11 @@ import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
 
 
@@ -32,7 +32,13 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
+        return sha1Id(vals).toString();
+    }
+
+    /** Returns the SHA-1 hash of the concatenation of VALS, as for sha1,
+     *  as an ObjectId. */
+    static ObjectId sha1Id(Object... vals) {
+        try (Profiler.Span span = Profiler.span("sha1")) {
             MessageDigest md = MessageDigest.getInstance("SHA-1");
             for (Object val : vals) {
                 if (val instanceof byte[]) {
@@ -43,11 +49,7 @@ class Utils {
                     throw new IllegalArgumentException("improper type to sha1");
                 }
             }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
+            return ObjectId.fromBytes(md.digest());
         } catch (NoSuchAlgorithmException excp) {
             throw new IllegalArgumentException("System does not support SHA-1");
         }
@@ -93,8 +95,14 @@ class Utils {
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
-        try {
-            return Files.readAllBytes(file.toPath());
+        try (Profiler.Span span = Profiler.span("readContents")) {
+            StoreEvents.Timed event = StoreEvents.reading(file);
+            byte[] result = Files.readAllBytes(file.toPath());
+            Profiler.read(result.length);
+            if (event != null) {
+                event.finish(result.length);
+            }
+            return result;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
@@ -112,35 +120,69 @@ class Utils {
      *  either a String or a byte array.  Throws IllegalArgumentException
      *  in case of problems. */
     static void writeContents(File file, Object... contents) {
-        try {
+        try (Profiler.Span span = Profiler.span("writeContents")) {
             if (file.isDirectory()) {
                 throw
                     new IllegalArgumentException("cannot overwrite directory");
             }
+            StoreEvents.Timed event = StoreEvents.writing(file);
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
+            long written = 0;
             for (Object obj : contents) {
-                if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
-                } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
-                }
+                byte[] bytes = obj instanceof byte[] ? (byte[]) obj
+                    : ((String) obj).getBytes(StandardCharsets.UTF_8);
+                str.write(bytes);
+                written += bytes.length;
             }
             str.close();
+            Profiler.wrote(written);
+            if (event != null) {
+                event.finish(written, contents);
+            }
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
         }
     }
 
+    /** Write the result of concatenating CONTENTS to FILE, as for
+     *  writeContents, through a temporary file that is then moved over
+     *  FILE, so that readers see either the old or the new contents and
+     *  never a mixture.  Throws IllegalArgumentException in case of
+     *  problems. */
+    static void writeContentsAtomically(File file, Object... contents) {
+        File temp = null;
+        try {
+            temp = File.createTempFile("." + file.getName(), ".tmp",
+                                       file.getAbsoluteFile().getParentFile());
+            writeContents(temp, contents);
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
     /** Return an object of type T read from FILE, casting it to EXPECTEDCLASS.
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
-        try {
+        try (Profiler.Span span = Profiler.span("readObject")) {
+            StoreEvents.Timed event = StoreEvents.reading(file);
             ObjectInputStream in =
                 new ObjectInputStream(new FileInputStream(file));
             T result = expectedClass.cast(in.readObject());
             in.close();
+            Profiler.read(file.length());
+            Profiler.deserialized();
+            if (event != null) {
+                event.finish(file.length());
+            }
             return result;
         } catch (IOException | ClassCastException
                  | ClassNotFoundException excp) {
@@ -150,7 +192,9 @@ class Utils {
 
     /** Write OBJ to FILE. */
     static void writeObject(File file, Serializable obj) {
-        writeContents(file, serialize(obj));
+        try (Profiler.Span span = Profiler.span("writeObject")) {
+            writeContents(file, serialize(obj));
+        }
     }
 
     /* DIRECTORIES */
@@ -168,7 +212,11 @@ class Utils {
      *  lexicographic order as Java Strings.  Returns null if DIR does
      *  not denote a directory. */
     static List<String> plainFilenamesIn(File dir) {
-        String[] files = dir.list(PLAIN_FILES);
+        String[] files;
+        try (Profiler.Span span = Profiler.span("plainFilenamesIn")) {
+            files = dir.list(PLAIN_FILES);
+            Profiler.listed();
+        }
         if (files == null) {
             return null;
         } else {